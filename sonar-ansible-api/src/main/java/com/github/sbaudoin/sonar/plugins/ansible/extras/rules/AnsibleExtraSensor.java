@@ -16,6 +16,7 @@
 package com.github.sbaudoin.sonar.plugins.ansible.extras.rules;
 
 import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor;
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AnsibleSensorEvents;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
@@ -26,9 +27,13 @@ import com.github.sbaudoin.sonar.plugins.yaml.languages.YamlLanguage;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Sensor class that executes additional ansible-lint rules. The additional ansible-lint rules (the {@code .py} files)
@@ -37,7 +42,8 @@ import java.util.*;
  */
 public final class AnsibleExtraSensor extends AbstractAnsibleSensor {
     /**
-     * Identifier of the temporary directory where the additional rules are extracted
+     * Name of the directory of the SonarQube user home where the additional rules are extracted, in a subdirectory
+     * named after the hash of the rules
      */
     public static final String EXTRA_RULES_TEMP_DIR = "ansible-lint-extra-rules";
 
@@ -47,6 +53,13 @@ public final class AnsibleExtraSensor extends AbstractAnsibleSensor {
     public static final String EXTRA_RULES_DIR = "extra-rules";
 
     private static final Logger LOGGER = Loggers.get(AnsibleExtraSensor.class);
+    private static final String SONAR_USER_HOME_KEY = "sonar.userHome";
+    private static final String SONAR_USER_HOME_ENV = "SONAR_USER_HOME";
+
+    /**
+     * Number of days after which an extracted rule set that was not used is deleted
+     */
+    private static final int EXTRA_RULES_RETENTION_DAYS = 30;
 
 
     /**
@@ -65,49 +78,83 @@ public final class AnsibleExtraSensor extends AbstractAnsibleSensor {
         descriptor.name("Ansible-Lint Sensor with Extra Rules");
     }
 
+    /**
+     * The measures of the project are saved by the sensor of the Ansible plugin
+     *
+     * @return {@code false}
+     */
+    @Override
+    protected boolean isSavingMeasures() {
+        return false;
+    }
+
 
     @Override
     public void execute(SensorContext context) {
         // Extract extra rules if any
-        Path extraRulesDir = extractExtraRules(EXTRA_RULES_DIR);
+        Path extraRulesDir;
+        try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.extraRulesExtraction()) {
+            extraRulesDir = extractExtraRules(EXTRA_RULES_DIR, getExtraRulesCacheDirectory(context));
+            if (phase.isEnabled() && extraRulesDir != null) {
+                String[] files = extraRulesDir.toFile().list();
+                phase.file(extraRulesDir.toString()).files((files == null) ? 0 : files.length);
+            }
+        }
         if (extraRulesDir != null) {
             executeWithAnsibleLint(context, Arrays.asList("-r", extraRulesDir.toString()));
-            deleteDirectory(extraRulesDir);
         }
     }
 
 
     /**
-     * Extract the files (supposedly containing additional ansible-lint rules) to a temporary directory whose path is
-     * returned
+     * Returns the directory where the extra rules are extracted: the directory {@value #EXTRA_RULES_TEMP_DIR} of the
+     * SonarQube user home, so that the extracted rules and the bytecode compiled by Python are reused from one analysis
+     * to the other and shared by the extras plugins
+     *
+     * @param context the execution sensor context
+     * @return the directory where the rule sets are extracted
+     */
+    private static Path getExtraRulesCacheDirectory(SensorContext context) {
+        String userHome = context.config().get(SONAR_USER_HOME_KEY).orElse(System.getenv(SONAR_USER_HOME_ENV));
+        Path home = (userHome == null || userHome.trim().isEmpty()) ?
+                Paths.get(System.getProperty("user.home"), ".sonar") : Paths.get(userHome.trim());
+        return home.resolve(EXTRA_RULES_TEMP_DIR);
+    }
+
+    /**
+     * Extract the files (supposedly containing additional ansible-lint rules) to a subdirectory of the passed cache
+     * directory, named after the hash of the files. If the files have already been extracted, by a previous analysis or
+     * by another extras plugin, they are not extracted again.
      *
      * @param extraRulesDirectory a directory containing files to be "extracted" (copied or unzipped when this class is
      *                            packaged into a JAR file)
+     * @param cacheDirectory the directory where the rule sets are extracted
      * @return the path where the files where extracted
      */
-    private Path extractExtraRules(String extraRulesDirectory) {
-        // First copy custom rules in a temporary directory
-        Path tempDir;
-        try {
-            LOGGER.debug("Creating temp dir {}", EXTRA_RULES_TEMP_DIR);
-            tempDir = Files.createTempDirectory(Paths.get(System.getProperty("user.dir")), EXTRA_RULES_TEMP_DIR);
-            tempDir.toFile().deleteOnExit();
-            LOGGER.debug("Temp dir created: {}", tempDir.toString());
-        } catch (IOException e) {
-            // Not a blocker issue: we won't execute the extra rules
-            LOGGER.error("Cannot create temporary directory " + EXTRA_RULES_TEMP_DIR, e);
-            LOGGER.warn("Extra rules won't be executed");
-            return null;
-        }
-
+    private Path extractExtraRules(String extraRulesDirectory, Path cacheDirectory) {
         URL extraRulesDir = getClass().getClassLoader().getResource(extraRulesDirectory);
         if (extraRulesDir == null) {
             LOGGER.info("No extra ansible-lint rules found");
             return null;
         }
         try (com.github.sbaudoin.sonar.plugins.ansible.util.FileSystem fs = new com.github.sbaudoin.sonar.plugins.ansible.util.FileSystem(extraRulesDir.toURI())) {
-            LOGGER.debug("Copying rules from {}...", extraRulesDirectory);
-            fs.readDirectory(extraRulesDir.toURI()).forEach(entry -> copyExtraRule(entry, tempDir));
+            List<Path> ruleFiles = fs.readDirectory(extraRulesDir.toURI())
+                    .sorted(Comparator.comparing(ruleFile -> ruleFile.getFileName().toString()))
+                    .collect(Collectors.toList());
+            Path rulesDir = cacheDirectory.resolve(hash(ruleFiles));
+            if (isExtracted(rulesDir, ruleFiles)) {
+                LOGGER.debug("Extra rules already extracted to {}", rulesDir);
+                // Mark the rules as used so that they are not purged
+                rulesDir.toFile().setLastModified(System.currentTimeMillis());
+                return rulesDir;
+            }
+            LOGGER.debug("Copying rules from {} to {}...", extraRulesDirectory, rulesDir);
+            if (!extract(ruleFiles, rulesDir)) {
+                LOGGER.warn("Extra rules won't be executed");
+                return null;
+            }
+            purgeExtraRules(rulesDir);
+            return rulesDir;
         } catch (DirectoryIteratorException e) {
             // I/O error encountered during the iteration, the cause is an IOException
             LOGGER.error("Error reading extra-rules directory", e);
@@ -116,11 +163,110 @@ public final class AnsibleExtraSensor extends AbstractAnsibleSensor {
             LOGGER.error("Cannot access extra Ansible-lint rule directory", e);
             return null;
         } catch (IOException e) {
-            LOGGER.error("Unknown error", e);
+            LOGGER.error("Cannot extract the extra rules to " + cacheDirectory, e);
+            LOGGER.warn("Extra rules won't be executed");
             return null;
         }
+    }
 
-        return tempDir;
+    /**
+     * Extracts the rule files to a temporary directory renamed to the passed directory once complete, so that
+     * concurrent analyses never see a partially extracted rule set
+     *
+     * @param ruleFiles the files to be extracted
+     * @param rulesDir the directory where the files are extracted
+     * @return {@code true} if the files have been extracted, {@code false} if a file could not be extracted
+     * @throws IOException if the directory could not be created
+     */
+    private boolean extract(List<Path> ruleFiles, Path rulesDir) throws IOException {
+        if (Files.isDirectory(rulesDir)) {
+            // Incomplete rule set, whose files were deleted for instance
+            deleteDirectory(rulesDir);
+        }
+        Files.createDirectories(rulesDir.getParent());
+        Path tempDir = Files.createTempDirectory(rulesDir.getParent(), rulesDir.getFileName() + ".tmp");
+        try {
+            for (Path ruleFile : ruleFiles) {
+                if (!copyExtraRule(ruleFile, tempDir)) {
+                    return false;
+                }
+            }
+            try {
+                Files.move(tempDir, rulesDir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // The same rules may have been extracted meanwhile by another extras plugin or analysis
+                if (!isExtracted(rulesDir, ruleFiles)) {
+                    throw e;
+                }
+            }
+            return true;
+        } finally {
+            if (Files.exists(tempDir)) {
+                deleteDirectory(tempDir);
+            }
+        }
+    }
+
+    /**
+     * Tells if the passed rule files have already been extracted to the passed directory
+     */
+    private static boolean isExtracted(Path rulesDir, List<Path> ruleFiles) {
+        return Files.isDirectory(rulesDir) &&
+                ruleFiles.stream().allMatch(ruleFile -> Files.isRegularFile(rulesDir.resolve(ruleFile.getFileName().toString())));
+    }
+
+    /**
+     * Deletes the rule sets, other than the passed one, that have not been used for {@value #EXTRA_RULES_RETENTION_DAYS}
+     * days, typically the rules of the previous versions of the extras plugins
+     *
+     * @param rulesDir the directory of the rule set in use
+     */
+    private void purgeExtraRules(Path rulesDir) {
+        long limit = System.currentTimeMillis() - EXTRA_RULES_RETENTION_DAYS * 24 * 3600 * 1000L;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(rulesDir.getParent(), Files::isDirectory)) {
+            for (Path dir : dirs) {
+                if (!dir.equals(rulesDir) && Files.getLastModifiedTime(dir).toMillis() < limit) {
+                    LOGGER.debug("Deleting unused extra rules {}", dir);
+                    deleteDirectory(dir);
+                }
+            }
+        } catch (IOException|DirectoryIteratorException e) {
+            LOGGER.debug("Cannot purge the unused extra rules: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the hash of the names and contents of the passed rule files
+     *
+     * @param ruleFiles the rule files, sorted by name
+     * @return the SHA-256 hash, as an hexadecimal string
+     * @throws IOException if a file could not be read
+     */
+    private static String hash(List<Path> ruleFiles) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported by all Java platforms
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        for (Path ruleFile : ruleFiles) {
+            digest.update(ruleFile.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            try (InputStream in = Files.newInputStream(ruleFile)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            digest.update((byte)0);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
     }
 
     /**
@@ -135,13 +281,12 @@ public final class AnsibleExtraSensor extends AbstractAnsibleSensor {
         LOGGER.debug("Copying rule script {} to {}", ruleFile.toString(), directory.toString());
 
         Path copyFile = directory.resolve(ruleFile.getFileName().toString());
-        try (OutputStream resStreamOut = new FileOutputStream(copyFile.toString())) {
-            resStreamOut.write(Files.readAllBytes(ruleFile));
+        try {
+            Files.copy(ruleFile, copyFile, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             LOGGER.error("Cannot extract rule " + ruleFile + " to " + directory, e);
             return false;
         }
-        copyFile.toFile().deleteOnExit();
 
         return true;
     }
@@ -168,7 +313,7 @@ public final class AnsibleExtraSensor extends AbstractAnsibleSensor {
                 }
             });
         } catch (IOException e) {
-            LOGGER.warn("Cannot delete temporary directory: " + e.getMessage());
+            LOGGER.warn("Cannot delete directory " + directory + ": " + e.getMessage());
             return false;
         }
 
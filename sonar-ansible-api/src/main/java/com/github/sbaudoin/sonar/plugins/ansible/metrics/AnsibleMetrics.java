@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.metrics;
+
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.Metrics;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Metrics measuring the cost of the {@code ansible-lint} analysis of a project. They are saved on the project by the
+ * Ansible sensor at the end of the analysis so that their trend can be followed from one analysis to the other.
+ */
+public class AnsibleMetrics implements Metrics {
+    public static final String DOMAIN = "Ansible";
+
+    public static final Metric<Integer> FILES_LINTED = new Metric.Builder("ansible_files_linted", "Ansible Files Linted", Metric.ValueType.INT)
+            .setDescription("Number of files linted by ansible-lint, without the files taken from the cache or from the last analysis")
+            .setDirection(Metric.DIRECTION_WORST)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+
+    public static final Metric<Integer> LINT_EXECUTIONS = new Metric.Builder("ansible_lint_executions", "Ansible Lint Executions", Metric.ValueType.INT)
+            .setDescription("Number of ansible-lint executions")
+            .setDirection(Metric.DIRECTION_WORST)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+
+    public static final Metric<Long> LINT_TIME = new Metric.Builder("ansible_lint_time", "Ansible Lint Time", Metric.ValueType.MILLISEC)
+            .setDescription("Total wall time of the ansible-lint executions")
+            .setDirection(Metric.DIRECTION_WORST)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+
+    public static final Metric<Long> LINT_MEAN_TIME = new Metric.Builder("ansible_lint_mean_time", "Ansible Lint Mean Time", Metric.ValueType.MILLISEC)
+            .setDescription("Mean wall time of an ansible-lint execution")
+            .setDirection(Metric.DIRECTION_WORST)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+
+    public static final Metric<Long> ANALYSIS_TIME = new Metric.Builder("ansible_analysis_time", "Ansible Analysis Time", Metric.ValueType.MILLISEC)
+            .setDescription("Wall time of the Ansible analysis, ansible-lint executions included")
+            .setDirection(Metric.DIRECTION_WORST)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+
+    public static final Metric<Integer> CACHE_HITS = new Metric.Builder("ansible_cache_hits", "Ansible Cache Hits", Metric.ValueType.INT)
+            .setDescription("Number of files whose issues were taken from the ansible-lint cache")
+            .setDirection(Metric.DIRECTION_BETTER)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+
+    public static final Metric<String> SLOWEST_FILES = new Metric.Builder("ansible_slowest_files", "Ansible Slowest Files", Metric.ValueType.DATA)
+            .setDescription("Files whose ansible-lint executions took the longest, as a JSON array of {\"file\", \"time\"} objects (time in milliseconds)")
+            .setDirection(Metric.DIRECTION_NONE)
+            .setQualitative(false)
+            .setDomain(DOMAIN)
+            .create();
+
+
+    @Override
+    public List<Metric> getMetrics() {
+        return asList(FILES_LINTED, LINT_EXECUTIONS, LINT_TIME, LINT_MEAN_TIME, ANALYSIS_TIME, CACHE_HITS, SLOWEST_FILES);
+    }
+}
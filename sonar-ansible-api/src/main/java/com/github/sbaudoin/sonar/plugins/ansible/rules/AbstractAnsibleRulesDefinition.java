@@ -17,6 +17,9 @@ package com.github.sbaudoin.sonar.plugins.ansible.rules;
 
 import com.github.sbaudoin.sonar.plugins.ansible.checks.AnsibleCheckRepository;
 import com.github.sbaudoin.sonar.plugins.ansible.util.FileSystem;
+import org.sonar.api.rule.RuleStatus;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.server.debt.DebtRemediationFunction;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -24,12 +27,14 @@ import com.github.sbaudoin.sonar.plugins.yaml.languages.YamlLanguage;
 import org.sonarsource.analyzer.commons.RuleMetadataLoader;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public abstract class AbstractAnsibleRulesDefinition implements RulesDefinition {
     private static final Logger LOGGER = Loggers.get(AbstractAnsibleRulesDefinition.class);
@@ -37,12 +42,25 @@ public abstract class AbstractAnsibleRulesDefinition implements RulesDefinition
 
     @Override
     public void define(RulesDefinition.Context context) {
+        define(context, true);
+    }
+
+    /**
+     * Defines the rule repository
+     *
+     * @param context the context
+     * @param useIndex {@code true} to define the rules from the {@link AnsibleRuleIndex rule index} if there is one,
+     *                 {@code false} to always read the rule definition files
+     */
+    void define(RulesDefinition.Context context, boolean useIndex) {
         RulesDefinition.NewRepository repository = context.createRepository(AnsibleCheckRepository.REPOSITORY_KEY, YamlLanguage.KEY).setName(AnsibleCheckRepository.REPOSITORY_NAME);
 
-        RuleMetadataLoader metadataLoader = new RuleMetadataLoader(getRuleDefinitionPath());
+        if (!useIndex || !addRulesFromIndex(repository)) {
+            RuleMetadataLoader metadataLoader = new RuleMetadataLoader(getRuleDefinitionPath());
 
-        List<String> keys = new ArrayList<>(getRuleKeys());
-        metadataLoader.addRulesByRuleKey(repository, keys);
+            List<String> keys = new ArrayList<>(getRuleKeys());
+            metadataLoader.addRulesByRuleKey(repository, keys);
+        }
 
         repository.done();
     }
@@ -51,6 +69,80 @@ public abstract class AbstractAnsibleRulesDefinition implements RulesDefinition
     protected abstract String getRuleDefinitionPath();
 
 
+    /**
+     * Adds the rules listed in the rule index generated at build time. The rules are added only if the index is valid
+     * and all the rules it lists are described.
+     *
+     * @param repository the repository the rules are added to
+     * @return {@code true} if the rules have been added, {@code false} if there is no usable index
+     */
+    private boolean addRulesFromIndex(RulesDefinition.NewRepository repository) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String indexPath = getRuleDefinitionPath() + "/" + AnsibleRuleIndex.FILE_NAME;
+        List<AnsibleRuleIndex.Rule> rules;
+        try (InputStream in = classLoader.getResourceAsStream(indexPath)) {
+            if (in == null) {
+                LOGGER.debug("No rule index found in {}", getRuleDefinitionPath());
+                return false;
+            }
+            rules = AnsibleRuleIndex.read(in);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Cannot read rule index {}, reading rule definition files: {}", indexPath, e.getMessage());
+            return false;
+        }
+
+        // Check the descriptions first so that the repository is left untouched if the index is out of date
+        List<URL> descriptions = new ArrayList<>(rules.size());
+        for (AnsibleRuleIndex.Rule rule : rules) {
+            URL description = classLoader.getResource(getRuleDefinitionPath() + "/" + rule.getKey() + ".html");
+            if (description == null) {
+                LOGGER.warn("Rule {} indexed but not described (.html file missing), reading rule definition files", rule.getKey());
+                return false;
+            }
+            descriptions.add(description);
+        }
+
+        LOGGER.debug("Adding {} rule(s) from rule index {}", rules.size(), indexPath);
+        for (int i = 0; i < rules.size(); i++) {
+            addRule(repository, rules.get(i), descriptions.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Adds a rule the way {@link RuleMetadataLoader} does
+     */
+    private static void addRule(RulesDefinition.NewRepository repository, AnsibleRuleIndex.Rule indexedRule, URL description) {
+        RulesDefinition.NewRule rule = repository.createRule(indexedRule.getKey())
+                .setName(indexedRule.getTitle())
+                .setHtmlDescription(description)
+                .setType(RuleType.valueOf(indexedRule.getType()))
+                .setStatus(RuleStatus.valueOf(indexedRule.getStatus().toUpperCase(Locale.ENGLISH)))
+                .setSeverity(indexedRule.getSeverity().toUpperCase(Locale.ENGLISH));
+        rule.setTags(indexedRule.getTags().toArray(new String[0]));
+
+        String function = indexedRule.getRemediationFunction();
+        if (function.isEmpty()) {
+            return;
+        }
+        DebtRemediationFunction remediation;
+        if (function.startsWith("Constant")) {
+            remediation = rule.debtRemediationFunctions().constantPerIssue(duration(indexedRule.getConstantCost()));
+        } else if ("Linear".equals(function)) {
+            remediation = rule.debtRemediationFunctions().linear(duration(indexedRule.getLinearFactor()));
+        } else {
+            remediation = rule.debtRemediationFunctions().linearWithOffset(duration(indexedRule.getLinearFactor()), duration(indexedRule.getLinearOffset()));
+        }
+        rule.setDebtRemediationFunction(remediation);
+        if (!indexedRule.getGapDescription().isEmpty()) {
+            rule.setGapDescription(indexedRule.getGapDescription());
+        }
+    }
+
+    private static String duration(String value) {
+        return value.replace("mn", "min");
+    }
+
     private List<String> getRuleKeys() {
         List<String> keys = new ArrayList<>();
 
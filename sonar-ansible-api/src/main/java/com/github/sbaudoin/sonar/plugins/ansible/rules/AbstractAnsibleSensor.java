@@ -16,11 +16,13 @@
 package com.github.sbaudoin.sonar.plugins.ansible.rules;
 
 import com.github.sbaudoin.sonar.plugins.ansible.checks.AnsibleCheckRepository;
+import com.github.sbaudoin.sonar.plugins.ansible.metrics.AnsibleMetrics;
 import com.github.sbaudoin.sonar.plugins.ansible.settings.AnsibleSettings;
 import com.github.sbaudoin.sonar.plugins.yaml.languages.YamlLanguage;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.issue.NewIssue;
@@ -32,9 +34,19 @@ import org.sonar.api.utils.log.Loggers;
 import javax.annotation.Nullable;
 import java.io.*;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -49,7 +61,30 @@ import java.util.stream.Collectors;
  * @see <a href="https://github.com/ansible/ansible-lint">https://github.com/ansible/ansible-lint</a>
  */
 public abstract class AbstractAnsibleSensor implements Sensor {
+    /**
+     * Maximum length of an {@code ansible-lint} command line. The limit is far below the usual {@code ARG_MAX} on Unix
+     * systems so that the environment variables still fit; on Windows, a command line cannot exceed 32767 characters.
+     */
+    protected static final int MAX_COMMAND_LENGTH = System.getProperty("os.name").toLowerCase().contains("windows") ? 32000 : 131072;
+
     private static final Logger LOGGER = Loggers.get(AbstractAnsibleSensor.class);
+
+    /**
+     * First line printed by Python to the error output when ansible-lint crashes with an uncaught exception
+     */
+    private static final String PYTHON_TRACEBACK = "Traceback (most recent call last):";
+
+    /**
+     * Prefix of the name of the JSON summary of the analysis, written to the working directory of the scanner and
+     * followed by the name of the sensor class
+     */
+    static final String SUMMARY_FILE_PREFIX = "ansible-summary-";
+
+    /**
+     * Results of the version probes per executables, shared by all the sensors of the analysis
+     */
+    private static final Map<String, CompletableFuture<VersionProbe>> VERSION_PROBES = new ConcurrentHashMap<>();
+
     /**
      * The underlying file system that will give access to the files to be analyzed
      */
@@ -72,6 +107,55 @@ public abstract class AbstractAnsibleSensor implements Sensor {
      * Flag used to make sure we notify about warnings disabled only once
      */
     private boolean infoWarningsShown = false;
+    /**
+     * Parser of the {@code ansible-lint} output, reset for each analysis with the dialect of the detected version
+     */
+    private AnsibleLintOutputParser outputParser = new AnsibleLintOutputParser(null);
+    /**
+     * URIs of the paths printed by {@code ansible-lint}, so that a file with several issues is resolved only once
+     */
+    private final Map<String, URI> resolvedURIs = new ConcurrentHashMap<>();
+    /**
+     * Output format requested to {@code ansible-lint}, {@link AnsibleLintCapabilities#FORMAT_PEP8} or a structured format
+     */
+    private String outputFormat = AnsibleLintCapabilities.FORMAT_PEP8;
+    /**
+     * Messages printed to the error output by {@code ansible-lint}, reset for each analysis and logged at its end
+     */
+    private AnsibleLintWarnings warnings;
+    /**
+     * Maximum time a command may run, in milliseconds, or 0 if unlimited
+     */
+    private volatile long commandTimeout = 0;
+    /**
+     * Maximum virtual memory of a command, in megabytes, or 0 if unlimited
+     */
+    private volatile long memoryLimit = 0;
+    /**
+     * Files whose {@code ansible-lint} execution crashed or exceeded the resource limits, their issues may be incomplete
+     */
+    private final Set<InputFile> incompleteFiles = new HashSet<>();
+    /**
+     * Processes started by {@link #streamCommand(List, Consumer, Consumer)} that are still running, killed if the
+     * analysis is interrupted
+     */
+    private final Set<Process> runningProcesses = ConcurrentHashMap.newKeySet();
+    /**
+     * Recording the executed commands are written to or replayed from, {@code null} if the commands are just executed
+     */
+    private volatile AnsibleLintRecording recording;
+    /**
+     * Phase of the issue saving in progress, if its event is recorded, so that the rule key lookups are timed
+     */
+    private AnsibleSensorEvents.Phase savePhase;
+    /**
+     * Timeline of the analysis, {@code null} if the analysis is not traced
+     */
+    private volatile AnsibleLintTrace trace;
+    /**
+     * Performance figures of the current analysis
+     */
+    private volatile AnsibleLintStatistics statistics;
 
 
     /**
@@ -103,60 +187,873 @@ public abstract class AbstractAnsibleSensor implements Sensor {
             return;
         }
 
+        trace = openTrace(context);
+        statistics = new AnsibleLintStatistics(fileSystem.baseDir().toPath());
+        long start = System.nanoTime();
+        try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.analysis(trace, getClass().getSimpleName())) {
+            analyze(context, extraAnsibleLintArgs);
+            phase.files(scannedFiles.size());
+        } finally {
+            writeTrace();
+        }
+        statistics.setAnalysisTime(System.nanoTime() - start);
+        reportStatistics(context);
+    }
+
+    /**
+     * Analyzes the files with {@code ansible-lint}, see {@link #executeWithAnsibleLint(SensorContext, List)}
+     */
+    private void analyze(SensorContext context, @Nullable List<String> extraAnsibleLintArgs) {
+        // Resource limits of the commands
+        commandTimeout = context.config().getLong(AnsibleSettings.ANSIBLE_LINT_TIMEOUT_KEY).filter(timeout -> timeout > 0).orElse(0L) * 1000;
+        memoryLimit = context.config().getLong(AnsibleSettings.ANSIBLE_LINT_MEMORY_LIMIT_KEY).filter(limit -> limit > 0).orElse(0L);
+        if (memoryLimit > 0 && !ProcessWatchdog.isMemoryLimitSupported()) {
+            LOGGER.warn("The memory limit of ansible-lint is only supported on Linux, it is ignored");
+            memoryLimit = 0;
+        }
+
+        warnings = new AnsibleLintWarnings(fileSystem.baseDir().toPath());
+
+        // Record the executed commands or replay them
+        try {
+            recording = openRecording(context);
+        } catch (IOException|IllegalArgumentException e) {
+            LOGGER.error("Cannot read the ansible-lint recording, analysis skipped: {}", e.getMessage());
+            return;
+        }
+
+        // Probe the versions in the background (unless already done by another sensor) while the files are prepared
+        CompletableFuture<VersionProbe> versionProbe = probeVersions(context);
+        List<InputFile> inputFiles = new ArrayList<>();
+        fileSystem.inputFiles(mainFilesPredicate).forEach(inputFiles::add);
+        boolean entryPoints = context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_ENTRY_POINTS_KEY).orElse(false);
+        AnsibleDependencyGraph dependencyGraph = !entryPoints &&
+                !context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_CACHE_KEY).orElse(false) &&
+                !context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_KEY).orElse(false) ? null :
+                AnsibleDependencyGraph.build(getPaths(inputFiles), fileSystem.baseDir().toPath(), getCacheDirectory(context).resolve("dependencies"));
+
         // Log versions
-        logVersions(context);
+        String ansibleLintVersion = logVersions(versionProbe);
+        AnsibleLintCapabilities capabilities = AnsibleLintCapabilities.parse(ansibleLintVersion);
+        LOGGER.debug("ansible-lint capabilities: version {}, formats {}, rule ids {}", capabilities, capabilities.getOutputFormats(), capabilities.getRuleIdStyle());
+        outputParser = new AnsibleLintOutputParser(AnsibleLintOutputParser.getDialect(capabilities));
+        outputFormat = getOutputFormat(context, capabilities);
 
-        for (InputFile inputFile : fileSystem.inputFiles(mainFilesPredicate)) {
-            LOGGER.debug("Analyzing file: " + inputFile.filename());
-            scannedFiles.add(inputFile);
+        // Take the issues of the files that did not change from the results of the last analysis (incremental mode)
+        // or from the cache
+        String fingerprint = getFingerprint(context, extraAnsibleLintArgs, ansibleLintVersion);
+        AnsibleLintCache cache = openCache(context, fingerprint, dependencyGraph);
+        AnsibleLintResultStore resultStore = openResultStore(context, fingerprint);
+        Map<URI, Set<AnsibleLintIssue>> lastResults = (resultStore == null) ? null : resultStore.load();
+        Set<InputFile> changedFiles = (lastResults == null) ? null : getChangedFiles(context, inputFiles);
+        if (changedFiles != null && dependencyGraph != null) {
+            // The playbooks that reach a changed role or included file must be linted again
+            Set<Path> dependents = dependencyGraph.getDependents(getPaths(changedFiles));
+            inputFiles.stream().filter(inputFile -> dependents.contains(Paths.get(inputFile.uri()))).forEach(changedFiles::add);
+        }
+        List<InputFile> filesToLint = new ArrayList<>();
+        for (InputFile inputFile : inputFiles) {
+            if (changedFiles != null && !changedFiles.contains(inputFile) && lastResults.containsKey(inputFile.uri())) {
+                LOGGER.debug("{} did not change, issues taken from the last analysis", inputFile.filename());
+                scannedFiles.add(inputFile);
+                lastResults.get(inputFile.uri()).forEach(issue -> registerIssue(inputFile.uri(), issue));
+                continue;
+            }
+            Map<URI, Set<AnsibleLintIssue>> cachedIssues = (cache == null) ? null : cache.get(inputFile);
+            if (cachedIssues == null) {
+                filesToLint.add(inputFile);
+            } else {
+                LOGGER.debug("Issues of {} taken from the cache", inputFile.filename());
+                scannedFiles.add(inputFile);
+                cachedIssues.forEach((uri, issues) -> issues.forEach(issue -> registerIssue(uri, issue)));
+            }
+        }
+        statistics.setFilesLinted(filesToLint.size());
+        if (changedFiles != null) {
+            LOGGER.info("Incremental analysis: {} of {} file(s) to be analyzed", inputFiles.size() - scannedFiles.size(), inputFiles.size());
+        }
 
-            // Build ansible-lint command
-            List<String> command = new ArrayList<>(Arrays.asList(getAnsibleLintPath(context), "-p", "--nocolor", "-q"));
-            String confPath = getAnsibleLintConfPath(context);
-            if (!"".equals(confPath.trim())) {
-                command.addAll(Arrays.asList("-c", confPath));
+        // Group the files to be analyzed in batches, each batch being linted by a single ansible-lint execution. In
+        // role-aware mode, roles are linted as a whole and separately from the playbooks, which do not descend into them.
+        List<String> baseCommand = getAnsibleLintCommand(context, extraAnsibleLintArgs, capabilities);
+        List<String> fileCommand = new ArrayList<>(baseCommand);
+        Map<Path, List<InputFile>> roles = getRoles(inputFiles);
+        Set<Path> rolesToLint = new LinkedHashSet<>();
+        List<InputFile> files = new ArrayList<>();
+        if (context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_ROLE_AWARE_KEY).orElse(false)) {
+            roles.keySet().forEach(roleDir -> fileCommand.addAll(Arrays.asList("--exclude", roleDir.toString())));
+            for (InputFile inputFile : filesToLint) {
+                Path roleDir = AnsibleDependencyGraph.getRoleDir(Paths.get(inputFile.uri()));
+                if (roleDir == null) {
+                    files.add(inputFile);
+                } else {
+                    rolesToLint.add(roleDir);
+                }
             }
-            if (extraAnsibleLintArgs != null) {
-                command.addAll(extraAnsibleLintArgs);
+        } else {
+            files.addAll(filesToLint);
+        }
+        List<LintTarget> fileTargets = new ArrayList<>();
+        if (entryPoints) {
+            fileTargets.addAll(getEntryPoints(files, dependencyGraph, fileCommand.size() > baseCommand.size(), rolesToLint));
+            LOGGER.debug("{} entry point(s) and {} role(s) to be linted for {} file(s)", fileTargets.size(), rolesToLint.size(), filesToLint.size());
+        } else {
+            files.forEach(inputFile -> fileTargets.add(new LintTarget(inputFile)));
+        }
+        List<LintTarget> roleTargets = new ArrayList<>();
+        rolesToLint.forEach(roleDir -> roleTargets.add(new LintTarget(roleDir.toString(), roles.get(roleDir))));
+        int batchSize = getBatchSize(context);
+        List<List<LintTarget>> batches = new ArrayList<>(getBatches(fileTargets, getCommandLength(fileCommand), batchSize, MAX_COMMAND_LENGTH));
+        int fileBatches = batches.size();
+        batches.addAll(getBatches(roleTargets, getCommandLength(baseCommand), batchSize, MAX_COMMAND_LENGTH));
+
+        // Submit all batches to a pool of workers: as this is a work-stealing pool, idle workers pick the batches queued
+        // by busy ones
+        int parallelism = getParallelism(context);
+        LOGGER.debug("Running ansible-lint on {} batch(es) of files with {} worker(s)", batches.size(), parallelism);
+        AnsibleLintDaemon daemon = startDaemon(context);
+        ExecutorService executor = Executors.newWorkStealingPool(parallelism);
+        try {
+            List<Function<List<LintTarget>, Future<CommandResult>>> linters = new ArrayList<>();
+            List<Future<CommandResult>> results = new ArrayList<>();
+            for (int i = 0; i < batches.size(); i++) {
+                List<String> command = (i < fileBatches) ? fileCommand : baseCommand;
+                Function<List<LintTarget>, Future<CommandResult>> linter = batch -> executor.submit(() -> lint(batch, command, daemon));
+                linters.add(linter);
+                results.add(linter.apply(batches.get(i)));
+            }
+
+            // Results are consumed in the submission order so that the outcome is the same as a sequential execution
+            for (int i = 0; i < batches.size(); i++) {
+                if (!processBatch(context, batches.get(i), results.get(i), linters.get(i), cache)) {
+                    return;
+                }
             }
-            command.add(new File(inputFile.uri()).getAbsolutePath());
+        } finally {
+            // If the analysis was interrupted or aborted, the commands still running are killed with their child
+            // processes: the worker threads, blocked on their output, then complete promptly
+            executor.shutdownNow();
+            runningProcesses.forEach(ProcessWatchdog::killTree);
+            if (daemon != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    daemon.kill();
+                }
+                daemon.close();
+            }
+            String summary = warnings.getSummary();
+            if (summary != null) {
+                LOGGER.warn(summary);
+            }
+        }
+
+        // Save all found issues
+        saveIssues(context);
+
+        if (cache != null) {
+            LOGGER.info("ansible-lint cache: {} hit(s), {} miss(es)", cache.getHits(), cache.getMisses());
+            statistics.setCacheHits(cache.getHits());
+        }
+        if (resultStore != null) {
+            Map<URI, Set<AnsibleLintIssue>> results = new HashMap<>();
+            scannedFiles.stream()
+                    .filter(inputFile -> !incompleteFiles.contains(inputFile))
+                    .forEach(inputFile -> results.put(inputFile.uri(), allIssues.getOrDefault(inputFile.uri(), Collections.emptySet())));
+            resultStore.save(results);
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the analysis parameters that are common to all linted files, used to identify the
+     * cache entries and the results of the last analysis
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param extraAnsibleLintArgs the optional list of command arguments for {@code ansible-lint}. May be {@code null}.
+     * @param ansibleLintVersion the output of {@code ansible-lint --version} or {@code null} if unknown
+     * @return the fingerprint or {@code null} if neither the cache nor the incremental analysis are enabled, or if the
+     * fingerprint could not be computed
+     * @see AnsibleLintCache#fingerprint(String, Path, List, Collection)
+     */
+    @Nullable
+    private String getFingerprint(SensorContext context, @Nullable List<String> extraAnsibleLintArgs, @Nullable String ansibleLintVersion) {
+        if (!context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_CACHE_KEY).orElse(false) &&
+                !context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_KEY).orElse(false)) {
+            return null;
+        }
+        if (ansibleLintVersion == null) {
+            LOGGER.warn("ansible-lint version unknown, the cache will not be used");
+            return null;
+        }
+
+        String confPath = getAnsibleLintConfPath(context);
+        File confFile = "".equals(confPath.trim()) ? new File(fileSystem.baseDir(), ".ansible-lint") : resolve(confPath);
+        List<String> activeRules = context.activeRules().findByRepository(AnsibleCheckRepository.REPOSITORY_KEY).stream()
+                .map(rule -> rule.ruleKey().toString())
+                .collect(Collectors.toList());
+        // The structured formats give other messages and the columns: their results are not shared with the pep8 format
+        List<String> args = new ArrayList<>();
+        if (AnsibleLintReportReader.isStructured(outputFormat)) {
+            args.addAll(Arrays.asList("-f", outputFormat));
+        }
+        if (extraAnsibleLintArgs != null) {
+            args.addAll(extraAnsibleLintArgs);
+        }
+        try {
+            return AnsibleLintCache.fingerprint(ansibleLintVersion, confFile.toPath(), args, activeRules);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot open the ansible-lint cache, all files will be linted: {}", e.getMessage());
+            return null;
+        }
+    }
 
-            // Execute Ansible Lint and get a parsable output
-            List<String> output = new ArrayList<>();
-            List<String> error = new ArrayList<>();
+    /**
+     * Opens the cache of {@code ansible-lint} results if the plugin is configured to use it
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param fingerprint the fingerprint of the analysis parameters, {@code null} if unknown
+     * @param dependencyGraph the dependencies between the files of the project, {@code null} if unknown
+     * @return the cache or {@code null} if the cache is not to be used or could not be opened
+     * @see AnsibleSettings#ANSIBLE_LINT_CACHE_KEY
+     */
+    @Nullable
+    private AnsibleLintCache openCache(SensorContext context, @Nullable String fingerprint, @Nullable AnsibleDependencyGraph dependencyGraph) {
+        if (fingerprint == null || !context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_CACHE_KEY).orElse(false)) {
+            return null;
+        }
+
+        Path cacheDir = getCacheDirectory(context);
+        try {
+            LOGGER.debug("Using ansible-lint cache in {}", cacheDir);
+            Files.createDirectories(cacheDir);
+            return new AnsibleLintCache(cacheDir, fingerprint, dependencyGraph);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot open the ansible-lint cache, all files will be linted: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens the store of the results of the last analysis if the plugin is configured to run incremental analyses. The
+     * results are stored in the cache directory.
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param fingerprint the fingerprint of the analysis parameters, {@code null} if unknown
+     * @return the result store or {@code null} if the analysis is not incremental
+     * @see AnsibleSettings#ANSIBLE_LINT_INCREMENTAL_KEY
+     */
+    @Nullable
+    private AnsibleLintResultStore openResultStore(SensorContext context, @Nullable String fingerprint) {
+        if (fingerprint == null || !context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_KEY).orElse(false)) {
+            return null;
+        }
+        return new AnsibleLintResultStore(getCacheDirectory(context).resolve("results-" + fingerprint));
+    }
+
+    private static List<Path> getPaths(Collection<InputFile> inputFiles) {
+        return inputFiles.stream().map(inputFile -> Paths.get(inputFile.uri())).collect(Collectors.toList());
+    }
+
+    private Path getCacheDirectory(SensorContext context) {
+        String cachePath = context.config().get(AnsibleSettings.ANSIBLE_LINT_CACHE_PATH_KEY).orElse("");
+        return ("".equals(cachePath.trim()) ? new File(fileSystem.workDir(), "ansible-lint-cache") : resolve(cachePath)).toPath();
+    }
+
+    /**
+     * Returns the files added or changed since the reference analysis. The status of the files computed by SonarQube is
+     * used if available, otherwise the changed files are listed with {@code git diff} against the reference set with
+     * {@link AnsibleSettings#ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY} or against the pull request base branch.
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param inputFiles the files to be analyzed
+     * @return the changed files or {@code null} if they could not be determined
+     */
+    @Nullable
+    protected Set<InputFile> getChangedFiles(SensorContext context, List<InputFile> inputFiles) {
+        // If all files are seen as new, SonarQube does not know the previous state of the files (first analysis of a
+        // branch, or server version that does not compute the status)
+        if (inputFiles.stream().allMatch(inputFile -> inputFile.status() == null || inputFile.status() == InputFile.Status.ADDED) &&
+                !inputFiles.isEmpty()) {
+            return getChangedFilesFromGit(context, inputFiles);
+        }
+        return inputFiles.stream()
+                .filter(inputFile -> inputFile.status() != InputFile.Status.SAME)
+                .collect(Collectors.toSet());
+    }
+
+    @Nullable
+    private Set<InputFile> getChangedFilesFromGit(SensorContext context, List<InputFile> inputFiles) {
+        String reference = context.config().get(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY).orElse("");
+        if ("".equals(reference.trim())) {
+            reference = context.config().get("sonar.pullrequest.base").orElse("");
+        }
+        if ("".equals(reference.trim())) {
+            LOGGER.info("File status unknown and no incremental analysis reference set, all files will be linted");
+            return null;
+        }
+
+        List<String> output = new ArrayList<>();
+        List<String> error = new ArrayList<>();
+        try {
+            // Comparing with the working tree also lists the uncommitted changes
+            int status = executeCommand(Arrays.asList("git", "diff", "--name-only", "--relative", reference.trim()), output, error);
+            if (status != 0) {
+                LOGGER.warn("Cannot list the files changed since {}, all files will be linted: {}", reference, String.join(" ", error));
+                return null;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot list the files changed since {}, all files will be linted", reference);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        Set<Path> changedPaths = output.stream()
+                .filter(path -> !path.trim().isEmpty())
+                .map(path -> fileSystem.baseDir().toPath().resolve(path.trim()).toAbsolutePath().normalize())
+                .collect(Collectors.toSet());
+        return inputFiles.stream()
+                .filter(inputFile -> changedPaths.contains(Paths.get(inputFile.uri()).toAbsolutePath().normalize()))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Resolves a path relative to the project base directory
+     *
+     * @param path an absolute path or a path relative to the project base directory
+     * @return the resolved file
+     */
+    private File resolve(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(fileSystem.baseDir(), path);
+    }
+
+    /**
+     * Opens the recording of the executed commands, if configured. The replay takes precedence over the recording.
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @return the recording or {@code null} if the commands are to be executed as usual
+     * @throws IOException if the recording to be replayed cannot be read
+     * @throws IllegalArgumentException if the recording to be replayed is not valid
+     * @see AnsibleSettings#ANSIBLE_LINT_RECORD_KEY
+     * @see AnsibleSettings#ANSIBLE_LINT_REPLAY_KEY
+     */
+    @Nullable
+    private AnsibleLintRecording openRecording(SensorContext context) throws IOException {
+        String replayPath = context.config().get(AnsibleSettings.ANSIBLE_LINT_REPLAY_KEY).map(String::trim).orElse("");
+        String recordPath = context.config().get(AnsibleSettings.ANSIBLE_LINT_RECORD_KEY).map(String::trim).orElse("");
+        String source = getClass().getSimpleName();
+        if (!replayPath.isEmpty()) {
+            if (!recordPath.isEmpty()) {
+                LOGGER.warn("Both a recording and a replay of the ansible-lint executions are set, the executions are replayed");
+            }
+            LOGGER.info("Replaying the ansible-lint executions recorded in {}", replayPath);
+            return AnsibleLintRecording.replay(resolve(replayPath).toPath(), source, fileSystem.baseDir().toPath());
+        }
+        if (!recordPath.isEmpty()) {
             try {
-                executeCommand(command, output, error);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return;
+                AnsibleLintRecording commandRecording = AnsibleLintRecording.record(resolve(recordPath).toPath(), source, fileSystem.baseDir().toPath());
+                LOGGER.info("Recording the ansible-lint executions in {}", recordPath);
+                return commandRecording;
             } catch (IOException e) {
-                return;
-            }
-            // We may ignore ansible-lint warnings
-            if (context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_DISABLE_WARNINGS_KEY).orElse(false) &&
-                    (!LOGGER.isDebugEnabled() && !LOGGER.isTraceEnabled())) {
-                if (!infoWarningsShown) {
-                    LOGGER.info("You asked not to see the ansible-lint warnings. If you think the analysis result is not relevant, change the plug-in configuration to see warnings or run the scanner in debug mode to see the warnings.");
-                    infoWarningsShown = true;
+                LOGGER.warn("Cannot record the ansible-lint executions in {}: {}", recordPath, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts tracing the phases of the analysis, if configured
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @return the trace or {@code null} if the analysis is not traced
+     * @see AnsibleSettings#ANSIBLE_LINT_TRACE_KEY
+     */
+    @Nullable
+    private AnsibleLintTrace openTrace(SensorContext context) {
+        String tracePath = context.config().get(AnsibleSettings.ANSIBLE_LINT_TRACE_KEY).map(String::trim).orElse("");
+        return tracePath.isEmpty() ? null : AnsibleLintTrace.open(resolve(tracePath).toPath(), getClass().getSimpleName());
+    }
+
+    /**
+     * Writes the timeline of the analysis, if traced
+     */
+    private void writeTrace() {
+        AnsibleLintTrace analysisTrace = trace;
+        trace = null;
+        if (analysisTrace == null) {
+            return;
+        }
+        try {
+            analysisTrace.write();
+            LOGGER.info("Analysis timeline written to {}", analysisTrace.getFile());
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write the analysis timeline to {}: {}", analysisTrace.getFile(), e.getMessage());
+        }
+    }
+
+    /**
+     * Logs the performance figures of the analysis, saves them as measures of the project (if
+     * {@link #isSavingMeasures()}) and writes them to a JSON file in the working directory of the scanner
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @see AnsibleMetrics
+     */
+    private void reportStatistics(SensorContext context) {
+        LOGGER.info(statistics.getSummary());
+        if (isSavingMeasures()) {
+            try {
+                statistics.save(context);
+            } catch (IllegalStateException|UnsupportedOperationException e) {
+                // The measures of the project can only be saved once, by the first analysis of the module
+                LOGGER.debug("Ansible analysis measures already saved: {}", e.getMessage());
+            }
+        }
+        Path summaryFile = fileSystem.workDir().toPath().resolve(SUMMARY_FILE_PREFIX + getClass().getSimpleName() + ".json");
+        try {
+            statistics.write(summaryFile);
+            LOGGER.debug("Analysis summary written to {}", summaryFile);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write the analysis summary to {}: {}", summaryFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Tells if the performance figures of the analysis are saved as measures of the project. Only one sensor may save
+     * them: the sensors of the other plugins only write their figures to their JSON summary.
+     *
+     * @return {@code true} by default
+     * @see AnsibleMetrics
+     */
+    protected boolean isSavingMeasures() {
+        return true;
+    }
+
+    /**
+     * Builds the {@code ansible-lint} command line, without the files to be analyzed
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param extraAnsibleLintArgs the optional list of command arguments for {@code ansible-lint}. May be {@code null}.
+     * @param capabilities the capabilities of ansible-lint, used to pick the options
+     * @return the command to be executed, the paths of the files to be analyzed must be appended to it
+     */
+    private List<String> getAnsibleLintCommand(SensorContext context, @Nullable List<String> extraAnsibleLintArgs, AnsibleLintCapabilities capabilities) {
+        List<String> command = new ArrayList<>();
+        command.add(getAnsibleLintPath(context));
+        if (AnsibleLintReportReader.isStructured(outputFormat)) {
+            command.addAll(Arrays.asList("-f", outputFormat));
+        } else {
+            command.addAll(capabilities.getParseableOptions());
+        }
+        command.addAll(Arrays.asList("--nocolor", "-q"));
+        if (capabilities.supportsOffline()) {
+            // Do not let ansible-lint install the project requirements before linting
+            command.add("--offline");
+        }
+        String confPath = getAnsibleLintConfPath(context);
+        if (!"".equals(confPath.trim())) {
+            command.addAll(Arrays.asList("-c", confPath));
+        }
+        if (extraAnsibleLintArgs != null) {
+            command.addAll(extraAnsibleLintArgs);
+        }
+        return command;
+    }
+
+    /**
+     * Starts the ansible-lint daemon if the plugin is configured to use it
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @return the started daemon or {@code null} if the daemon is not to be used or could not be started
+     * @see AnsibleSettings#ANSIBLE_LINT_DAEMON_KEY
+     */
+    @Nullable
+    private AnsibleLintDaemon startDaemon(SensorContext context) {
+        if (!context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_DAEMON_KEY).orElse(false)) {
+            return null;
+        }
+        AnsibleLintRecording commandRecording = recording;
+        if (commandRecording != null && commandRecording.isReplaying()) {
+            LOGGER.debug("The ansible-lint daemon is not used as the executions are replayed");
+            return null;
+        }
+        try {
+            Path script = AnsibleLintDaemon.extractScript(fileSystem.workDir().toPath());
+            AnsibleLintDaemon daemon = new AnsibleLintDaemon(
+                    Arrays.asList(getPythonPath(context), "-u", script.toString()),
+                    fileSystem.baseDir(),
+                    new File(fileSystem.workDir(), "ansible-lint-daemon.log"));
+            daemon.start();
+            return daemon;
+        } catch (IOException e) {
+            LOGGER.warn("Cannot start the ansible-lint daemon, ansible-lint will be executed for every batch of files: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Executes {@code ansible-lint} on a batch of files. This method is called by the worker threads.
+     *
+     * @param batch the files or roles to be analyzed
+     * @param baseCommand the {@code ansible-lint} command line, without the files to be analyzed
+     * @param daemon the ansible-lint daemon to send the command arguments to or {@code null} if a new {@code ansible-lint}
+     *               process must be executed
+     * @return the issues found and the error output of the command
+     * @throws IOException if an error occurred executing the command
+     * @throws InterruptedException if the thread was interrupted while waiting for the command to complete
+     */
+    private CommandResult lint(List<LintTarget> batch, List<String> baseCommand, @Nullable AnsibleLintDaemon daemon) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(baseCommand);
+        for (LintTarget target : batch) {
+            LOGGER.debug("Analyzing: " + target.path);
+            command.add(target.path);
+        }
+
+        // Execute Ansible Lint and parse its output while it is running: only the issues are kept
+        CommandResult result = new CommandResult();
+        List<String> targets = batch.stream().map(target -> target.path).collect(Collectors.toList());
+        long executionStart = System.nanoTime();
+        try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.lint(trace, targets)) {
+            Consumer<String> parser = getOutputConsumer(result);
+            Consumer<String> output = parser;
+            if (phase.isEnabled()) {
+                output = line -> {
+                    phase.addLine(line);
+                    long start = System.nanoTime();
+                    parser.accept(line);
+                    phase.addParseTime(System.nanoTime() - start);
+                };
+            }
+            if (daemon != null) {
+                // The daemon replies with the whole output at once
+                List<String> lines = new ArrayList<>();
+                long start = System.nanoTime();
+                int status = daemon.lint(command.subList(1, command.size()), lines, result.error);
+                phase.exitCode(status);
+                AnsibleLintRecording commandRecording = recording;
+                if (commandRecording != null) {
+                    commandRecording.add(command, status, (System.nanoTime() - start) / 1_000_000, lines, result.error, null);
+                }
+                lines.forEach(output);
+            } else {
+                try {
+                    phase.exitCode(streamCommand(command, output, result.error::add));
+                } catch (LimitExceededException e) {
+                    result.limitExceeded = e.getMessage();
+                    phase.exitCode(-1);
+                }
+            }
+            if (parser instanceof AnsibleLintReportReader && result.limitExceeded == null) {
+                long start = System.nanoTime();
+                try {
+                    ((AnsibleLintReportReader)parser).finish();
+                } catch (IOException e) {
+                    LOGGER.warn("Invalid ansible-lint {} report, ignoring the rest of it: {}", outputFormat, e.getMessage());
+                    result.crashed = true;
                 }
-                error = error.stream().filter(line -> !line.startsWith("WARNING ")).collect(Collectors.toList());
+                phase.addParseTime(System.nanoTime() - start);
             }
-            // We ignore errors if they are only empty strings
-            if (!error.isEmpty() && !"".equals(error.stream().reduce((str1, str2) -> str1.trim() + str2.trim()).orElse(""))) {
-                LOGGER.warn("Messages printed to error output during analysis:{}{}",
-                        System.getProperty("line.separator"),
-                        String.join(System.getProperty("line.separator"), error)
-                );
+            if (phase.isEnabled()) {
+                phase.issues(result.issues.values().stream().mapToInt(Set::size).sum());
             }
+        }
+        statistics.addExecution(targets, System.nanoTime() - executionStart);
+        result.crashed |= result.error.stream().anyMatch(line -> line.startsWith(PYTHON_TRACEBACK));
+        return result;
+    }
 
-            LOGGER.debug(output.size() + " issue(s) found");
-            // Parse output and register all issues: as ansible-lint processes only playbooks but returns issues related to
-            // used roles, we need to save all issues first before being able to get role issues and save them
-            output.forEach(this::registerIssue);
+    /**
+     * Returns the consumer of the standard output of {@code ansible-lint}, which parses the issues and adds them to
+     * the passed result
+     *
+     * @param result the result of the {@code ansible-lint} execution
+     * @return the consumer of the output lines
+     */
+    private Consumer<String> getOutputConsumer(CommandResult result) {
+        if (AnsibleLintReportReader.isStructured(outputFormat)) {
+            return new AnsibleLintReportReader(outputFormat, (path, issue) -> result.addIssue(resolveURI(path), issue));
         }
+        return rawIssue -> {
+            Map.Entry<URI, AnsibleLintIssue> issue = parseIssue(rawIssue);
+            if (issue != null) {
+                result.addIssue(issue.getKey(), issue.getValue());
+            }
+        };
+    }
 
-        // Save all found issues
-        saveIssues(context);
+    /**
+     * Splits the passed targets into batches of at most {@code batchSize} targets. A batch is also closed before the
+     * command line gets longer than {@code maxCommandLength}, so that the operating system limit for the arguments of a
+     * process ({@code ARG_MAX}) is never exceeded. A target whose path alone exceeds the limit gets its own batch.
+     *
+     * @param targets the files or roles to be analyzed
+     * @param baseCommandLength the length of the command line without the targets
+     * @param batchSize the maximum number of targets per batch
+     * @param maxCommandLength the maximum length of a command line
+     * @return the batches of targets, in the order of the passed targets
+     */
+    static List<List<LintTarget>> getBatches(List<LintTarget> targets, int baseCommandLength, int batchSize, int maxCommandLength) {
+        List<List<LintTarget>> batches = new ArrayList<>();
+        List<LintTarget> batch = new ArrayList<>();
+        int commandLength = baseCommandLength;
+        for (LintTarget target : targets) {
+            int argLength = getArgLength(target.path);
+            if (!batch.isEmpty() && (batch.size() >= batchSize || commandLength + argLength > maxCommandLength)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                commandLength = baseCommandLength;
+            }
+            batch.add(target);
+            commandLength += argLength;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Selects the minimal set of files to be passed to {@code ansible-lint} so that all the passed files are linted:
+     * playbooks are linted with the roles and task files they reach, so these files do not need to be linted on their
+     * own. The roles whose files are not reached from any playbook are added to {@code rolesToLint}, to be linted as a
+     * whole.
+     *
+     * @param files the files to be linted
+     * @param dependencyGraph the dependencies between the files of the project
+     * @param rolesExcluded {@code true} if the roles are excluded from the analysis of the playbooks (role-aware mode)
+     * @param rolesToLint the role directories to be linted, completed by this method
+     * @return the entry points, each of them covering the files it reaches
+     * @see AnsibleFileType
+     */
+    private static List<LintTarget> getEntryPoints(List<InputFile> files, AnsibleDependencyGraph dependencyGraph, boolean rolesExcluded, Set<Path> rolesToLint) {
+        Map<Path, InputFile> filesByPath = new LinkedHashMap<>();
+        files.forEach(inputFile -> filesByPath.put(Paths.get(inputFile.uri()).toAbsolutePath().normalize(), inputFile));
+        Map<Path, AnsibleFileType> types = new HashMap<>();
+        filesByPath.keySet().forEach(path -> types.put(path, AnsibleFileType.classify(path)));
+
+        // Playbooks imported by other playbooks are linted through them
+        Map<Path, Set<Path>> reached = new LinkedHashMap<>();
+        Set<Path> reachedFromPlaybooks = new HashSet<>();
+        filesByPath.keySet().stream().filter(path -> types.get(path) == AnsibleFileType.PLAYBOOK).forEach(path -> {
+            Set<Path> dependencies = dependencyGraph.getDependencies(path, !rolesExcluded);
+            reached.put(path, dependencies);
+            reachedFromPlaybooks.addAll(dependencies);
+        });
+
+        Set<Path> roots = new HashSet<>(reached.keySet());
+        roots.removeAll(reachedFromPlaybooks);
+
+        List<LintTarget> targets = new ArrayList<>();
+        Set<Path> covered = new HashSet<>();
+        for (Map.Entry<Path, Set<Path>> playbook : reached.entrySet()) {
+            if (!roots.contains(playbook.getKey()) && roots.stream().anyMatch(root -> reached.get(root).contains(playbook.getKey()))) {
+                continue;
+            }
+            List<InputFile> targetFiles = new ArrayList<>();
+            targetFiles.add(filesByPath.get(playbook.getKey()));
+            covered.add(playbook.getKey());
+            for (Path dependency : playbook.getValue()) {
+                if (filesByPath.containsKey(dependency) && covered.add(dependency)) {
+                    targetFiles.add(filesByPath.get(dependency));
+                }
+            }
+            targets.add(new LintTarget(getPath(targetFiles.get(0)), targetFiles));
+        }
+
+        // Files not reached from any playbook
+        for (Map.Entry<Path, InputFile> file : filesByPath.entrySet()) {
+            if (covered.contains(file.getKey())) {
+                continue;
+            }
+            if (types.get(file.getKey()) == AnsibleFileType.ROLE_FILE) {
+                rolesToLint.add(AnsibleDependencyGraph.getRoleDir(file.getKey()));
+            } else {
+                targets.add(new LintTarget(file.getValue()));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Returns the files of the project that belong to a role, per role directory
+     *
+     * @param inputFiles the files of the project
+     * @return the files of each role
+     * @see AnsibleDependencyGraph#getRoleDir(Path)
+     */
+    private static Map<Path, List<InputFile>> getRoles(List<InputFile> inputFiles) {
+        Map<Path, List<InputFile>> roles = new TreeMap<>();
+        for (InputFile inputFile : inputFiles) {
+            Path roleDir = AnsibleDependencyGraph.getRoleDir(Paths.get(inputFile.uri()));
+            if (roleDir != null) {
+                roles.computeIfAbsent(roleDir, dir -> new ArrayList<>()).add(inputFile);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Returns the absolute path of the passed file, as passed to {@code ansible-lint}
+     *
+     * @param inputFile a file to be analyzed
+     * @return the absolute path of the file
+     */
+    private static String getPath(InputFile inputFile) {
+        return new File(inputFile.uri()).getAbsolutePath();
+    }
+
+    /**
+     * Returns the length of the passed command line, as counted by the operating system
+     *
+     * @param command a command line
+     * @return the number of bytes used by the command line arguments
+     */
+    private static int getCommandLength(List<String> command) {
+        return command.stream().mapToInt(AbstractAnsibleSensor::getArgLength).sum();
+    }
+
+    /**
+     * Returns the number of bytes used by a command line argument, including its separator
+     *
+     * @param arg a command line argument
+     * @return the argument length
+     */
+    private static int getArgLength(String arg) {
+        return arg.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+
+    /**
+     * Waits for the result of a batch and processes it. If {@code ansible-lint} crashed, the batch is split in halves
+     * that are linted again, recursively, until the files that make it crash are isolated: the other files of the batch
+     * still get their issues. The halves are submitted to the pool of workers at once, so that they are linted in
+     * parallel.
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param batch the files or roles of the batch
+     * @param result the pending result of the batch
+     * @param linter the function that submits a batch to the pool of workers
+     * @param cache the cache where the issues are stored for every linted file or {@code null} if there is no cache
+     * @return {@code false} if the analysis must be stopped because {@code ansible-lint} could not be executed or the
+     * thread was interrupted, {@code true} otherwise
+     */
+    private boolean processBatch(SensorContext context, List<LintTarget> batch, Future<CommandResult> result,
+                                 Function<List<LintTarget>, Future<CommandResult>> linter, @Nullable AnsibleLintCache cache) {
+        CommandResult batchResult;
+        try {
+            batchResult = result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batchResult = null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            batchResult = null;
+        }
+
+        if ((batchResult == null || batchResult.crashed) && batch.size() > 1 && !Thread.currentThread().isInterrupted()) {
+            LOGGER.debug("ansible-lint failed on a batch of {} targets, linting each half separately", batch.size());
+            List<LintTarget> firstHalf = batch.subList(0, batch.size() / 2);
+            List<LintTarget> secondHalf = batch.subList(batch.size() / 2, batch.size());
+            Future<CommandResult> firstResult = linter.apply(firstHalf);
+            Future<CommandResult> secondResult = linter.apply(secondHalf);
+            return processBatch(context, firstHalf, firstResult, linter, cache) &&
+                    processBatch(context, secondHalf, secondResult, linter, cache);
+        }
+
+        List<InputFile> batchFiles = new ArrayList<>();
+        batch.forEach(target -> batchFiles.addAll(target.files));
+        scannedFiles.addAll(batchFiles);
+        if (batchResult == null) {
+            // ansible-lint cannot be executed at all or the analysis was interrupted
+            return false;
+        }
+        try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.processResult(trace, batch.get(0).path, batchFiles.size())) {
+            processResult(context, batchResult, batchFiles, cache);
+            if (phase.isEnabled()) {
+                phase.issues(batchResult.issues.values().stream().mapToInt(Set::size).sum());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Logs the messages printed to the error output by {@code ansible-lint} and registers the issues it reported
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param result the outputs of an {@code ansible-lint} execution
+     * @param batch the files linted by the {@code ansible-lint} execution
+     * @param cache the cache where the issues are stored for every linted file or {@code null} if there is no cache
+     */
+    private void processResult(SensorContext context, CommandResult result, List<InputFile> batch, @Nullable AnsibleLintCache cache) {
+        if (result.limitExceeded != null) {
+            LOGGER.warn("ansible-lint was stopped ({}) while linting {}: the issues of these files may be incomplete",
+                    result.limitExceeded, batch.stream().map(AbstractAnsibleSensor::getPath).collect(Collectors.joining(", ")));
+            incompleteFiles.addAll(batch);
+        } else if (result.crashed) {
+            LOGGER.warn("ansible-lint crashed while linting {}: the issues of these files may be incomplete",
+                    batch.stream().map(AbstractAnsibleSensor::getPath).collect(Collectors.joining(", ")));
+            incompleteFiles.addAll(batch);
+        }
+        // We may ignore ansible-lint warnings
+        if (context.config().getBoolean(AnsibleSettings.ANSIBLE_LINT_DISABLE_WARNINGS_KEY).orElse(false) &&
+                (!LOGGER.isDebugEnabled() && !LOGGER.isTraceEnabled())) {
+            if (!infoWarningsShown) {
+                LOGGER.info("You asked not to see the ansible-lint warnings. If you think the analysis result is not relevant, change the plug-in configuration to see warnings or run the scanner in debug mode to see the warnings.");
+                infoWarningsShown = true;
+            }
+            result.error.removeIf(line -> line.startsWith("WARNING "));
+        }
+        // The messages are deduplicated and logged once at the end of the analysis
+        if (LOGGER.isDebugEnabled() && !result.error.isEmpty()) {
+            LOGGER.debug("Messages printed to error output:{}{}", System.getProperty("line.separator"),
+                    String.join(System.getProperty("line.separator"), result.error));
+        }
+        warnings.add(result.error, getPaths(batch));
+
+        // Register all issues, parsed while ansible-lint was running: as ansible-lint processes only playbooks but
+        // returns issues related to used roles, we need to save all issues first before being able to get role issues
+        // and save them
+        Map<URI, Set<AnsibleLintIssue>> batchIssues = result.issues;
+        LOGGER.debug(batchIssues.values().stream().mapToInt(Set::size).sum() + " issue(s) found");
+        batchIssues.forEach((uri, issues) -> issues.forEach(issue -> registerIssue(uri, issue)));
+
+        if (cache != null && result.limitExceeded == null && !result.crashed) {
+            // The issues reported on files that are not part of the batch (e.g. roles) cannot be attributed to a
+            // particular file of the batch: they are cached with every file of the batch
+            Set<URI> batchURIs = batch.stream().map(InputFile::uri).collect(Collectors.toSet());
+            for (InputFile inputFile : batch) {
+                Map<URI, Set<AnsibleLintIssue>> fileIssues = new HashMap<>(batchIssues);
+                fileIssues.keySet().removeIf(uri -> batchURIs.contains(uri) && !uri.equals(inputFile.uri()));
+                cache.put(inputFile, fileIssues);
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of files to be analyzed by a single {@code ansible-lint} execution
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @return the value of the plugin setting, or 1 if the setting is not strictly positive
+     * @see AnsibleSettings#ANSIBLE_LINT_BATCH_SIZE_KEY
+     */
+    protected int getBatchSize(SensorContext context) {
+        return context.config().getInt(AnsibleSettings.ANSIBLE_LINT_BATCH_SIZE_KEY)
+                .filter(batchSize -> batchSize > 0)
+                .orElse(1);
+    }
+
+    /**
+     * Returns the maximum number of {@code ansible-lint} processes to be run concurrently
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @return the value of the plugin setting if strictly positive, otherwise the number of processors available to the
+     * JVM (which takes into account the cgroup CPU quotas when running in a container)
+     * @see AnsibleSettings#ANSIBLE_LINT_PARALLELISM_KEY
+     */
+    protected int getParallelism(SensorContext context) {
+        return context.config().getInt(AnsibleSettings.ANSIBLE_LINT_PARALLELISM_KEY)
+                .filter(parallelism -> parallelism > 0)
+                .orElse(Runtime.getRuntime().availableProcessors());
     }
 
     /**
@@ -174,6 +1071,43 @@ public abstract class AbstractAnsibleSensor implements Sensor {
         return context.config().get(AnsibleSettings.ANSIBLE_LINT_CONF_PATH_KEY).orElse("");
     }
 
+    /**
+     * Returns the plugin configuration parameter (settings) that defines the path to the Python interpreter used to run
+     * the ansible-lint daemon
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @return the path to the Python interpreter or {@literal python3} if the plugin setting is not set
+     * @see AnsibleSettings#ANSIBLE_LINT_PYTHON_PATH_KEY
+     */
+    protected String getPythonPath(SensorContext context) {
+        return context.config().get(AnsibleSettings.ANSIBLE_LINT_PYTHON_PATH_KEY).orElse("python3");
+    }
+
+    /**
+     * Returns the output format to be requested to {@code ansible-lint}
+     *
+     * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @param capabilities the capabilities of ansible-lint
+     * @return the format of the plugin setting, or {@link AnsibleLintCapabilities#FORMAT_PEP8} if the setting is not set
+     * or if the format is not supported by ansible-lint
+     * @see AnsibleSettings#ANSIBLE_LINT_OUTPUT_FORMAT_KEY
+     */
+    private String getOutputFormat(SensorContext context, AnsibleLintCapabilities capabilities) {
+        String format = context.config().get(AnsibleSettings.ANSIBLE_LINT_OUTPUT_FORMAT_KEY).orElse(AnsibleLintCapabilities.FORMAT_PEP8).trim();
+        if (AnsibleLintCapabilities.FORMAT_PEP8.equals(format) || "".equals(format)) {
+            return AnsibleLintCapabilities.FORMAT_PEP8;
+        }
+        if (!AnsibleLintReportReader.isStructured(format)) {
+            LOGGER.warn("Unknown ansible-lint output format {}, using {}", format, AnsibleLintCapabilities.FORMAT_PEP8);
+            return AnsibleLintCapabilities.FORMAT_PEP8;
+        }
+        if (capabilities.isVersionKnown() && !capabilities.getOutputFormats().contains(format)) {
+            LOGGER.warn("ansible-lint {} does not support the {} output format, using {}", capabilities, format, AnsibleLintCapabilities.FORMAT_PEP8);
+            return AnsibleLintCapabilities.FORMAT_PEP8;
+        }
+        return format;
+    }
+
     /**
      * Executes a system command and writes the standard and error outputs to the passed
      * <code>StringBuilder</code> if not <code>null</code>
@@ -185,49 +1119,165 @@ public abstract class AbstractAnsibleSensor implements Sensor {
      * @throws IOException if an error occurred executing the command. See {@link ProcessBuilder#start()} and {@link Process#waitFor()}
      * @throws InterruptedException if an error occurred executing the command. See {@link ProcessBuilder#start()}
      *                                and {@link Process#waitFor()}
-     * @see ProcessBuilder#start()
-     * @see Process#waitFor()
+     * @see #streamCommand(List, Consumer, Consumer)
      */
     protected int executeCommand(List<String> command, List<String> stdOut, List<String> errOut) throws InterruptedException, IOException {
         assert stdOut != null;
         assert errOut != null;
 
+        return streamCommand(command, stdOut::add, errOut::add);
+    }
+
+    /**
+     * Executes a system command and passes every line of the standard output to the passed consumer as soon as it is
+     * printed, so that the output can be processed while the command is running and is never held in memory as a whole.
+     * The standard output is read by the calling thread; the error output is redirected to a temporary file, whose lines
+     * are passed to the error consumer once the command has exited. No other thread is involved and the pipes are never
+     * polled: the command cannot block on a full error pipe and its exit is awaited once its standard output is closed.
+     * <p>
+     * If a timeout or a memory limit is set (see {@link AnsibleSettings#ANSIBLE_LINT_TIMEOUT_KEY} and
+     * {@link AnsibleSettings#ANSIBLE_LINT_MEMORY_LIMIT_KEY}), the command is run through {@link ProcessWatchdog}, which
+     * kills its whole process tree when it runs for too long. The process tree is also killed if the command is still
+     * running when this method exits (interruption, error) or when the JVM exits.
+     * <p>
+     * If a recording is set (see {@link AnsibleSettings#ANSIBLE_LINT_RECORD_KEY}), the execution is appended to it. If
+     * a replay is set (see {@link AnsibleSettings#ANSIBLE_LINT_REPLAY_KEY}), the command is not executed: the recorded
+     * outputs and exit code are returned.
+     *
+     * @param command the command to be executed
+     * @param stdOut the consumer of the standard output lines
+     * @param errOut the consumer of the error output lines
+     * @return the command exit code
+     * @throws LimitExceededException if the command was stopped because it exceeded the timeout or the memory limit
+     * @throws IOException if an error occurred executing the command. See {@link ProcessBuilder#start()} and {@link Process#waitFor()}
+     * @throws InterruptedException if an error occurred executing the command. See {@link ProcessBuilder#start()}
+     *                                and {@link Process#waitFor()}
+     * @see ProcessBuilder#start()
+     * @see Process#waitFor()
+     */
+    protected int streamCommand(List<String> command, Consumer<String> stdOut, Consumer<String> errOut) throws InterruptedException, IOException {
+        try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.command(trace, command)) {
+            Consumer<String> out = stdOut;
+            if (phase.isEnabled()) {
+                out = line -> {
+                    phase.addLine(line);
+                    stdOut.accept(line);
+                };
+            }
+            int status = dispatchCommand(command, out, errOut);
+            phase.exitCode(status);
+            return status;
+        }
+    }
+
+    /**
+     * Executes, records or replays a command, see {@link #streamCommand(List, Consumer, Consumer)}
+     */
+    private int dispatchCommand(List<String> command, Consumer<String> stdOut, Consumer<String> errOut) throws InterruptedException, IOException {
+        AnsibleLintRecording commandRecording = recording;
+        if (commandRecording == null) {
+            return runCommand(command, stdOut, errOut);
+        }
+        if (commandRecording.isReplaying()) {
+            LOGGER.debug("Replaying command: {}", command);
+            return commandRecording.replay(command, stdOut, errOut);
+        }
+
+        List<String> recordedOut = new ArrayList<>();
+        List<String> recordedErr = new ArrayList<>();
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = runCommand(command, line -> {
+                recordedOut.add(line);
+                stdOut.accept(line);
+            }, line -> {
+                recordedErr.add(line);
+                errOut.accept(line);
+            });
+        } catch (LimitExceededException e) {
+            commandRecording.add(command, -1, (System.nanoTime() - start) / 1_000_000, recordedOut, recordedErr, e.getMessage());
+            throw e;
+        }
+        commandRecording.add(command, status, (System.nanoTime() - start) / 1_000_000, recordedOut, recordedErr, null);
+        return status;
+    }
+
+    /**
+     * Executes a system command, see {@link #streamCommand(List, Consumer, Consumer)}
+     */
+    private int runCommand(List<String> command, Consumer<String> stdOut, Consumer<String> errOut) throws InterruptedException, IOException {
         LOGGER.debug("Executing command: {}", command);
 
+        Path errFile = null;
+        Process p = null;
         try {
-            ProcessBuilder pb = new ProcessBuilder(command);
+            errFile = Files.createTempFile("ansible-lint-", ".err");
+            long timeout = commandTimeout;
+            long memory = memoryLimit;
+            // An unknown executable is not wrapped so that it is reported as usual by ProcessBuilder
+            boolean governed = (timeout > 0 || memory > 0) && findExecutable(command.get(0)) != null;
+            ProcessBuilder pb = new ProcessBuilder(governed ? ProcessWatchdog.wrap(command, memory) : command);
             LOGGER.debug("Work directory: {}", fileSystem.baseDir());
             pb.directory(fileSystem.baseDir());
-            Process p = pb.start();
+            pb.redirectError(errFile.toFile());
+            p = pb.start();
+            runningProcesses.add(p);
+            ProcessWatchdog.register(p);
+            ProcessWatchdog.Watch watch = (governed && timeout > 0) ? ProcessWatchdog.watch(p, timeout) : null;
 
-            // Read standard output
-            LineInputReader stdOutputReader = new LineInputReader(p.getInputStream());
-            stdOutputReader.start();
-            // Wait for thread to be ready
-            while (!stdOutputReader.isReady()) {
-                Thread.sleep(100);
-            }
-            // Get error output
-            LineInputReader errOutputReader = new LineInputReader(p.getErrorStream());
-            errOutputReader.start();
-            // Wait for thread to be ready
-            while (!errOutputReader.isReady()) {
-                Thread.sleep(100);
+            // Read standard output until the process closes it
+            int status;
+            try {
+                try (BufferedReader input = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                    String line;
+                    while ((line = input.readLine()) != null) {
+                        LOGGER.trace("Read from input: {}", line);
+                        stdOut.accept(line);
+                    }
+                }
+                status = p.waitFor();
+            } finally {
+                if (watch != null) {
+                    watch.cancel();
+                }
             }
 
-            int status = p.waitFor();
-
-            // Create standard output lines
-            stdOut.addAll(stdOutputReader.getOutput());
-
-            // Write error output if any
-            errOut.addAll(errOutputReader.getOutput());
+            // Then the error output
+            boolean outOfMemory = false;
+            try (BufferedReader input = new BufferedReader(new InputStreamReader(Files.newInputStream(errFile)))) {
+                String line;
+                while ((line = input.readLine()) != null) {
+                    LOGGER.trace("Read from error: {}", line);
+                    outOfMemory |= governed && memory > 0 && (line.contains("MemoryError") || line.contains("Cannot allocate memory"));
+                    errOut.accept(line);
+                }
+            }
 
+            if (watch != null && watch.isExpired()) {
+                throw new LimitExceededException("timeout of " + (timeout / 1000) + " s exceeded");
+            }
+            if (outOfMemory && status != 0) {
+                throw new LimitExceededException("memory limit of " + memory + " MB exceeded");
+            }
             return status;
+        } catch (LimitExceededException e) {
+            throw e;
         } catch (InterruptedException|IOException e) {
             LOGGER.error("Error executing command: {}", e.getMessage());
             LOGGER.debug("Stack trace:", e);
             throw e;
+        } finally {
+            if (p != null) {
+                if (p.isAlive()) {
+                    ProcessWatchdog.killTree(p);
+                }
+                runningProcesses.remove(p);
+                ProcessWatchdog.unregister(p);
+            }
+            if (errFile != null) {
+                Files.deleteIfExists(errFile);
+            }
         }
     }
 
@@ -239,39 +1289,56 @@ public abstract class AbstractAnsibleSensor implements Sensor {
      * @see #allIssues
      */
     protected boolean registerIssue(String rawIssue) {
-        Matcher oldSplitter = Pattern.compile("^(.*):([0-9]+): \\[E([^\\[]+)\\] (.*)$").matcher(rawIssue);
-        Matcher new43Splitter = Pattern.compile("^([^ ]+) (.+):([0-9]+)$").matcher(rawIssue);
-        Matcher new50Splitter = Pattern.compile("^(.*):([0-9]+): ([^ ]+)$").matcher(rawIssue);
-        Matcher new65Splitter = Pattern.compile("^(.*):([0-9]+): ([^ ]+) \\((.*)\\)$").matcher(rawIssue);
-
-        String filePath;
-        AnsibleLintIssue issue;
-        if (oldSplitter.matches()) {
-            filePath = oldSplitter.group(1);
-            issue = new AnsibleLintIssue(Integer.parseInt(oldSplitter.group(2)), oldSplitter.group(3), oldSplitter.group(4));
-        } else if (new43Splitter.matches()) {
-            filePath = new43Splitter.group(2);
-            issue = new AnsibleLintIssue(Integer.parseInt(new43Splitter.group(3)), new43Splitter.group(1));
-        } else if (new50Splitter.matches()) {
-            filePath = new50Splitter.group(1);
-            issue = new AnsibleLintIssue(Integer.parseInt(new50Splitter.group(2)), new50Splitter.group(3));
-        } else if (new65Splitter.matches()) {
-            filePath = new65Splitter.group(1);
-            issue = new AnsibleLintIssue(Integer.parseInt(new65Splitter.group(2)), new65Splitter.group(4));
-        } else {
-            LOGGER.warn("Invalid issue syntax, ignoring: " + rawIssue);
+        Map.Entry<URI, AnsibleLintIssue> issue = parseIssue(rawIssue);
+        if (issue == null) {
             return false;
         }
+        registerIssue(issue.getKey(), issue.getValue());
+        return true;
+    }
 
-        URI fileURI = (new File(filePath).isAbsolute())?new File(filePath).toURI():new File(fileSystem.baseDir(), filePath).toURI();
-        LOGGER.debug("Resolved file URI: {}", fileURI);
+    /**
+     * Adds the passed issue to the list of known issues
+     *
+     * @param fileURI the URI of the file where the issue was found
+     * @param issue the issue
+     * @see #allIssues
+     */
+    protected void registerIssue(URI fileURI, AnsibleLintIssue issue) {
+        allIssues.computeIfAbsent(fileURI, uri -> new HashSet<>()).add(issue);
+    }
 
-        if (!allIssues.containsKey(fileURI)) {
-            allIssues.put(fileURI, new HashSet<>());
+    /**
+     * Parses an issue as returned by {@code ansible-lint}
+     *
+     * @param rawIssue an issue as returned by {@code ansible-lint}
+     * @return the URI of the file where the issue was found and the issue, or {@code null} if the passed string is not
+     * a valid issue
+     */
+    @Nullable
+    private Map.Entry<URI, AnsibleLintIssue> parseIssue(String rawIssue) {
+        Map.Entry<String, AnsibleLintIssue> parsed = outputParser.parse(rawIssue);
+        if (parsed == null) {
+            LOGGER.warn("Invalid issue syntax, ignoring: " + rawIssue);
+            return null;
         }
-        allIssues.get(fileURI).add(issue);
 
-        return true;
+        return new AbstractMap.SimpleImmutableEntry<>(resolveURI(parsed.getKey()), parsed.getValue());
+    }
+
+    /**
+     * Returns the URI of a file reported by {@code ansible-lint}
+     *
+     * @param filePath the path of the file as printed by {@code ansible-lint}, absolute or relative to the project
+     *                 directory
+     * @return the URI of the file
+     */
+    private URI resolveURI(String filePath) {
+        return resolvedURIs.computeIfAbsent(filePath, path -> {
+            URI uri = (new File(path).isAbsolute())?new File(path).toURI():new File(fileSystem.baseDir(), path).toURI();
+            LOGGER.debug("Resolved file URI: {}", uri);
+            return uri;
+        });
     }
 
     /**
@@ -281,14 +1348,22 @@ public abstract class AbstractAnsibleSensor implements Sensor {
      * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
      */
     protected void saveIssues(SensorContext context) {
-        for (InputFile inputFile : scannedFiles) {
-            LOGGER.debug("Saving issues for {}", inputFile.uri());
-            Set<AnsibleLintIssue> issues = allIssues.getOrDefault(inputFile.uri(), new HashSet<>());
-            for (AnsibleLintIssue issue : issues) {
-                // Saved issues must have been registered first
-                LOGGER.debug("  Saving issue: {}", issue);
-                saveIssue(context, inputFile, issue);
+        try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.saveIssues(trace)) {
+            savePhase = phase.isEnabled() ? phase : null;
+            int issueCount = 0;
+            for (InputFile inputFile : scannedFiles) {
+                LOGGER.debug("Saving issues for {}", inputFile.uri());
+                Set<AnsibleLintIssue> issues = allIssues.getOrDefault(inputFile.uri(), new HashSet<>());
+                for (AnsibleLintIssue issue : issues) {
+                    // Saved issues must have been registered first
+                    LOGGER.debug("  Saving issue: {}", issue);
+                    saveIssue(context, inputFile, issue);
+                }
+                issueCount += issues.size();
             }
+            phase.files(scannedFiles.size()).issues(issueCount);
+        } finally {
+            savePhase = null;
         }
     }
 
@@ -300,12 +1375,17 @@ public abstract class AbstractAnsibleSensor implements Sensor {
      * @param issue an issue that ansible-lint detected on the input file
      */
     protected void saveIssue(SensorContext context, InputFile inputFile, AnsibleLintIssue issue) {
+        AnsibleSensorEvents.Phase phase = savePhase;
+        long start = (phase == null) ? 0 : System.nanoTime();
         RuleKey ruleKey = getRuleKey(context, issue.getId());
 
         // Old rules (ansible-lint < 3.5) had id ANSIBLE... but now it is E... so we may need to add the heading E back
         if (ruleKey == null) {
             ruleKey = getRuleKey(context, "E" + issue.getId());
         }
+        if (phase != null) {
+            phase.addRuleKeyLookupTime(System.nanoTime() - start);
+        }
 
         if (ruleKey == null) {
             LOGGER.debug("Rule " + issue.getId() + " ignored, not found in repository");
@@ -313,9 +1393,14 @@ public abstract class AbstractAnsibleSensor implements Sensor {
         }
 
         NewIssue newIssue = context.newIssue().forRule(ruleKey);
+        TextRange range = inputFile.selectLine(issue.getLine());
+        if (issue.getColumn() > 0 && issue.getColumn() <= range.end().lineOffset()) {
+            // Highlight the line from the reported column
+            range = inputFile.newRange(issue.getLine(), issue.getColumn() - 1, issue.getLine(), range.end().lineOffset());
+        }
         NewIssueLocation location = newIssue.newLocation()
                 .on(inputFile)
-                .at(inputFile.selectLine(issue.getLine()));
+                .at(range);
         if (issue.getMessage() != null) {
             location.message(issue.getMessage());
         }
@@ -337,38 +1422,139 @@ public abstract class AbstractAnsibleSensor implements Sensor {
     }
 
     /**
-     * Log the versions of ansible and ansible-lint
+     * Starts probing the versions of Ansible and ansible-lint, unless the same executables (same paths and modification
+     * times) have already been probed during the analysis
      *
      * @param context the execution sensor context (taken from the method {@link #execute(SensorContext)} of the child class)
+     * @return the result of the probe, available once the {@code --version} commands complete
      */
-    private void logVersions(SensorContext context) {
-        // Ansible first
-        logVersion("ansible", new ArrayList<>(Arrays.asList("ansible", "--version")));
+    private CompletableFuture<VersionProbe> probeVersions(SensorContext context) {
+        String ansibleLintPath = getAnsibleLintPath(context);
+        AnsibleLintTrace probeTrace = trace;
+        String key = getExecutableKey("ansible") + File.pathSeparator + getExecutableKey(ansibleLintPath);
+        return VERSION_PROBES.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+            try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.versionProbe(probeTrace)) {
+                VersionProbe probe = new VersionProbe();
+                probe.ansible = probeVersion(probe, Arrays.asList("ansible", "--version"));
+                probe.ansibleLint = probeVersion(probe, Arrays.asList(ansibleLintPath, "--version"));
+                if (probe.interrupted) {
+                    // Do not keep an incomplete result
+                    VERSION_PROBES.remove(k);
+                }
+                phase.version((probe.ansibleLint == null) ? null : String.join(" ", probe.ansibleLint));
+                return probe;
+            }
+        }));
+    }
 
-        // Then ansible-lint
-        logVersion("ansible-lint", new ArrayList<>(Arrays.asList(getAnsibleLintPath(context), "--version")));
+    @Nullable
+    private List<String> probeVersion(VersionProbe probe, List<String> command) {
+        if (probe.interrupted) {
+            return null;
+        }
+        List<String> output = new ArrayList<>();
+        try {
+            executeCommand(command, output, new ArrayList<>());
+            return output;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            probe.interrupted = true;
+            return null;
+        }
     }
 
     /**
-     * Log the output of a command that is supposed to return the version of a command
+     * Returns a key that identifies an executable: its absolute path, searched in the {@code PATH} if needed, and its
+     * modification time
      *
-     * @param name    the name of the command
-     * @param command the command to be executed
+     * @param executable the path or the name of an executable
+     * @return the key of the executable
      */
-    private void logVersion(String name, List<String> command) {
-        List<String> output = new ArrayList<>();
-        List<String> error = new ArrayList<>();
+    private String getExecutableKey(String executable) {
+        File file = findExecutable(executable);
+        return (file == null) ? executable : (file.getAbsolutePath() + "@" + file.lastModified());
+    }
+
+    /**
+     * Finds an executable, in the {@code PATH} if the passed name is not a path
+     *
+     * @param executable the path or the name of an executable
+     * @return the executable file or {@code null} if it does not exist
+     */
+    @Nullable
+    private File findExecutable(String executable) {
+        File file = new File(executable);
+        if (!file.isAbsolute() && executable.indexOf('/') < 0 && executable.indexOf(File.separatorChar) < 0) {
+            String path = System.getenv("PATH");
+            for (String dir : (path == null) ? new String[0] : path.split(File.pathSeparator)) {
+                for (String extension : Arrays.asList("", ".exe", ".cmd", ".bat")) {
+                    File candidate = new File(dir, executable + extension);
+                    if (candidate.isFile()) {
+                        return candidate;
+                    }
+                }
+            }
+            return null;
+        }
+        if (!file.isAbsolute()) {
+            file = new File(fileSystem.baseDir(), executable);
+        }
+        return file.isFile() ? file : null;
+    }
 
+    /**
+     * Clears the results of the version probes
+     */
+    static void clearVersionProbes() {
+        VERSION_PROBES.clear();
+    }
+
+    /**
+     * Logs the versions of Ansible and ansible-lint
+     *
+     * @param versionProbe the result of the version probe
+     * @return the output of {@code ansible-lint --version} or {@code null} if it could not be executed
+     */
+    @Nullable
+    private String logVersions(CompletableFuture<VersionProbe> versionProbe) {
+        VersionProbe probe;
         try {
-            executeCommand(command, output, error);
-            LOGGER.info(name + " version:");
-            output.forEach(LOGGER::info);
-        } catch (IOException e) {
-            LOGGER.warn("Cannot get " + name + " version");
+            probe = versionProbe.get();
         } catch (InterruptedException e) {
-            LOGGER.warn("Cannot get " + name + " version");
             Thread.currentThread().interrupt();
+            probe = new VersionProbe();
+        } catch (ExecutionException e) {
+            LOGGER.debug("Version probe failed", e);
+            probe = new VersionProbe();
+        }
+        if (probe.interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Ansible first
+        logVersion("ansible", probe.ansible);
+
+        // Then ansible-lint
+        return logVersion("ansible-lint", probe.ansibleLint);
+    }
+
+    /**
+     * Log the output of a command that is supposed to return the version of a command
+     *
+     * @param name   the name of the command
+     * @param output the output of the command or {@code null} if it could not be executed
+     * @return the output of the command or {@code null} if it could not be executed
+     */
+    @Nullable
+    private String logVersion(String name, @Nullable List<String> output) {
+        if (output == null) {
+            LOGGER.warn("Cannot get " + name + " version");
+            return null;
         }
+        LOGGER.info(name + " version:");
+        output.forEach(LOGGER::info);
+        return String.join("\n", output);
     }
 
     /**
@@ -380,6 +1566,8 @@ public abstract class AbstractAnsibleSensor implements Sensor {
         // message is mostly there for information: the couple (line number, error id) is sufficient to uniquely identify
         // an issue
         private String message;
+        // column, starting at 1, or 0 if unknown (only available with the structured output formats)
+        private int column;
 
 
         public AnsibleLintIssue(int line, String id) {
@@ -393,6 +1581,11 @@ public abstract class AbstractAnsibleSensor implements Sensor {
             this.message = message;
         }
 
+        public AnsibleLintIssue(int line, String id, String message, int column) {
+            this(line, id, message);
+            this.column = column;
+        }
+
         public int getLine() {
             return line;
         }
@@ -405,6 +1598,10 @@ public abstract class AbstractAnsibleSensor implements Sensor {
             return message;
         }
 
+        public int getColumn() {
+            return column;
+        }
+
         @Override
         public String toString() {
             return line + ": [E" + id + "]" + ((message == null)?"":(" " + message));
@@ -426,44 +1623,59 @@ public abstract class AbstractAnsibleSensor implements Sensor {
     }
 
     /**
-     * Reader class for {@code ansible-lint} output
+     * Path passed to {@code ansible-lint}, a file or a role directory, and the files of the project it covers
      */
-    private final class LineInputReader extends Thread {
-        private final List<String> output = new ArrayList<>();
-        private BufferedReader input;
-        private boolean ready = false;
+    static final class LintTarget {
+        private final String path;
+        private final List<InputFile> files;
 
 
-        public LineInputReader(InputStream input) {
-            this.input = new BufferedReader(new InputStreamReader(input));
+        LintTarget(InputFile inputFile) {
+            this(getPath(inputFile), Collections.singletonList(inputFile));
         }
 
-        @Override
-        public void run() {
-            try {
-                String line;
-                ready = true;
-                while ((line = input.readLine()) != null) {
-                    output.add(line);
-                    LOGGER.trace("Read from input: {}", line);
-                }
-            } catch (IOException e) {
-                LOGGER.error("Cannot read input stream", e);
-            } finally {
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    LOGGER.error("Unknown error", e);
-                }
-            }
+        LintTarget(String path, List<InputFile> files) {
+            this.path = path;
+            this.files = files;
         }
 
-        public List<String> getOutput() {
-            return output;
+        List<InputFile> getFiles() {
+            return files;
         }
+    }
+
+    /**
+     * Outputs of the {@code --version} commands of Ansible and ansible-lint
+     */
+    private static final class VersionProbe {
+        private List<String> ansible;
+        private List<String> ansibleLint;
+        private boolean interrupted = false;
+    }
 
-        public boolean isReady() {
-            return ready;
+    /**
+     * Outputs of a command execution
+     */
+    private static final class CommandResult {
+        private final Map<URI, Set<AnsibleLintIssue>> issues = new HashMap<>();
+        private final List<String> error = new ArrayList<>();
+        // reason why the execution was stopped, null if it completed
+        private String limitExceeded;
+        // true if ansible-lint crashed, in which case the issues are incomplete
+        private boolean crashed = false;
+
+
+        void addIssue(URI fileURI, AnsibleLintIssue issue) {
+            issues.computeIfAbsent(fileURI, uri -> new HashSet<>()).add(issue);
+        }
+    }
+
+    /**
+     * Exception thrown when a command is stopped because it exceeded the timeout or the memory limit
+     */
+    protected static class LimitExceededException extends IOException {
+        public LimitExceededException(String message) {
+            super(message);
         }
     }
 }
@@ -0,0 +1,410 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Graph of the dependencies between the Ansible files of a project: playbooks reach roles (with {@code roles:},
+ * {@code import_role} and {@code include_role}), task files (with {@code import_tasks}, {@code include_tasks} and
+ * {@code include}) and other playbooks (with {@code import_playbook}), and roles reach other roles through the
+ * {@code dependencies} of their {@code meta/main.yml} file. Reaching a role means reaching all of its files.
+ * <p>
+ * The references found in each file are persisted in an index file so that only the files modified since the last
+ * analysis are parsed again. References are resolved each time the graph is built since their resolution depends on
+ * the other files of the project.
+ */
+final class AnsibleDependencyGraph {
+    private static final Logger LOGGER = Loggers.get(AnsibleDependencyGraph.class);
+
+    private static final String ROLE_REF = "role:";
+    private static final String FILE_REF = "file:";
+
+    private static final Pattern ROLES_KEY = Pattern.compile("^(\\s*)(?:-\\s+)?(?:roles|dependencies)\\s*:\\s*(?:#.*)?$");
+    private static final Pattern LIST_ITEM = Pattern.compile("^(\\s*)-\\s+(.*)$");
+    private static final Pattern ROLE_NAME = Pattern.compile("^(?:-\\s+)?\\{?\\s*role\\s*:\\s*(.+?)\\s*(?:[,}].*)?$");
+    private static final Pattern ITEM_NAME = Pattern.compile("^-\\s+\\{?\\s*name\\s*:\\s*(.+?)\\s*(?:[,}].*)?$");
+    private static final Pattern INCLUDE = Pattern.compile("^(\\s*)(?:-\\s+)?(?:ansible\\.(?:builtin|legacy)\\.)?(include_tasks|import_tasks|include|import_playbook|include_role|import_role)\\s*:\\s*(.*?)\\s*$");
+    private static final Pattern INCLUDE_NAME = Pattern.compile("^(?:name|file)\\s*[:=]\\s*(.+?)\\s*$");
+    private static final Pattern FREE_FORM_NAME = Pattern.compile("(?:^|\\s)name=(\\S+)");
+
+    private final Map<Path, Set<Path>> dependencies = new HashMap<>();
+    private final Map<Path, Set<Path>> dependents = new HashMap<>();
+
+
+    private AnsibleDependencyGraph() {
+    }
+
+
+    /**
+     * Builds the dependency graph of the passed files
+     *
+     * @param files the files of the project. Only these files can be part of the graph.
+     * @param baseDir the project base directory
+     * @param indexFile the file where the references found in each file are persisted, {@code null} not to persist them
+     * @return the dependency graph
+     */
+    static AnsibleDependencyGraph build(Collection<Path> files, Path baseDir, @Nullable Path indexFile) {
+        Set<Path> knownFiles = new HashSet<>();
+        files.forEach(file -> knownFiles.add(file.toAbsolutePath().normalize()));
+        Path root = baseDir.toAbsolutePath().normalize();
+
+        // Parse the files, using the references persisted in the index for the files that did not change
+        Map<Path, IndexEntry> index = (indexFile == null) ? new HashMap<>() : readIndex(indexFile);
+        Map<Path, IndexEntry> newIndex = new HashMap<>();
+        int parsed = 0;
+        for (Path file : knownFiles) {
+            String stamp = getStamp(file);
+            IndexEntry entry = index.get(file);
+            if (entry == null || !entry.stamp.equals(stamp)) {
+                entry = new IndexEntry(stamp, parse(file));
+                parsed++;
+            }
+            newIndex.put(file, entry);
+        }
+        if (indexFile != null) {
+            writeIndex(indexFile, newIndex);
+        }
+
+        // Resolve the references
+        Map<String, List<Path>> roles = getRoles(knownFiles);
+        AnsibleDependencyGraph graph = new AnsibleDependencyGraph();
+        newIndex.forEach((file, entry) -> {
+            for (String reference : entry.references) {
+                for (Path target : resolve(file, reference, root, knownFiles, roles)) {
+                    if (!target.equals(file)) {
+                        graph.dependencies.computeIfAbsent(file, f -> new HashSet<>()).add(target);
+                        graph.dependents.computeIfAbsent(target, f -> new HashSet<>()).add(file);
+                    }
+                }
+            }
+        });
+        LOGGER.debug("Dependency graph built: {} file(s) parsed, {} file(s) taken from the index", parsed, knownFiles.size() - parsed);
+        return graph;
+    }
+
+    /**
+     * Returns all the files reached, directly or not, from the passed file
+     *
+     * @param file a file of the project
+     * @return the files reached from {@code file}, not including it
+     */
+    Set<Path> getDependencies(Path file) {
+        return getDependencies(file, true);
+    }
+
+    /**
+     * Returns all the files reached, directly or not, from the passed file
+     *
+     * @param file a file of the project
+     * @param throughRoles {@code false} to ignore the files of the roles and the files only reached through them
+     * @return the files reached from {@code file}, not including it
+     */
+    Set<Path> getDependencies(Path file, boolean throughRoles) {
+        return traverse(Collections.singleton(file.toAbsolutePath().normalize()), dependencies,
+                next -> throughRoles || getRoleDir(next) == null);
+    }
+
+    /**
+     * Returns all the files that reach, directly or not, one of the passed files
+     *
+     * @param files files of the project
+     * @return the files from which one of {@code files} is reached, not including the passed files unless they reach
+     * each other
+     */
+    Set<Path> getDependents(Collection<Path> files) {
+        Set<Path> start = new HashSet<>();
+        files.forEach(file -> start.add(file.toAbsolutePath().normalize()));
+        return traverse(start, dependents, next -> true);
+    }
+
+
+    private static Set<Path> traverse(Set<Path> start, Map<Path, Set<Path>> edges, Predicate<Path> filter) {
+        Set<Path> visited = new HashSet<>();
+        Deque<Path> queue = new ArrayDeque<>(start);
+        while (!queue.isEmpty()) {
+            for (Path next : edges.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (filter.test(next) && visited.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Resolves a reference found in a file
+     *
+     * @return the files targeted by the reference, empty if it cannot be resolved
+     */
+    private static Set<Path> resolve(Path file, String reference, Path baseDir, Set<Path> knownFiles, Map<String, List<Path>> roles) {
+        if (reference.startsWith(ROLE_REF)) {
+            Path target = resolveRole(file, reference.substring(ROLE_REF.length()), baseDir, roles);
+            if (target == null) {
+                return Collections.emptySet();
+            }
+            Set<Path> roleFiles = new HashSet<>();
+            knownFiles.stream().filter(f -> f.startsWith(target)).forEach(roleFiles::add);
+            return roleFiles;
+        }
+
+        // Task files and playbooks are searched relatively to the including file, then to the tasks directory of the
+        // role (if the including file is part of a role), then to the project root
+        String name = reference.substring(FILE_REF.length());
+        Path roleDir = getRoleDir(file);
+        List<Path> candidates = new ArrayList<>();
+        candidates.add(file.getParent().resolve(name));
+        if (roleDir != null) {
+            candidates.add(roleDir.resolve("tasks").resolve(name));
+        }
+        candidates.add(baseDir.resolve(name));
+        for (Path candidate : candidates) {
+            Path normalized = candidate.normalize();
+            if (knownFiles.contains(normalized)) {
+                return Collections.singleton(normalized);
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    @Nullable
+    private static Path resolveRole(Path file, String name, Path baseDir, Map<String, List<Path>> roles) {
+        // Role given by its path
+        if (name.contains("/")) {
+            for (Path dir : Arrays.asList(file.getParent(), baseDir)) {
+                Path candidate = dir.resolve(name).normalize();
+                if (Files.isDirectory(candidate)) {
+                    return candidate;
+                }
+            }
+            name = name.substring(name.lastIndexOf('/') + 1);
+        }
+
+        // Role given by its name (possibly fully qualified): prefer the roles directory next to the file
+        List<Path> candidates = roles.get(name);
+        if (candidates == null) {
+            candidates = roles.get(name.substring(name.lastIndexOf('.') + 1));
+        }
+        if (candidates == null) {
+            return null;
+        }
+        for (Path candidate : candidates) {
+            if (file.startsWith(candidate.getParent().getParent())) {
+                return candidate;
+            }
+        }
+        return candidates.get(0);
+    }
+
+    /**
+     * Indexes the role directories by role name. A role directory is a directory located in a {@code roles} directory
+     * and that contains at least one file of the project.
+     */
+    private static Map<String, List<Path>> getRoles(Set<Path> files) {
+        Map<String, Set<Path>> roles = new TreeMap<>();
+        for (Path file : files) {
+            Path roleDir = getRoleDir(file);
+            if (roleDir != null) {
+                roles.computeIfAbsent(roleDir.getFileName().toString(), name -> new TreeSet<>()).add(roleDir);
+            }
+        }
+        Map<String, List<Path>> result = new HashMap<>();
+        roles.forEach((name, dirs) -> result.put(name, new ArrayList<>(dirs)));
+        return result;
+    }
+
+    /**
+     * Returns the directory of the role the passed file belongs to, i.e. the last {@code roles/<name>} directory in its
+     * path
+     *
+     * @return the role directory or {@code null} if the file is not part of a role
+     */
+    @Nullable
+    static Path getRoleDir(Path file) {
+        for (Path dir = file.getParent(); dir != null && dir.getParent() != null; dir = dir.getParent()) {
+            if (dir.getParent().getFileName() != null && "roles".equals(dir.getParent().getFileName().toString())) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extracts the references to roles, task files and playbooks found in a file
+     *
+     * @param file the file to be parsed
+     * @return the references, prefixed with {@link #ROLE_REF} or {@link #FILE_REF}
+     */
+    static List<String> parse(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException|RuntimeException e) {
+            LOGGER.debug("Cannot parse {}: {}", file, e.getMessage());
+            return Collections.emptyList();
+        }
+
+        List<String> references = new ArrayList<>();
+        int rolesIndent = -1;
+        String pendingInclude = null;
+        int includeIndent = -1;
+        for (String line : lines) {
+            String content = line.trim();
+            if (content.isEmpty() || content.startsWith("#")) {
+                continue;
+            }
+            int indent = line.indexOf(content);
+
+            // Block form of include_role/import_role/include_tasks/...: look for the name or file parameter
+            if (pendingInclude != null) {
+                if (indent > includeIndent) {
+                    Matcher m = INCLUDE_NAME.matcher(content);
+                    if (m.matches()) {
+                        addReference(references, pendingInclude, m.group(1));
+                        pendingInclude = null;
+                    }
+                    continue;
+                }
+                pendingInclude = null;
+            }
+
+            // List of roles of a play or of role dependencies. Items may have the same indentation as the key.
+            if (rolesIndent >= 0) {
+                Matcher item = LIST_ITEM.matcher(line);
+                if (indent > rolesIndent || item.matches() && item.group(1).length() == rolesIndent) {
+                    Matcher m = ROLE_NAME.matcher(content);
+                    Matcher name = ITEM_NAME.matcher(content);
+                    if (m.matches()) {
+                        addReference(references, ROLE_REF, m.group(1));
+                    } else if (name.matches()) {
+                        addReference(references, ROLE_REF, name.group(1));
+                    } else if (item.matches() && !item.group(2).contains(":")) {
+                        addReference(references, ROLE_REF, item.group(2));
+                    }
+                    continue;
+                }
+                rolesIndent = -1;
+            }
+
+            Matcher m = ROLES_KEY.matcher(line);
+            if (m.matches()) {
+                rolesIndent = line.indexOf(content.startsWith("-") ? content.substring(1).trim() : content);
+                continue;
+            }
+            m = INCLUDE.matcher(line);
+            if (m.matches()) {
+                String type = m.group(2).endsWith("_role") ? ROLE_REF : FILE_REF;
+                String value = m.group(3);
+                if (value.isEmpty() || value.startsWith("#")) {
+                    pendingInclude = type;
+                    includeIndent = m.group(1).length();
+                } else if (ROLE_REF.equals(type)) {
+                    Matcher name = FREE_FORM_NAME.matcher(value);
+                    addReference(references, type, name.find() ? name.group(1) : value);
+                } else {
+                    addReference(references, type, value.split("\\s+")[0]);
+                }
+            }
+        }
+        return references;
+    }
+
+    private static void addReference(List<String> references, String type, String value) {
+        String name = value.contains(" #") ? value.substring(0, value.indexOf(" #")).trim() : value.trim();
+        if (name.length() >= 2 && (name.startsWith("'") && name.endsWith("'") || name.startsWith("\"") && name.endsWith("\""))) {
+            name = name.substring(1, name.length() - 1).trim();
+        }
+        // Templated names cannot be resolved statically
+        if (!name.isEmpty() && !name.contains("{{") && !name.contains("\t")) {
+            references.add(type + name);
+        }
+    }
+
+    private static String getStamp(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Reads the index file: one line per file, made of the tab-separated file path, modification stamp and references
+     */
+    private static Map<Path, IndexEntry> readIndex(Path indexFile) {
+        Map<Path, IndexEntry> index = new HashMap<>();
+        if (!Files.isRegularFile(indexFile)) {
+            return index;
+        }
+        try {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                if (fields.length >= 2) {
+                    index.put(Paths.get(fields[0]), new IndexEntry(fields[1], Arrays.asList(fields).subList(2, fields.length)));
+                }
+            }
+        } catch (IOException|RuntimeException e) {
+            LOGGER.warn("Cannot read the dependency index, all files will be parsed: {}", e.getMessage());
+            index.clear();
+        }
+        return index;
+    }
+
+    private static void writeIndex(Path indexFile, Map<Path, IndexEntry> index) {
+        List<String> lines = new ArrayList<>();
+        index.forEach((file, entry) -> {
+            StringBuilder sb = new StringBuilder(file.toString()).append('\t').append(entry.stamp);
+            entry.references.forEach(reference -> sb.append('\t').append(reference));
+            lines.add(sb.toString());
+        });
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write the dependency index: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * Entry of the dependency index
+     */
+    private static final class IndexEntry {
+        private final String stamp;
+        private final List<String> references;
+
+
+        private IndexEntry(String stamp, List<String> references) {
+            this.stamp = stamp;
+            this.references = references;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Kind of Ansible file, as guessed from its location and its content
+ */
+enum AnsibleFileType {
+    /**
+     * Playbook: a list of plays or of playbook imports
+     */
+    PLAYBOOK,
+    /**
+     * File of a role: tasks, handlers, variables, defaults, meta...
+     */
+    ROLE_FILE,
+    /**
+     * List of tasks included or imported by playbooks or other task files
+     */
+    INCLUDED_TASKS,
+    /**
+     * Inventory or variable file
+     */
+    DATA;
+
+
+    private static final Logger LOGGER = Loggers.get(AnsibleFileType.class);
+
+    private static final Set<String> DATA_DIRECTORIES = new HashSet<>(Arrays.asList("group_vars", "host_vars", "inventory", "inventories"));
+    private static final Pattern PLAY = Pattern.compile("^(?:-\\s+|\\s{2})(?:hosts|(?:ansible\\.builtin\\.)?import_playbook)\\s*:.*$");
+
+
+    /**
+     * Guesses the type of a file
+     *
+     * @param file the file to be classified
+     * @return the type of the file. Files that cannot be read are considered as playbooks so that they are linted.
+     */
+    static AnsibleFileType classify(Path file) {
+        if (AnsibleDependencyGraph.getRoleDir(file) != null) {
+            return ROLE_FILE;
+        }
+        for (Path dir = file.getParent(); dir != null && dir.getFileName() != null; dir = dir.getParent()) {
+            if (DATA_DIRECTORIES.contains(dir.getFileName().toString())) {
+                return DATA;
+            }
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException|RuntimeException e) {
+            LOGGER.debug("Cannot read {}: {}", file, e.getMessage());
+            return PLAYBOOK;
+        }
+        // Only lists (of plays or tasks) are executable, other documents are data
+        String first = lines.stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#") && !line.startsWith("---") && !line.startsWith("%"))
+                .findFirst()
+                .orElse("");
+        if (!first.startsWith("-")) {
+            return DATA;
+        }
+        return lines.stream().anyMatch(line -> PLAY.matcher(line).matches()) ? PLAYBOOK : INCLUDED_TASKS;
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of the issues found by {@code ansible-lint}. Each entry holds the issues reported when linting a
+ * file, including the issues reported for other files (such as the roles used by a playbook). Entries are stored in
+ * files named after their key, which is a hash of:
+ * <ul>
+ *     <li>the path and the content of the linted file</li>
+ *     <li>the ansible-lint version</li>
+ *     <li>the content of the ansible-lint configuration file</li>
+ *     <li>the names and content of the extra rules passed to ansible-lint</li>
+ *     <li>the active rules</li>
+ *     <li>the path and the content of the files reached from the linted file, if a dependency graph is given</li>
+ * </ul>
+ * so that entries never need to be invalidated: a modification of any of these items just leads to another key.
+ */
+final class AnsibleLintCache {
+    private static final Logger LOGGER = Loggers.get(AnsibleLintCache.class);
+
+    private final Path directory;
+    private final String fingerprint;
+    private final AnsibleDependencyGraph dependencyGraph;
+    private int hits = 0;
+    private int misses = 0;
+
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory where the entries are stored
+     * @param fingerprint hash of the analysis parameters that are common to all linted files
+     */
+    AnsibleLintCache(Path directory, String fingerprint) {
+        this(directory, fingerprint, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory where the entries are stored
+     * @param fingerprint hash of the analysis parameters that are common to all linted files
+     * @param dependencyGraph the dependencies between the files of the project, so that the entry of a playbook is
+     *                        invalidated when one of the roles or files it reaches changes. May be {@code null}.
+     */
+    AnsibleLintCache(Path directory, String fingerprint, @Nullable AnsibleDependencyGraph dependencyGraph) {
+        this.directory = directory;
+        this.fingerprint = fingerprint;
+        this.dependencyGraph = dependencyGraph;
+    }
+
+
+    /**
+     * Opens the cache located in the passed directory, creating the directory if needed
+     *
+     * @param directory the directory where the entries are stored
+     * @param ansibleLintVersion the version of ansible-lint
+     * @param configFile the ansible-lint configuration file, may not exist
+     * @param extraAnsibleLintArgs the extra arguments passed to ansible-lint: directories (such as extra rule
+     *                             directories) are hashed by content
+     * @param activeRules the keys of the active rules
+     * @return the cache
+     * @throws IOException if the directory could not be created or if a file could not be read
+     */
+    static AnsibleLintCache open(Path directory, String ansibleLintVersion, Path configFile,
+                                 List<String> extraAnsibleLintArgs, Collection<String> activeRules) throws IOException {
+        Files.createDirectories(directory);
+        return new AnsibleLintCache(directory, fingerprint(ansibleLintVersion, configFile, extraAnsibleLintArgs, activeRules));
+    }
+
+    /**
+     * Computes the hash of the analysis parameters that are common to all linted files
+     *
+     * @param ansibleLintVersion the version of ansible-lint
+     * @param configFile the ansible-lint configuration file, may not exist
+     * @param extraAnsibleLintArgs the extra arguments passed to ansible-lint: directories (such as extra rule
+     *                             directories) are hashed by content
+     * @param activeRules the keys of the active rules
+     * @return the fingerprint of the analysis parameters, as an hexadecimal string
+     * @throws IOException if a file could not be read
+     */
+    static String fingerprint(String ansibleLintVersion, Path configFile, List<String> extraAnsibleLintArgs,
+                              Collection<String> activeRules) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, ansibleLintVersion);
+        if (Files.isRegularFile(configFile)) {
+            digest.update(Files.readAllBytes(configFile));
+        }
+        for (String arg : extraAnsibleLintArgs) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                        update(digest, file.getFileName().toString());
+                        digest.update(Files.readAllBytes(file));
+                    }
+                }
+            } else {
+                update(digest, arg);
+            }
+        }
+        for (String rule : new TreeSet<>(activeRules)) {
+            update(digest, rule);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the issues cached for the passed file
+     *
+     * @param inputFile a file to be linted
+     * @return the issues found when the file was linted, per file URI, or {@code null} if the file has no entry in the
+     * cache
+     */
+    @Nullable
+    Map<URI, Set<AnsibleLintIssue>> get(InputFile inputFile) {
+        try {
+            Path entry = directory.resolve(getKey(inputFile));
+            if (!Files.isRegularFile(entry)) {
+                misses++;
+                return null;
+            }
+            Map<URI, Set<AnsibleLintIssue>> issues = read(entry);
+            hits++;
+            return issues;
+        } catch (IOException|IllegalArgumentException e) {
+            LOGGER.warn("Cannot read cache entry of {}: {}", inputFile, e.getMessage());
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Stores the issues found when linting a file
+     *
+     * @param inputFile the linted file
+     * @param issues the issues, per file URI
+     */
+    void put(InputFile inputFile, Map<URI, Set<AnsibleLintIssue>> issues) {
+        try {
+            Path entry = directory.resolve(getKey(inputFile));
+            Path temp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+            write(temp, issues);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write cache entry of {}: {}", inputFile, e.getMessage());
+        }
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+
+    private String getKey(InputFile inputFile) throws IOException {
+        File file = new File(inputFile.uri());
+        MessageDigest digest = newDigest();
+        update(digest, fingerprint);
+        update(digest, file.getAbsolutePath());
+        digest.update(Files.readAllBytes(file.toPath()));
+        if (dependencyGraph != null) {
+            for (Path dependency : new TreeSet<>(dependencyGraph.getDependencies(file.toPath()))) {
+                update(digest, dependency.toString());
+                digest.update(Files.readAllBytes(dependency));
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Writes issues to an entry file: one issue per line, made of the tab-separated file URI, line, rule id and message.
+     * A file without any issue is written as a line made of its URI only.
+     *
+     * @param entry the file to be written
+     * @param issues the issues, per file URI
+     * @throws IOException if the file could not be written
+     */
+    static void write(Path entry, Map<URI, Set<AnsibleLintIssue>> issues) throws IOException {
+        List<String> lines = new ArrayList<>();
+        issues.forEach((uri, fileIssues) -> {
+            if (fileIssues.isEmpty()) {
+                lines.add(uri.toString());
+            }
+            fileIssues.forEach(issue ->
+                    lines.add(uri + "\t" + issue.getLine() + (issue.getColumn() > 0 ? ":" + issue.getColumn() : "") + "\t" + issue.getId() + "\t" + (issue.getMessage() == null ? "" : issue.getMessage().replace('\t', ' '))));
+        });
+        Files.write(entry, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads issues written with {@link #write(Path, Map)}
+     *
+     * @param entry the file to be read
+     * @return the issues, per file URI
+     * @throws IOException if the file could not be read
+     * @throws IllegalArgumentException if the file is not valid
+     */
+    static Map<URI, Set<AnsibleLintIssue>> read(Path entry) throws IOException {
+        Map<URI, Set<AnsibleLintIssue>> issues = new HashMap<>();
+        for (String line : Files.readAllLines(entry, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t", 4);
+            URI fileURI = URI.create(fields[0]);
+            if (!fileURI.isAbsolute() || fields.length != 1 && fields.length != 4) {
+                throw new IllegalArgumentException("invalid line: " + line);
+            }
+            Set<AnsibleLintIssue> fileIssues = issues.computeIfAbsent(fileURI, uri -> new HashSet<>());
+            if (fields.length == 1) {
+                continue;
+            }
+            // The line number may be followed by the column
+            int colon = fields[1].indexOf(':');
+            int lineNumber = Integer.parseInt((colon < 0) ? fields[1] : fields[1].substring(0, colon));
+            int column = (colon < 0) ? 0 : Integer.parseInt(fields[1].substring(colon + 1));
+            fileIssues.add(new AnsibleLintIssue(lineNumber, fields[2], fields[3].isEmpty() ? null : fields[3], column));
+        }
+        return issues;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported by all Java platforms
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Features supported by a version of {@code ansible-lint}, deduced from the output of {@code ansible-lint --version}.
+ * When the version is unknown, only the features supported by all versions are reported.
+ */
+final class AnsibleLintCapabilities {
+    /**
+     * Style of the rule ids printed by ansible-lint
+     */
+    enum RuleIdStyle {
+        /**
+         * Numeric ids such as {@code E301} (ansible-lint 3 and 4)
+         */
+        NUMERIC,
+        /**
+         * Named ids such as {@code no-changed-when} (ansible-lint 5 and later)
+         */
+        NAMED
+    }
+
+    static final String FORMAT_PEP8 = "pep8";
+    static final String FORMAT_JSON = "json";
+    static final String FORMAT_CODECLIMATE = "codeclimate";
+    static final String FORMAT_SARIF = "sarif";
+
+    private static final Pattern VERSION = Pattern.compile("ansible-lint\\s+v?([0-9]+)\\.([0-9]+)(?:\\.([0-9]+))?");
+
+    private final int major;
+    private final int minor;
+    private final int patch;
+
+
+    private AnsibleLintCapabilities(int major, int minor, int patch) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+    }
+
+
+    /**
+     * Deduces the capabilities of ansible-lint from its version
+     *
+     * @param versionOutput the output of {@code ansible-lint --version}, {@code null} if unknown
+     * @return the capabilities of ansible-lint
+     */
+    static AnsibleLintCapabilities parse(@Nullable String versionOutput) {
+        if (versionOutput != null) {
+            Matcher m = VERSION.matcher(versionOutput);
+            if (m.find()) {
+                return new AnsibleLintCapabilities(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)),
+                        (m.group(3) == null) ? 0 : Integer.parseInt(m.group(3)));
+            }
+        }
+        return new AnsibleLintCapabilities(-1, -1, -1);
+    }
+
+    /**
+     * Tells if the version of ansible-lint is known
+     *
+     * @return {@code true} if the version could be read from the output of {@code ansible-lint --version}
+     */
+    boolean isVersionKnown() {
+        return major >= 0;
+    }
+
+    /**
+     * Tells if the version of ansible-lint is greater than or equal to the passed version. An unknown version is
+     * lower than any version.
+     *
+     * @param major the major version number
+     * @param minor the minor version number
+     * @return {@code true} if the version is {@code major.minor} or later
+     */
+    boolean isAtLeast(int major, int minor) {
+        return this.major > major || this.major == major && this.minor >= minor;
+    }
+
+    /**
+     * Returns the output formats supported by the {@code -f} option, {@link #FORMAT_PEP8} being always supported
+     * through {@code -p}
+     *
+     * @return the supported formats
+     */
+    Set<String> getOutputFormats() {
+        Set<String> formats = new LinkedHashSet<>();
+        formats.add(FORMAT_PEP8);
+        if (isAtLeast(5, 0)) {
+            formats.add(FORMAT_JSON);
+            formats.add(FORMAT_CODECLIMATE);
+        }
+        if (isAtLeast(6, 8)) {
+            formats.add(FORMAT_SARIF);
+        }
+        return formats;
+    }
+
+    /**
+     * Tells if the {@code --offline} option, which prevents ansible-lint from installing the project requirements
+     * before linting, is supported
+     *
+     * @return {@code true} if {@code --offline} is supported
+     */
+    boolean supportsOffline() {
+        return isAtLeast(6, 0);
+    }
+
+    /**
+     * Tells if the {@code -p} option is deprecated in favor of {@code -f pep8}
+     *
+     * @return {@code true} if {@code -p} is deprecated
+     */
+    boolean isParseableOptionDeprecated() {
+        return isAtLeast(6, 0);
+    }
+
+    /**
+     * Returns the options that make ansible-lint print one issue per line
+     *
+     * @return {@code -f pep8} if {@code -p} is deprecated, {@code -p} otherwise
+     */
+    List<String> getParseableOptions() {
+        return isParseableOptionDeprecated() ? Arrays.asList("-f", FORMAT_PEP8) : Collections.singletonList("-p");
+    }
+
+    /**
+     * Returns the style of the rule ids printed by ansible-lint
+     *
+     * @return the rule id style, {@link RuleIdStyle#NUMERIC} if the version is unknown
+     */
+    RuleIdStyle getRuleIdStyle() {
+        return isAtLeast(5, 0) ? RuleIdStyle.NAMED : RuleIdStyle.NUMERIC;
+    }
+
+    @Override
+    public String toString() {
+        return isVersionKnown() ? (major + "." + minor + "." + patch) : "unknown";
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resident Python process that imports {@code ansiblelint} once and then lints the files it is requested to lint. This
+ * saves the startup time of the Python interpreter, ansible and ansible-lint for every analyzed file.
+ * <p>
+ * The requests are sent to the standard input of the process and the results are read from its standard output (see
+ * the script {@value #SCRIPT} for the protocol). Requests are processed one at a time. The daemon is restarted if it
+ * crashed.
+ */
+final class AnsibleLintDaemon implements Closeable {
+    /**
+     * Name of the Python script run by the daemon
+     */
+    static final String SCRIPT = "ansible_lint_daemon.py";
+
+    /**
+     * Maximum number of times the daemon may be restarted after a crash
+     */
+    static final int MAX_RESTARTS = 3;
+
+    private static final Logger LOGGER = Loggers.get(AnsibleLintDaemon.class);
+
+    private final List<String> command;
+    private final File directory;
+    private final File logFile;
+    private volatile Process process;
+    private BufferedReader input;
+    private Writer output;
+    private int restarts = 0;
+    private volatile boolean killed = false;
+
+
+    /**
+     * Constructor. The daemon is not started until {@link #start()} is called.
+     *
+     * @param command the command that runs the script {@value #SCRIPT} with a Python interpreter where ansible-lint is installed
+     * @param directory the work directory of the daemon
+     * @param logFile the file where the error output of the daemon is written
+     */
+    AnsibleLintDaemon(List<String> command, File directory, File logFile) {
+        this.command = new ArrayList<>(command);
+        this.directory = directory;
+        this.logFile = logFile;
+    }
+
+
+    /**
+     * Copies the script {@value #SCRIPT} to the passed directory
+     *
+     * @param directory the directory where the script must be copied
+     * @return the path to the copied script
+     * @throws IOException if the script could not be copied
+     */
+    static Path extractScript(Path directory) throws IOException {
+        Path script = directory.resolve(SCRIPT);
+        try (InputStream in = AnsibleLintDaemon.class.getResourceAsStream(SCRIPT)) {
+            if (in == null) {
+                throw new FileNotFoundException(SCRIPT);
+            }
+            Files.createDirectories(directory);
+            Files.copy(in, script, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return script;
+    }
+
+    /**
+     * Starts the daemon and waits for it to be ready
+     *
+     * @throws IOException if the daemon could not be started or if ansible-lint could not be loaded
+     */
+    synchronized void start() throws IOException {
+        LOGGER.debug("Starting ansible-lint daemon: {}", command);
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(directory);
+        pb.redirectError(ProcessBuilder.Redirect.appendTo(logFile));
+        process = pb.start();
+        ProcessWatchdog.register(process);
+        input = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        output = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        String line = input.readLine();
+        if (!"READY".equals(line)) {
+            destroy();
+            throw new IOException("ansible-lint daemon could not start: " + (line == null ? "see " + logFile : line));
+        }
+        LOGGER.debug("ansible-lint daemon started");
+    }
+
+    /**
+     * Checks that the daemon process is alive and answers requests
+     *
+     * @return {@code true} if the daemon is healthy, {@code false} otherwise
+     */
+    synchronized boolean isHealthy() {
+        if (process == null || !process.isAlive()) {
+            return false;
+        }
+        try {
+            send("PING");
+            return "PONG".equals(input.readLine());
+        } catch (IOException e) {
+            LOGGER.debug("ansible-lint daemon does not answer: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Lints files with the daemon. The daemon is restarted and the request sent again if the daemon has crashed.
+     *
+     * @param args the ansible-lint arguments, including the files to be linted
+     * @param stdOut where the standard output of ansible-lint is written to line by line
+     * @param errOut where the error output of ansible-lint is written to line by line
+     * @return the exit code of ansible-lint
+     * @throws IOException if the daemon failed and could not be restarted
+     */
+    synchronized int lint(List<String> args, List<String> stdOut, List<String> errOut) throws IOException {
+        if (!isHealthy()) {
+            restart();
+        }
+        try {
+            return request(args, stdOut, errOut);
+        } catch (IOException e) {
+            LOGGER.warn("ansible-lint daemon failed, restarting it: {}", e.getMessage());
+            restart();
+            return request(args, stdOut, errOut);
+        }
+    }
+
+    /**
+     * Kills the daemon and its child processes at once, even if a request is being processed: the pending request then
+     * fails and the daemon is not restarted. This method is meant to be called when the analysis is interrupted.
+     */
+    void kill() {
+        killed = true;
+        Process daemon = process;
+        if (daemon != null) {
+            ProcessWatchdog.killTree(daemon);
+        }
+    }
+
+    /**
+     * Stops the daemon: the daemon is asked to exit and is killed if it does not within 5 seconds
+     */
+    @Override
+    public synchronized void close() {
+        if (process == null) {
+            return;
+        }
+        try {
+            send("QUIT");
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                LOGGER.debug("ansible-lint daemon did not stop, killing it");
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Cannot stop ansible-lint daemon: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            destroy();
+        }
+    }
+
+
+    private int request(List<String> args, List<String> stdOut, List<String> errOut) throws IOException {
+        StringBuilder request = new StringBuilder("LINT ").append(args.size());
+        for (String arg : args) {
+            request.append('\n').append(arg);
+        }
+        send(request.toString());
+
+        String header = input.readLine();
+        String[] fields = (header == null) ? new String[0] : header.split(" ");
+        if (fields.length != 4 || !"RESULT".equals(fields[0])) {
+            throw new IOException("Unexpected answer from ansible-lint daemon: " + header);
+        }
+        try {
+            readLines(Integer.parseInt(fields[2]), stdOut);
+            readLines(Integer.parseInt(fields[3]), errOut);
+            return Integer.parseInt(fields[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected answer from ansible-lint daemon: " + header, e);
+        }
+    }
+
+    private void readLines(int count, List<String> lines) throws IOException {
+        for (int i = 0; i < count; i++) {
+            String line = input.readLine();
+            if (line == null) {
+                throw new EOFException("ansible-lint daemon output truncated");
+            }
+            lines.add(line);
+        }
+    }
+
+    private void send(String request) throws IOException {
+        output.write(request);
+        output.write('\n');
+        output.flush();
+    }
+
+    private void restart() throws IOException {
+        if (killed) {
+            throw new IOException("ansible-lint daemon killed");
+        }
+        if (process != null) {
+            if (restarts >= MAX_RESTARTS) {
+                throw new IOException("ansible-lint daemon crashed too many times");
+            }
+            restarts++;
+            destroy();
+        }
+        start();
+    }
+
+    private void destroy() {
+        ProcessWatchdog.killTree(process);
+        ProcessWatchdog.unregister(process);
+        process = null;
+    }
+}
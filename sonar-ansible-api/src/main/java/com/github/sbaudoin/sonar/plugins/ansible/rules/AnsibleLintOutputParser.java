@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.Map;
+
+/**
+ * Parser of the issues printed by {@code ansible-lint} in parseable mode. Each line is parsed in a single linear pass,
+ * without regular expressions. Several output dialects are supported:
+ * <ul>
+ *     <li>{@link Dialect#LEGACY}: {@code path:line: [Eid] message}</li>
+ *     <li>{@link Dialect#ID_FIRST}: {@code id path:line}</li>
+ *     <li>{@link Dialect#NAMED}: {@code path:line: id}</li>
+ *     <li>{@link Dialect#NAMED_WITH_DETAILS}: {@code path:line: rule (id)}</li>
+ * </ul>
+ * The dialect is taken from the ansible-lint version when known, otherwise it is worked out from the first valid line.
+ * It is then tried first for the next lines, the other dialects being tried in the above order if it does not match.
+ */
+final class AnsibleLintOutputParser {
+    /**
+     * Output dialects of ansible-lint, in the order they are tried
+     */
+    enum Dialect {
+        /**
+         * ansible-lint 3 and 4: {@code path:line: [Eid] message}
+         */
+        LEGACY,
+        /**
+         * ansible-lint 4.3: {@code id path:line}
+         */
+        ID_FIRST,
+        /**
+         * ansible-lint 5.0: {@code path:line: id}
+         */
+        NAMED,
+        /**
+         * ansible-lint 6.5: {@code path:line: rule (id)}
+         */
+        NAMED_WITH_DETAILS
+    }
+
+    private static final Dialect[] DIALECTS = Dialect.values();
+
+    private volatile Dialect dialect;
+
+
+    /**
+     * Constructor
+     *
+     * @param dialect the expected dialect or {@code null} to detect it from the first valid line
+     */
+    AnsibleLintOutputParser(@Nullable Dialect dialect) {
+        this.dialect = dialect;
+    }
+
+
+    /**
+     * Returns the dialect printed by the passed ansible-lint version
+     *
+     * @param capabilities the capabilities of ansible-lint
+     * @return the dialect or {@code null} if the version is unknown
+     */
+    @Nullable
+    static Dialect getDialect(AnsibleLintCapabilities capabilities) {
+        if (!capabilities.isVersionKnown()) {
+            return null;
+        }
+        if (!capabilities.isAtLeast(5, 0)) {
+            return Dialect.LEGACY;
+        }
+        return capabilities.isAtLeast(6, 5) ? Dialect.NAMED_WITH_DETAILS : Dialect.NAMED;
+    }
+
+    /**
+     * Returns the current dialect
+     *
+     * @return the dialect or {@code null} if not known yet
+     */
+    @Nullable
+    Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Parses a line printed by ansible-lint
+     *
+     * @param line a line of the ansible-lint output
+     * @return the path of the file, as printed by ansible-lint, and the issue, or {@code null} if the line is not a
+     * valid issue
+     */
+    @Nullable
+    Map.Entry<String, AnsibleLintIssue> parse(String line) {
+        Dialect preferred = dialect;
+        if (preferred != null) {
+            Map.Entry<String, AnsibleLintIssue> issue = parse(line, preferred);
+            if (issue != null) {
+                return issue;
+            }
+        }
+        for (Dialect candidate : DIALECTS) {
+            if (candidate != preferred) {
+                Map.Entry<String, AnsibleLintIssue> issue = parse(line, candidate);
+                if (issue != null) {
+                    if (preferred == null) {
+                        dialect = candidate;
+                    }
+                    return issue;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    @Nullable
+    private static Map.Entry<String, AnsibleLintIssue> parse(String line, Dialect dialect) {
+        switch (dialect) {
+            case LEGACY:
+                return parseLegacy(line);
+            case ID_FIRST:
+                return parseIdFirst(line);
+            case NAMED:
+                return parseNamed(line);
+            default:
+                return parseNamedWithDetails(line);
+        }
+    }
+
+    /**
+     * Parses {@code path:line: [Eid] message}. The path may contain any character: the last {@code :line: [E} for which
+     * the rest of the line is valid is used. The id ends at the last {@code "] "} before the next {@code [}.
+     */
+    @Nullable
+    private static Map.Entry<String, AnsibleLintIssue> parseLegacy(String line) {
+        int length = line.length();
+        for (int p = line.lastIndexOf(": [E"); p > 0; p = line.lastIndexOf(": [E", p - 1)) {
+            int colon = findLineNumberStart(line, p);
+            if (colon < 0) {
+                continue;
+            }
+            int idStart = p + 4;
+            int limit = line.indexOf('[', idStart);
+            if (limit < 0) {
+                limit = length;
+            }
+            int idEnd = -1;
+            for (int i = limit - 1; i > idStart; i--) {
+                if (line.charAt(i) == ']' && i + 1 < length && line.charAt(i + 1) == ' ') {
+                    idEnd = i;
+                    break;
+                }
+            }
+            if (idEnd < 0) {
+                continue;
+            }
+            int lineNumber = parseLineNumber(line, colon + 1, p);
+            if (lineNumber < 0) {
+                continue;
+            }
+            return entry(line.substring(0, colon),
+                    new AnsibleLintIssue(lineNumber, line.substring(idStart, idEnd), line.substring(idEnd + 2)));
+        }
+        return null;
+    }
+
+    /**
+     * Parses {@code id path:line}: the id ends at the first space, the line number is at the end of the line
+     */
+    @Nullable
+    private static Map.Entry<String, AnsibleLintIssue> parseIdFirst(String line) {
+        int space = line.indexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        int digits = line.length();
+        while (digits > 0 && isDigit(line.charAt(digits - 1))) {
+            digits--;
+        }
+        int colon = digits - 1;
+        if (digits == line.length() || colon < space + 2 || line.charAt(colon) != ':') {
+            return null;
+        }
+        int lineNumber = parseLineNumber(line, digits, line.length());
+        if (lineNumber < 0) {
+            return null;
+        }
+        return entry(line.substring(space + 1, colon), new AnsibleLintIssue(lineNumber, line.substring(0, space)));
+    }
+
+    /**
+     * Parses {@code path:line: id}: the id is the last word of the line
+     */
+    @Nullable
+    private static Map.Entry<String, AnsibleLintIssue> parseNamed(String line) {
+        int space = line.lastIndexOf(' ');
+        if (space < 1 || space == line.length() - 1 || line.charAt(space - 1) != ':') {
+            return null;
+        }
+        int colon = findLineNumberStart(line, space - 1);
+        if (colon < 0) {
+            return null;
+        }
+        int lineNumber = parseLineNumber(line, colon + 1, space - 1);
+        if (lineNumber < 0) {
+            return null;
+        }
+        return entry(line.substring(0, colon), new AnsibleLintIssue(lineNumber, line.substring(space + 1)));
+    }
+
+    /**
+     * Parses {@code path:line: rule (id)}: the last {@code :line: } followed by a word, a space and a parenthesized id
+     * at the end of the line is used
+     */
+    @Nullable
+    private static Map.Entry<String, AnsibleLintIssue> parseNamedWithDetails(String line) {
+        int length = line.length();
+        if (length == 0 || line.charAt(length - 1) != ')') {
+            return null;
+        }
+        for (int p = line.lastIndexOf(": "); p > 0; p = line.lastIndexOf(": ", p - 1)) {
+            int colon = findLineNumberStart(line, p);
+            if (colon < 0) {
+                continue;
+            }
+            int space = line.indexOf(' ', p + 2);
+            if (space <= p + 2 || space + 2 > length - 1 || line.charAt(space + 1) != '(') {
+                continue;
+            }
+            int lineNumber = parseLineNumber(line, colon + 1, p);
+            if (lineNumber < 0) {
+                continue;
+            }
+            return entry(line.substring(0, colon), new AnsibleLintIssue(lineNumber, line.substring(space + 2, length - 1)));
+        }
+        return null;
+    }
+
+    /**
+     * Finds the colon that precedes the line number ending at the passed index
+     *
+     * @param line a line of the ansible-lint output
+     * @param end the index of the character that follows the line number
+     * @return the index of the colon or -1 if there is no line number or no colon before it
+     */
+    private static int findLineNumberStart(String line, int end) {
+        int start = end;
+        while (start > 0 && isDigit(line.charAt(start - 1))) {
+            start--;
+        }
+        return (start < end && start > 0 && line.charAt(start - 1) == ':') ? start - 1 : -1;
+    }
+
+    /**
+     * Parses a line number made of ASCII digits
+     *
+     * @return the line number or -1 if it is too big
+     */
+    private static int parseLineNumber(String line, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (line.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int)value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static Map.Entry<String, AnsibleLintIssue> entry(String path, AnsibleLintIssue issue) {
+        return new AbstractMap.SimpleImmutableEntry<>(path, issue);
+    }
+}
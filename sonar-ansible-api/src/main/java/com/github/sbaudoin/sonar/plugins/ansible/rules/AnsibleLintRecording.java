@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Recording of the commands executed by a sensor (command line, standard and error outputs, exit code and duration),
+ * so that an analysis can be replayed without executing them, e.g. to profile or test the sensor without
+ * {@code ansible-lint}.
+ * <p>
+ * The recording file is a sequence of gzip members, one per execution, so that executions can be appended by all the
+ * sensors of the analysis as they complete. The path of the project directory is replaced with {@value #BASE_DIR}
+ * in the command lines and outputs, and restored on replay: a recording can be replayed on another machine.
+ * <p>
+ * On replay, an execution is found by sensor, executable name and files or directories of the project passed to the
+ * command (the other arguments, such as the paths of temporary files, are ignored), or by all its arguments if no
+ * project path is passed. If an execution was recorded several times, the recordings are served in order and the last
+ * one is served again.
+ */
+final class AnsibleLintRecording {
+    private static final Logger LOGGER = Loggers.get(AnsibleLintRecording.class);
+
+    /**
+     * Placeholder of the project directory in the recorded command lines and outputs
+     */
+    static final String BASE_DIR = "${baseDir}";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Recording files already truncated by this JVM: the sensors of an analysis append to the same file
+     */
+    private static final Set<Path> STARTED_RECORDINGS = ConcurrentHashMap.newKeySet();
+
+    private final Path file;
+    private final String source;
+    private final String baseDir;
+    /**
+     * Executions to be replayed per key, {@code null} when recording
+     */
+    private final Map<String, Deque<Execution>> executions;
+
+
+    private AnsibleLintRecording(Path file, String source, Path baseDir, @Nullable Map<String, Deque<Execution>> executions) {
+        this.file = file;
+        this.source = source;
+        this.baseDir = baseDir.toAbsolutePath().toString();
+        this.executions = executions;
+    }
+
+
+    /**
+     * Starts recording executions. The file is emptied the first time it is opened by this JVM.
+     *
+     * @param file the recording file
+     * @param source the name of the sensor that executes the commands
+     * @param baseDir the project directory
+     * @return the recording
+     * @throws IOException if the file cannot be created
+     */
+    static AnsibleLintRecording record(Path file, String source, Path baseDir) throws IOException {
+        Path absoluteFile = file.toAbsolutePath().normalize();
+        if (absoluteFile.getParent() != null) {
+            Files.createDirectories(absoluteFile.getParent());
+        }
+        if (STARTED_RECORDINGS.add(absoluteFile)) {
+            Files.write(absoluteFile, new byte[0]);
+        }
+        return new AnsibleLintRecording(absoluteFile, source, baseDir, null);
+    }
+
+    /**
+     * Loads the executions of a sensor to be replayed
+     *
+     * @param file the recording file
+     * @param source the name of the sensor that executes the commands
+     * @param baseDir the project directory
+     * @return the recording
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a valid recording
+     */
+    static AnsibleLintRecording replay(Path file, String source, Path baseDir) throws IOException {
+        AnsibleLintRecording recording = new AnsibleLintRecording(file, source, baseDir, new HashMap<>());
+        if (Files.size(file) == 0) {
+            // Nothing was executed during the recorded analysis
+            return recording;
+        }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            while (true) {
+                int version;
+                try {
+                    version = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (version != FORMAT_VERSION) {
+                    throw new IllegalArgumentException("unsupported recording format " + version);
+                }
+                Execution execution = Execution.read(in);
+                if (source.equals(execution.source)) {
+                    recording.executions.computeIfAbsent(recording.getKey(execution.command), key -> new ArrayDeque<>()).add(execution);
+                }
+            }
+        }
+        return recording;
+    }
+
+    /**
+     * Clears the list of the recording files already emptied
+     */
+    static void clear() {
+        STARTED_RECORDINGS.clear();
+    }
+
+
+    /**
+     * Tells if the executions are replayed
+     *
+     * @return {@code true} if the executions are replayed, {@code false} if they are recorded
+     */
+    boolean isReplaying() {
+        return executions != null;
+    }
+
+    /**
+     * Appends an execution to the recording file. An error is only logged: the analysis goes on.
+     *
+     * @param command the command line
+     * @param status the exit code
+     * @param duration the duration of the execution, in milliseconds
+     * @param stdOut the lines of the standard output
+     * @param errOut the lines of the error output
+     * @param limitExceeded the message of the {@link AbstractAnsibleSensor.LimitExceededException} thrown by the
+     *                      execution or {@code null} if the command completed
+     */
+    void add(List<String> command, int status, long duration, List<String> stdOut, List<String> errOut, @Nullable String limitExceeded) {
+        Execution execution = new Execution(source, normalize(command), status, duration,
+                normalize(stdOut), normalize(errOut), limitExceeded);
+        synchronized (STARTED_RECORDINGS) {
+            try (OutputStream fileOut = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(fileOut)))) {
+                out.writeInt(FORMAT_VERSION);
+                execution.write(out);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot record the execution of {} in {}: {}", command.get(0), file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replays an execution: its output lines are passed to the consumers
+     *
+     * @param command the command line
+     * @param stdOut the consumer of the standard output lines
+     * @param errOut the consumer of the error output lines
+     * @return the recorded exit code
+     * @throws AbstractAnsibleSensor.LimitExceededException if the recorded execution exceeded the timeout or the memory
+     * limit
+     * @throws IOException if the execution was not recorded
+     */
+    int replay(List<String> command, Consumer<String> stdOut, Consumer<String> errOut) throws IOException {
+        Execution execution;
+        String key = getKey(normalize(command));
+        synchronized (executions) {
+            Deque<Execution> recorded = executions.get(key);
+            if (recorded == null) {
+                throw new IOException("Execution not found in the recording " + file + ": " + command);
+            }
+            execution = (recorded.size() > 1) ? recorded.poll() : recorded.peek();
+        }
+        LOGGER.debug("Replaying the execution of {} recorded in {} ms", command, execution.duration);
+        execution.stdOut.forEach(line -> stdOut.accept(restore(line)));
+        execution.errOut.forEach(line -> errOut.accept(restore(line)));
+        if (execution.limitExceeded != null) {
+            throw new AbstractAnsibleSensor.LimitExceededException(execution.limitExceeded);
+        }
+        return execution.status;
+    }
+
+
+    /**
+     * Returns the key of a normalized command line
+     */
+    private String getKey(List<String> command) {
+        StringBuilder key = new StringBuilder(source).append('\n').append(getExecutableName(command.get(0)));
+        List<String> args = command.subList(1, command.size());
+        boolean projectPaths = args.stream().anyMatch(arg -> arg.startsWith(BASE_DIR));
+        for (String arg : args) {
+            if (!projectPaths || arg.startsWith(BASE_DIR)) {
+                key.append('\n').append(arg);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the name of an executable, without its directory and its Windows extension
+     */
+    private static String getExecutableName(String executable) {
+        String name = new File(executable).getName();
+        String lowerCaseName = name.toLowerCase();
+        for (String extension : new String[] { ".exe", ".cmd", ".bat" }) {
+            if (lowerCaseName.endsWith(extension)) {
+                return name.substring(0, name.length() - extension.length());
+            }
+        }
+        return name;
+    }
+
+    private List<String> normalize(List<String> lines) {
+        List<String> normalized = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            normalized.add(normalize(line));
+        }
+        return normalized;
+    }
+
+    private String normalize(String line) {
+        return line.equals(baseDir) ? BASE_DIR : line.replace(baseDir + File.separator, BASE_DIR + File.separator);
+    }
+
+    private String restore(String line) {
+        return line.replace(BASE_DIR, baseDir);
+    }
+
+
+    /**
+     * Recorded execution of a command
+     */
+    private static final class Execution {
+        private final String source;
+        private final List<String> command;
+        private final int status;
+        private final long duration;
+        private final List<String> stdOut;
+        private final List<String> errOut;
+        private final String limitExceeded;
+
+
+        Execution(String source, List<String> command, int status, long duration, List<String> stdOut, List<String> errOut, @Nullable String limitExceeded) {
+            this.source = source;
+            this.command = command;
+            this.status = status;
+            this.duration = duration;
+            this.stdOut = stdOut;
+            this.errOut = errOut;
+            this.limitExceeded = limitExceeded;
+        }
+
+
+        void write(DataOutputStream out) throws IOException {
+            writeString(out, source);
+            writeStrings(out, command);
+            out.writeInt(status);
+            out.writeLong(duration);
+            writeStrings(out, stdOut);
+            writeStrings(out, errOut);
+            out.writeBoolean(limitExceeded != null);
+            if (limitExceeded != null) {
+                writeString(out, limitExceeded);
+            }
+        }
+
+        static Execution read(DataInputStream in) throws IOException {
+            String source = readString(in);
+            List<String> command = readStrings(in);
+            if (command.isEmpty()) {
+                throw new IllegalArgumentException("empty command line");
+            }
+            int status = in.readInt();
+            long duration = in.readLong();
+            List<String> stdOut = readStrings(in);
+            List<String> errOut = readStrings(in);
+            String limitExceeded = in.readBoolean() ? readString(in) : null;
+            return new Execution(source, command, status, duration, stdOut, errOut, limitExceeded);
+        }
+
+        private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            // Not writeUTF, which is limited to 64 KB: a structured report may be printed on a single line
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static List<String> readStrings(DataInputStream in) throws IOException {
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IllegalArgumentException("invalid number of lines: " + size);
+            }
+            List<String> values = new ArrayList<>(Math.min(size, 1024));
+            for (int i = 0; i < size; i++) {
+                values.add(readString(in));
+            }
+            return values;
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IllegalArgumentException("invalid string length: " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
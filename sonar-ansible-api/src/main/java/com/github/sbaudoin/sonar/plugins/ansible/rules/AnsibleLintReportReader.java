@@ -0,0 +1,449 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+import com.github.sbaudoin.sonar.plugins.ansible.rules.JsonStreamReader.Token;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Decoder of the structured reports printed by {@code ansible-lint -f json}, {@code -f codeclimate} (the JSON format
+ * of ansible-lint is the Code Climate format) and {@code -f sarif}. The report is pushed line by line, as it is printed
+ * by ansible-lint: the issues are cut out of the report as soon as they are complete and decoded one at a time with a
+ * {@link JsonStreamReader}, so that only the issue being read is held in memory and every issue is passed to the
+ * consumer as soon as it is decoded.
+ */
+final class AnsibleLintReportReader implements Consumer<String> {
+    /**
+     * Depth of the {@code results} arrays in a SARIF log: {@code {"runs": [{"results": [...]}]}}
+     */
+    private static final int SARIF_RESULTS_DEPTH = 4;
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final boolean sarif;
+    private final BiConsumer<String, AnsibleLintIssue> consumer;
+    private final StringBuilder element = new StringBuilder();
+    private final StringBuilder key = new StringBuilder();
+    private long offset = 0;
+    private boolean started = false;
+    private boolean done = false;
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escape = false;
+    private String lastString;
+    private String pendingKey;
+    private int issuesDepth = -1;
+    private boolean capturing = false;
+    private IOException error;
+
+
+    /**
+     * Constructor
+     *
+     * @param format the format of the report, see {@link #isStructured(String)}
+     * @param consumer the consumer of the issues, called with the path of the file, as printed by ansible-lint, and the
+     *                 issue
+     */
+    AnsibleLintReportReader(String format, BiConsumer<String, AnsibleLintIssue> consumer) {
+        this.sarif = AnsibleLintCapabilities.FORMAT_SARIF.equals(format);
+        this.consumer = consumer;
+    }
+
+
+    /**
+     * Tells if the passed ansible-lint output format is a structured format supported by this class
+     *
+     * @param format an ansible-lint output format
+     * @return {@code true} for the JSON, Code Climate and SARIF formats
+     */
+    static boolean isStructured(String format) {
+        return AnsibleLintCapabilities.FORMAT_JSON.equals(format) ||
+                AnsibleLintCapabilities.FORMAT_CODECLIMATE.equals(format) ||
+                AnsibleLintCapabilities.FORMAT_SARIF.equals(format);
+    }
+
+    /**
+     * Reads a whole report
+     *
+     * @param in the reader of the report
+     * @param format the format of the report, see {@link #isStructured(String)}
+     * @param consumer the consumer of the issues, called with the path of the file, as printed by ansible-lint, and the
+     *                 issue
+     * @throws IOException if the report cannot be read or is not valid
+     */
+    static void read(Reader in, String format, BiConsumer<String, AnsibleLintIssue> consumer) throws IOException {
+        AnsibleLintReportReader reader = new AnsibleLintReportReader(format, consumer);
+        BufferedReader lines = new BufferedReader(in);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            reader.accept(line);
+        }
+        reader.finish();
+    }
+
+    /**
+     * Pushes the next line of the report. Once an invalid issue has been found, the rest of the report is ignored.
+     *
+     * @param line a line of the report
+     */
+    @Override
+    public void accept(String line) {
+        if (error != null || done) {
+            return;
+        }
+        try {
+            for (int i = 0; i < line.length() && !done; i++) {
+                push(line.charAt(i));
+            }
+            push('\n');
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Tells that the whole report has been pushed
+     *
+     * @throws IOException if the report was not valid or is incomplete
+     */
+    void finish() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (started && !done) {
+            throw new IOException("Malformed JSON at offset " + offset + ": unexpected end of document");
+        }
+    }
+
+
+    /**
+     * Follows the structure of the report, without validating it, to find the issues: the objects of the root array
+     * for the Code Climate format, the objects of the {@code results} arrays for SARIF. Anything before the beginning
+     * of the report is ignored.
+     */
+    private void push(char c) throws IOException {
+        offset++;
+        if (capturing) {
+            element.append(c);
+        }
+        if (inString) {
+            if (escape) {
+                escape = false;
+            } else if (c == '\\') {
+                escape = true;
+            } else if (c == '"') {
+                inString = false;
+                lastString = capturing ? null : key.toString();
+            } else if (!capturing && key.length() < MAX_KEY_LENGTH) {
+                key.append(c);
+            }
+            return;
+        }
+        if (!started) {
+            if (c == '[' || c == '{') {
+                started = true;
+                depth = 1;
+                if (c == '[' && !sarif) {
+                    issuesDepth = 1;
+                }
+            }
+            return;
+        }
+        switch (c) {
+            case '"':
+                inString = true;
+                key.setLength(0);
+                break;
+            case ':':
+                pendingKey = lastString;
+                break;
+            case ',':
+                pendingKey = null;
+                break;
+            case '[':
+            case '{':
+                if (!capturing && c == '{' && depth == issuesDepth) {
+                    capturing = true;
+                    element.setLength(0);
+                    element.append(c);
+                }
+                depth++;
+                if (!capturing && c == '[' && sarif && depth == SARIF_RESULTS_DEPTH && "results".equals(pendingKey)) {
+                    issuesDepth = depth;
+                }
+                pendingKey = null;
+                break;
+            case ']':
+            case '}':
+                depth--;
+                if (capturing && depth == issuesDepth) {
+                    capturing = false;
+                    readIssue(new JsonStreamReader(new StringReader(element.toString())));
+                } else if (!capturing && depth < issuesDepth) {
+                    issuesDepth = -1;
+                }
+                done = depth == 0;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void readIssue(JsonStreamReader reader) throws IOException {
+        IssueBuilder issue = new IssueBuilder();
+        if (sarif) {
+            readSarifResult(reader, issue);
+        } else {
+            readCodeClimateIssue(reader, issue);
+        }
+        issue.emit(consumer);
+    }
+
+    /**
+     * Reads a Code Climate issue:
+     * <pre>
+     * {"check_name": "yaml[truthy]", "description": "...", "location": {"path": "site.yml", "lines": {"begin": 3}}}
+     * </pre>
+     * The location may also be given as {@code "positions": {"begin": {"line": 3, "column": 5}}}.
+     */
+    private static void readCodeClimateIssue(JsonStreamReader reader, IssueBuilder issue) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "check_name":
+                    issue.id = getRuleId(nextString(reader));
+                    break;
+                case "description":
+                    issue.message = nextString(reader);
+                    break;
+                case "location":
+                    readCodeClimateLocation(reader, issue);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readCodeClimateLocation(JsonStreamReader reader, IssueBuilder issue) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "path":
+                    issue.path = nextString(reader);
+                    break;
+                case "lines":
+                case "positions":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if ("begin".equals(reader.nextName())) {
+                            readPosition(reader, issue);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads a position, either a line number or an object with a line and a column
+     */
+    private static void readPosition(JsonStreamReader reader, IssueBuilder issue) throws IOException {
+        if (reader.peek() == Token.NUMBER) {
+            issue.line = reader.nextInt();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "line":
+                    issue.line = reader.nextInt();
+                    break;
+                case "column":
+                    issue.column = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads a SARIF result:
+     * <pre>
+     * {"ruleId": "yaml[truthy]", "message": {"text": "..."}, "locations": [{"physicalLocation":
+     *     {"artifactLocation": {"uri": "site.yml"}, "region": {"startLine": 3, "startColumn": 5}}}]}
+     * </pre>
+     */
+    private static void readSarifResult(JsonStreamReader reader, IssueBuilder issue) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "ruleId":
+                    issue.id = nextString(reader);
+                    break;
+                case "message":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if ("text".equals(reader.nextName())) {
+                            issue.message = nextString(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "locations":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (issue.path == null) {
+                            readSarifLocation(reader, issue);
+                        } else {
+                            // Only the first location is used
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readSarifLocation(JsonStreamReader reader, IssueBuilder issue) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"physicalLocation".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (!"artifactLocation".equals(name) && !"region".equals(name)) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "uri":
+                            issue.path = getPath(nextString(reader));
+                            break;
+                        case "startLine":
+                            issue.line = reader.nextInt();
+                            break;
+                        case "startColumn":
+                            issue.column = reader.nextInt();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Returns the next string, or {@code null} if the next value is {@code null} or not a string
+     */
+    @Nullable
+    private static String nextString(JsonStreamReader reader) throws IOException {
+        Token token = reader.peek();
+        if (token == Token.STRING || token == Token.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    /**
+     * Returns the rule id of a Code Climate check name, which is either the id or, with ansible-lint 5, the id in
+     * brackets followed by the rule description (e.g. {@code [no-changed-when] Commands should not change things})
+     */
+    @Nullable
+    static String getRuleId(@Nullable String checkName) {
+        if (checkName == null || !checkName.startsWith("[")) {
+            return checkName;
+        }
+        int end = checkName.indexOf("] ");
+        if (end < 0) {
+            end = checkName.endsWith("]") ? checkName.length() - 1 : -1;
+        }
+        return (end > 1) ? checkName.substring(1, end) : checkName;
+    }
+
+    /**
+     * Converts a SARIF artifact URI, absolute or relative to the project directory, to a path
+     */
+    @Nullable
+    static String getPath(@Nullable String uri) {
+        if (uri == null) {
+            return null;
+        }
+        try {
+            URI parsed = new URI(uri);
+            if ("file".equals(parsed.getScheme())) {
+                return Paths.get(parsed).toString();
+            }
+            return (parsed.getScheme() == null && parsed.getPath() != null) ? parsed.getPath() : uri;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return uri;
+        }
+    }
+
+
+    /**
+     * Fields of an issue being decoded
+     */
+    private static final class IssueBuilder {
+        private String path;
+        private int line = 1;
+        private int column = 0;
+        private String id;
+        private String message;
+
+
+        void emit(BiConsumer<String, AnsibleLintIssue> consumer) {
+            if (path != null && id != null) {
+                consumer.accept(path, new AnsibleLintIssue(line, id, message, column));
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Store of the issues found during the last analysis, used by incremental analyses to get the issues of the files that
+ * are not linted again. The results are stored in a single file that holds an entry for every analyzed file, even the
+ * files without any issue, so that a file missing from the store is known to have never been analyzed.
+ */
+final class AnsibleLintResultStore {
+    private static final Logger LOGGER = Loggers.get(AnsibleLintResultStore.class);
+
+    private final Path file;
+
+
+    /**
+     * Constructor
+     *
+     * @param file the file where the results are stored
+     */
+    AnsibleLintResultStore(Path file) {
+        this.file = file;
+    }
+
+
+    /**
+     * Loads the results of the last analysis
+     *
+     * @return the issues found during the last analysis, per file URI, or {@code null} if there is no result or if they
+     * could not be read
+     */
+    @Nullable
+    Map<URI, Set<AnsibleLintIssue>> load() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return AnsibleLintCache.read(file);
+        } catch (IOException|IllegalArgumentException e) {
+            LOGGER.warn("Cannot read the results of the last analysis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the stored results
+     *
+     * @param results the issues found during the analysis, per file URI. Files without any issue must be mapped to an
+     *                empty set.
+     */
+    void save(Map<URI, Set<AnsibleLintIssue>> results) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            AnsibleLintCache.write(temp, results);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot save the results of the analysis: {}", e.getMessage());
+        }
+    }
+}
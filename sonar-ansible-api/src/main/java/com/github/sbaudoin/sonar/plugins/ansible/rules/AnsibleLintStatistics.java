@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.metrics.AnsibleMetrics;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.sensor.SensorContext;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Performance figures of an analysis: number of linted files and of {@code ansible-lint} executions, wall times and
+ * cache hits. The wall time of every execution is also attributed to the files or roles it linted so that the slowest
+ * ones can be reported; when the files are linted in batches, this is the time of the whole batch.
+ * <p>
+ * The executions may be added concurrently by the worker threads.
+ *
+ * @see AnsibleMetrics
+ */
+final class AnsibleLintStatistics {
+    /**
+     * Maximum number of slowest files reported
+     */
+    static final int SLOWEST_FILES = 10;
+
+    private final Path baseDir;
+    private final Map<String, Long> targetTimes = new HashMap<>();
+    private int executions = 0;
+    private long lintTime = 0;
+    private int filesLinted = 0;
+    private int cacheHits = 0;
+    private long analysisTime = 0;
+
+
+    /**
+     * Constructor
+     *
+     * @param baseDir the project base directory, the files are reported relatively to it
+     */
+    AnsibleLintStatistics(Path baseDir) {
+        this.baseDir = baseDir.toAbsolutePath();
+    }
+
+
+    /**
+     * Adds an {@code ansible-lint} execution
+     *
+     * @param targets the paths of the files or roles linted by the execution
+     * @param duration the wall time of the execution, in nanoseconds
+     */
+    synchronized void addExecution(Collection<String> targets, long duration) {
+        executions++;
+        lintTime += duration;
+        for (String target : targets) {
+            targetTimes.merge(getRelativePath(target), duration, Math::max);
+        }
+    }
+
+    synchronized void setFilesLinted(int filesLinted) {
+        this.filesLinted = filesLinted;
+    }
+
+    synchronized void setCacheHits(int cacheHits) {
+        this.cacheHits = cacheHits;
+    }
+
+    /**
+     * Sets the wall time of the whole analysis
+     *
+     * @param analysisTime the wall time, in nanoseconds
+     */
+    synchronized void setAnalysisTime(long analysisTime) {
+        this.analysisTime = analysisTime;
+    }
+
+    synchronized int getFilesLinted() {
+        return filesLinted;
+    }
+
+    synchronized int getExecutions() {
+        return executions;
+    }
+
+    /**
+     * Returns the total wall time of the {@code ansible-lint} executions
+     *
+     * @return the wall time in milliseconds
+     */
+    synchronized long getLintTime() {
+        return lintTime / 1_000_000;
+    }
+
+    /**
+     * Returns the mean wall time of an {@code ansible-lint} execution
+     *
+     * @return the wall time in milliseconds, 0 if {@code ansible-lint} was not executed
+     */
+    synchronized long getMeanTime() {
+        return (executions == 0) ? 0 : lintTime / executions / 1_000_000;
+    }
+
+    synchronized int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the wall time of the whole analysis
+     *
+     * @return the wall time in milliseconds
+     */
+    synchronized long getAnalysisTime() {
+        return analysisTime / 1_000_000;
+    }
+
+    /**
+     * Returns the files or roles whose executions took the longest, the slowest first
+     *
+     * @return at most {@value #SLOWEST_FILES} paths, relative to the project base directory, with the wall time of
+     * their execution in milliseconds
+     */
+    synchronized List<Map.Entry<String, Long>> getSlowestFiles() {
+        return targetTimes.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(SLOWEST_FILES)
+                .<Map.Entry<String, Long>>map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue() / 1_000_000))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a one-line summary of the figures, suitable for the logs
+     *
+     * @return the summary
+     */
+    String getSummary() {
+        StringBuilder summary = new StringBuilder("ansible-lint performance: ")
+                .append(getFilesLinted()).append(" file(s) linted in ").append(getExecutions()).append(" execution(s), ")
+                .append(getLintTime()).append(" ms (").append(getMeanTime()).append(" ms per execution), ")
+                .append(getCacheHits()).append(" cache hit(s), analysis ").append(getAnalysisTime()).append(" ms");
+        List<Map.Entry<String, Long>> slowestFiles = getSlowestFiles();
+        if (!slowestFiles.isEmpty()) {
+            summary.append(", slowest: ").append(slowestFiles.get(0).getKey()).append(" (").append(slowestFiles.get(0).getValue()).append(" ms)");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Returns the slowest files as a JSON array
+     *
+     * @return the JSON array of the {@code file} and {@code time} (in milliseconds) objects
+     * @see #getSlowestFiles()
+     */
+    String getSlowestFilesJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (Map.Entry<String, Long> slowestFile : getSlowestFiles()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"file\":");
+            AnsibleLintTrace.appendString(json, slowestFile.getKey());
+            json.append(",\"time\":").append(slowestFile.getValue()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Returns the figures as a JSON object whose keys are the keys of the corresponding metrics
+     *
+     * @return the JSON object
+     */
+    String toJson() {
+        return "{\"" + AnsibleMetrics.FILES_LINTED.key() + "\":" + getFilesLinted() +
+                ",\"" + AnsibleMetrics.LINT_EXECUTIONS.key() + "\":" + getExecutions() +
+                ",\"" + AnsibleMetrics.LINT_TIME.key() + "\":" + getLintTime() +
+                ",\"" + AnsibleMetrics.LINT_MEAN_TIME.key() + "\":" + getMeanTime() +
+                ",\"" + AnsibleMetrics.ANALYSIS_TIME.key() + "\":" + getAnalysisTime() +
+                ",\"" + AnsibleMetrics.CACHE_HITS.key() + "\":" + getCacheHits() +
+                ",\"" + AnsibleMetrics.SLOWEST_FILES.key() + "\":" + getSlowestFilesJson() + "}";
+    }
+
+    /**
+     * Saves the figures as measures of the project
+     *
+     * @param context the execution sensor context
+     */
+    void save(SensorContext context) {
+        saveMeasure(context, AnsibleMetrics.FILES_LINTED, getFilesLinted());
+        saveMeasure(context, AnsibleMetrics.LINT_EXECUTIONS, getExecutions());
+        saveMeasure(context, AnsibleMetrics.LINT_TIME, getLintTime());
+        saveMeasure(context, AnsibleMetrics.LINT_MEAN_TIME, getMeanTime());
+        saveMeasure(context, AnsibleMetrics.ANALYSIS_TIME, getAnalysisTime());
+        saveMeasure(context, AnsibleMetrics.CACHE_HITS, getCacheHits());
+        saveMeasure(context, AnsibleMetrics.SLOWEST_FILES, getSlowestFilesJson());
+    }
+
+    /**
+     * Writes the figures to a JSON file
+     *
+     * @param file the file to be written, replaced if it exists
+     * @throws IOException if the file could not be written
+     * @see #toJson()
+     */
+    void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, (toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private String getRelativePath(String target) {
+        Path path = Paths.get(target);
+        return path.startsWith(baseDir) ? baseDir.relativize(path).toString() : target;
+    }
+
+    private static <T extends Serializable> void saveMeasure(SensorContext context, Metric<T> metric, T value) {
+        context.<T>newMeasure().on(context.module()).forMetric(metric).withValue(value).save();
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AnsibleSensorEvents.Phase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timeline of the {@link AnsibleSensorEvents phases} of the analysis, written in the
+ * <a href="https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU">Chrome Trace Event format</a>
+ * so that it can be loaded in <a href="https://ui.perfetto.dev">Perfetto</a> or {@code chrome://tracing}. Every phase
+ * is a complete event drawn on the track of the thread that ran it; every sensor is a process.
+ * <p>
+ * The sensors of an analysis that write their trace to the same file share a timeline: the file is rewritten at the end
+ * of each sensor with the phases of all the sensors that have completed so far.
+ */
+final class AnsibleLintTrace {
+    /**
+     * Timelines per trace file
+     */
+    private static final Map<Path, Timeline> TIMELINES = new ConcurrentHashMap<>();
+
+    private final Timeline timeline;
+    private final int pid;
+
+
+    private AnsibleLintTrace(Timeline timeline, int pid) {
+        this.timeline = timeline;
+        this.pid = pid;
+    }
+
+
+    /**
+     * Starts tracing the phases of a sensor
+     *
+     * @param file the trace file
+     * @param sensor the name of the sensor
+     * @return the trace of the sensor
+     */
+    static AnsibleLintTrace open(Path file, String sensor) {
+        Timeline timeline = TIMELINES.computeIfAbsent(file.toAbsolutePath().normalize(), Timeline::new);
+        synchronized (timeline) {
+            int pid = ++timeline.processes;
+            timeline.events.add(metadata("process_name", pid, 0, sensor));
+            timeline.events.add("{\"name\":\"process_sort_index\",\"ph\":\"M\",\"pid\":" + pid + ",\"args\":{\"sort_index\":" + pid + "}}");
+            return new AnsibleLintTrace(timeline, pid);
+        }
+    }
+
+    /**
+     * Forgets the timelines of the trace files written so far
+     */
+    static void clear() {
+        TIMELINES.clear();
+    }
+
+
+    /**
+     * Adds a completed phase to the timeline
+     *
+     * @param phase the phase
+     * @param start the start time of the phase, as returned by {@link System#nanoTime()}
+     * @param end the end time of the phase, as returned by {@link System#nanoTime()}
+     * @param thread the thread that ran the phase
+     */
+    void add(Phase phase, long start, long end, Thread thread) {
+        StringBuilder event = new StringBuilder(256);
+        event.append("{\"name\":");
+        appendString(event, getName(phase.getType()));
+        event.append(",\"cat\":\"ansible\",\"ph\":\"X\",\"ts\":").append((start - timeline.origin) / 1000)
+                .append(",\"dur\":").append(Math.max(0, end - start) / 1000)
+                .append(",\"pid\":").append(pid).append(",\"tid\":").append(thread.getId())
+                .append(",\"args\":{");
+        appendArgs(event, phase);
+        event.append("}}");
+
+        synchronized (timeline) {
+            if (timeline.threads.add(pid + ":" + thread.getId())) {
+                timeline.events.add(metadata("thread_name", pid, thread.getId(), thread.getName()));
+            }
+            timeline.events.add(event.toString());
+        }
+    }
+
+    /**
+     * Writes the timeline, with the phases of all the sensors tracing to the same file
+     *
+     * @throws IOException if the file could not be written
+     */
+    void write() throws IOException {
+        if (timeline.file.getParent() != null) {
+            Files.createDirectories(timeline.file.getParent());
+        }
+        List<String> events;
+        synchronized (timeline) {
+            events = new ArrayList<>(timeline.events);
+        }
+        try (Writer writer = Files.newBufferedWriter(timeline.file, StandardCharsets.UTF_8)) {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            for (int i = 0; i < events.size(); i++) {
+                writer.write((i == 0) ? "\n" : ",\n");
+                writer.write(events.get(i));
+            }
+            writer.write("\n]}\n");
+        }
+    }
+
+    /**
+     * Returns the path of the trace file
+     *
+     * @return the absolute path of the trace file
+     */
+    Path getFile() {
+        return timeline.file;
+    }
+
+
+    private static String getName(Phase.Type type) {
+        switch (type) {
+            case ANALYSIS:
+                return "analysis";
+            case COMMAND:
+                return "command";
+            case LINT:
+                return "ansible-lint";
+            case PROCESS_RESULT:
+                return "process result";
+            case SAVE_ISSUES:
+                return "save issues";
+            case VERSION_PROBE:
+                return "version probe";
+            default:
+                return "extra rules extraction";
+        }
+    }
+
+    private static void appendArgs(StringBuilder event, Phase phase) {
+        switch (phase.getType()) {
+            case ANALYSIS:
+                appendArg(event, "sensor", phase.getFile());
+                appendArg(event, "files", phase.getFiles());
+                break;
+            case COMMAND:
+                appendArg(event, "command", phase.getCommand());
+                appendArg(event, "exitCode", phase.getExitCode());
+                appendArg(event, "bytesRead", phase.getBytesRead());
+                break;
+            case LINT:
+                event.append("\"targets\":[");
+                List<String> targets = phase.getTargets();
+                for (int i = 0; i < targets.size(); i++) {
+                    if (i > 0) {
+                        event.append(',');
+                    }
+                    appendString(event, targets.get(i));
+                }
+                event.append(']');
+                appendArg(event, "exitCode", phase.getExitCode());
+                appendArg(event, "bytesRead", phase.getBytesRead());
+                appendArg(event, "issues", phase.getIssues());
+                appendArg(event, "parseTimeMs", phase.getParseTime() / 1_000_000.0);
+                break;
+            case PROCESS_RESULT:
+                appendArg(event, "file", phase.getFile());
+                appendArg(event, "batchSize", phase.getFiles());
+                appendArg(event, "issues", phase.getIssues());
+                break;
+            case SAVE_ISSUES:
+                appendArg(event, "files", phase.getFiles());
+                appendArg(event, "issues", phase.getIssues());
+                appendArg(event, "ruleKeyLookupTimeMs", phase.getRuleKeyLookupTime() / 1_000_000.0);
+                break;
+            case VERSION_PROBE:
+                appendArg(event, "version", phase.getVersion());
+                break;
+            default:
+                appendArg(event, "directory", phase.getFile());
+                appendArg(event, "files", phase.getFiles());
+        }
+    }
+
+    private static void appendArg(StringBuilder event, String name, Object value) {
+        if (event.charAt(event.length() - 1) != '{') {
+            event.append(',');
+        }
+        appendString(event, name);
+        event.append(':');
+        if (value == null) {
+            event.append("null");
+        } else if (value instanceof Number) {
+            event.append(value);
+        } else {
+            appendString(event, value.toString());
+        }
+    }
+
+    private static String metadata(String name, int pid, long tid, String value) {
+        StringBuilder event = new StringBuilder("{\"name\":\"").append(name).append("\",\"ph\":\"M\",\"pid\":").append(pid)
+                .append(",\"tid\":").append(tid).append(",\"args\":{\"name\":");
+        appendString(event, value);
+        return event.append("}}").toString();
+    }
+
+    /**
+     * Appends a JSON string
+     */
+    static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+
+    /**
+     * Phases traced to a file
+     */
+    private static final class Timeline {
+        private final Path file;
+        private final long origin = System.nanoTime();
+        private final List<String> events = new ArrayList<>();
+        private final Set<String> threads = new HashSet<>();
+        private int processes = 0;
+
+
+        Timeline(Path file) {
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregator of the messages printed by {@code ansible-lint} to its error output. The same message is often printed for
+ * every linted file (deprecation warnings for instance): the messages are normalized and counted so that each distinct
+ * message is reported once at the end of the analysis, with the files it was printed for.
+ * <p>
+ * The memory used per distinct message is bounded: only the first {@value #MAX_FILES} files are kept, the others are
+ * only counted. Beyond {@value #MAX_MESSAGES} distinct messages, the new messages are only counted.
+ */
+final class AnsibleLintWarnings {
+    /**
+     * Maximum number of files listed for a message
+     */
+    static final int MAX_FILES = 5;
+
+    /**
+     * Maximum number of distinct messages kept
+     */
+    static final int MAX_MESSAGES = 1000;
+
+    /**
+     * Replacement of the paths of the linted files in the messages
+     */
+    static final String FILE_PLACEHOLDER = "<file>";
+
+    private final Path baseDir;
+    private final Map<String, Message> messages = new LinkedHashMap<>();
+    private long otherMessages = 0;
+
+
+    /**
+     * Constructor
+     *
+     * @param baseDir the project base directory, the files are listed relatively to it
+     */
+    AnsibleLintWarnings(Path baseDir) {
+        this.baseDir = baseDir.toAbsolutePath();
+    }
+
+
+    /**
+     * Adds the error output of an {@code ansible-lint} execution. Blank lines are ignored. If a line contains the path
+     * of one of the linted files, it is attributed to that file only, otherwise to all of them.
+     *
+     * @param lines the lines printed to the error output
+     * @param files the files linted by the execution
+     */
+    void add(List<String> lines, Collection<Path> files) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<String[]> paths = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String absolutePath = file.toAbsolutePath().toString();
+            String relativePath = file.startsWith(baseDir) ? baseDir.relativize(file).toString() : file.toString();
+            paths.add(new String[] { absolutePath, relativePath });
+        }
+
+        // The occurrences of a message are first gathered for the whole output, so that its files are counted once
+        Map<String, Message> outputMessages = new LinkedHashMap<>();
+        for (String line : lines) {
+            String text = normalize(line);
+            if (text.isEmpty()) {
+                continue;
+            }
+            String file = null;
+            for (String[] path : paths) {
+                String replaced = replace(text, path);
+                if (replaced != null) {
+                    text = replaced;
+                    file = path[1];
+                    break;
+                }
+            }
+            Message occurrences = outputMessages.computeIfAbsent(text, key -> new Message(Integer.MAX_VALUE));
+            occurrences.add(1, (file == null) ? paths.stream().map(path -> path[1]).collect(Collectors.toList()) : Collections.singletonList(file));
+        }
+
+        outputMessages.forEach((text, occurrences) -> {
+            Message message = messages.get(text);
+            if (message == null) {
+                if (messages.size() >= MAX_MESSAGES) {
+                    otherMessages += occurrences.count;
+                    return;
+                }
+                message = new Message(MAX_FILES);
+                messages.put(text, message);
+            }
+            message.add(occurrences.count, occurrences.files);
+        });
+    }
+
+    /**
+     * Tells if no message has been added
+     *
+     * @return {@code true} if no message has been added
+     */
+    boolean isEmpty() {
+        return messages.isEmpty() && otherMessages == 0;
+    }
+
+    /**
+     * Returns the summary of the added messages: every distinct message is followed by the number of times it was
+     * printed and by the files it was printed for
+     *
+     * @return the summary, or {@code null} if no message has been added
+     */
+    @Nullable
+    String getSummary() {
+        if (isEmpty()) {
+            return null;
+        }
+        String separator = System.getProperty("line.separator");
+        StringBuilder summary = new StringBuilder("Messages printed to error output during analysis:");
+        messages.forEach((text, message) -> {
+            summary.append(separator).append(text).append(" [").append(message.count).append(" time(s), file(s): ");
+            summary.append(String.join(", ", message.files));
+            if (message.otherFiles > 0) {
+                summary.append(" and ").append(message.otherFiles).append(" more");
+            }
+            summary.append(']');
+        });
+        if (otherMessages > 0) {
+            summary.append(separator).append("... and ").append(otherMessages).append(" other line(s)");
+        }
+        return summary.toString();
+    }
+
+
+    /**
+     * Trims a line and replaces every sequence of whitespaces with a single space
+     *
+     * @param line a line of the error output
+     * @return the normalized line
+     */
+    static String normalize(String line) {
+        StringBuilder text = new StringBuilder(line.length());
+        boolean space = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = text.length() > 0;
+            } else {
+                if (space) {
+                    text.append(' ');
+                    space = false;
+                }
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Replaces the absolute or relative path of a file in a message
+     *
+     * @return the message with the path replaced, or {@code null} if the message does not contain the path
+     */
+    @Nullable
+    private static String replace(String text, String[] path) {
+        for (String candidate : path) {
+            if (!candidate.isEmpty() && text.contains(candidate)) {
+                return text.replace(candidate, FILE_PLACEHOLDER);
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Occurrences of a distinct message
+     */
+    private static final class Message {
+        private final int maxFiles;
+        private final List<String> files = new ArrayList<>();
+        private long count = 0;
+        private long otherFiles = 0;
+
+
+        Message(int maxFiles) {
+            this.maxFiles = maxFiles;
+        }
+
+
+        void add(long occurrences, Collection<String> messageFiles) {
+            count += occurrences;
+            for (String file : messageFiles) {
+                if (files.contains(file)) {
+                    continue;
+                }
+                if (files.size() < maxFiles) {
+                    files.add(file);
+                } else {
+                    otherFiles++;
+                }
+            }
+        }
+    }
+}
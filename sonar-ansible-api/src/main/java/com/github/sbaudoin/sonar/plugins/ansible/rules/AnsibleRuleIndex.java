@@ -0,0 +1,343 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of the rules of a rule definition directory, generated when the plugin is built so that the rule repository
+ * can be defined at server startup without listing the directory in the plugin JAR, checking the existence of every
+ * HTML description and parsing every JSON file.
+ * <p>
+ * The index is a UTF-8 text file named {@value #FILE_NAME} written next to the rule files. After a header line, every
+ * line describes a rule with the following tab-separated fields: key, title, type, status, severity, comma-separated
+ * tags, remediation function, constant cost, linear factor, linear offset and gap description. Absent values are
+ * empty; tabs, line breaks and backslashes are escaped with a backslash. The HTML descriptions are not part of the
+ * index: they are loaded from the rule directory.
+ * <p>
+ * The index is written by running this class with the rule definition directories as arguments. A directory whose
+ * rules use JSON fields the index does not support gets no index, so that its rules are still defined by reading the
+ * JSON files.
+ */
+public final class AnsibleRuleIndex {
+    /**
+     * Name of the index file
+     */
+    static final String FILE_NAME = "rules.index";
+
+    /**
+     * Header of the index file, holding the format version
+     */
+    static final String HEADER = "# Ansible rule index, format 1";
+
+    private static final int FIELDS = 11;
+
+
+    private AnsibleRuleIndex() {
+    }
+
+
+    /**
+     * Writes the index of each rule definition directory passed as argument
+     *
+     * @param args the rule definition directories
+     * @throws IOException if a directory could not be read or an index could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            Path dir = Paths.get(arg);
+            if (!Files.isDirectory(dir)) {
+                System.err.println("[WARNING] No rule definition directory " + dir + ", no rule index written");
+                continue;
+            }
+            int count = write(dir);
+            if (count >= 0) {
+                System.out.println("[INFO] " + count + " rule(s) indexed in " + dir.resolve(FILE_NAME));
+            }
+        }
+    }
+
+
+    /**
+     * Writes the index of a rule definition directory. Rules that have no HTML description are not indexed.
+     *
+     * @param dir the rule definition directory
+     * @return the number of indexed rules, or -1 if the index could not be written because a rule uses an unsupported
+     *         JSON field (any previous index is deleted)
+     * @throws IOException if the directory could not be read or the index could not be written
+     */
+    static int write(Path dir) throws IOException {
+        List<Path> definitions;
+        try (Stream<Path> files = Files.list(dir)) {
+            definitions = files.filter(file -> file.getFileName().toString().endsWith(".json")).sorted().collect(Collectors.toList());
+        }
+
+        List<String> lines = new ArrayList<>(definitions.size() + 1);
+        lines.add(HEADER);
+        for (Path definition : definitions) {
+            String key = definition.getFileName().toString().replace(".json", "");
+            if (!Files.exists(definition.resolveSibling(key + ".html"))) {
+                System.err.println("[WARNING] Rule " + key + " defined but not described (.html file missing)");
+                continue;
+            }
+            Rule rule;
+            try (Reader reader = Files.newBufferedReader(definition, StandardCharsets.UTF_8)) {
+                rule = parse(key, new JsonStreamReader(reader));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[WARNING] Cannot index rule " + key + ", no rule index written: " + e.getMessage());
+                Files.deleteIfExists(dir.resolve(FILE_NAME));
+                return -1;
+            }
+            lines.add(format(rule));
+        }
+        Files.write(dir.resolve(FILE_NAME), lines, StandardCharsets.UTF_8);
+        return lines.size() - 1;
+    }
+
+    /**
+     * Reads an index
+     *
+     * @param in the index content, not closed by this method
+     * @return the indexed rules
+     * @throws IOException if the index could not be read
+     * @throws IllegalArgumentException if the content is not a valid index
+     */
+    static List<Rule> read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        if (!HEADER.equals(reader.readLine())) {
+            throw new IllegalArgumentException("unsupported rule index format");
+        }
+        List<Rule> rules = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            if (fields.length != FIELDS) {
+                throw new IllegalArgumentException("invalid rule index line: " + line);
+            }
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = unescape(fields[i]);
+            }
+            rules.add(new Rule(fields));
+        }
+        return rules;
+    }
+
+
+    /**
+     * Reads a rule definition the way {@code RuleMetadataLoader} does
+     *
+     * @throws IllegalArgumentException if the definition uses a field that the index does not support
+     */
+    private static Rule parse(String key, JsonStreamReader json) throws IOException {
+        String[] fields = new String[FIELDS];
+        Arrays.fill(fields, "");
+        fields[0] = key;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            switch (name) {
+                case "title":
+                    fields[1] = json.nextString();
+                    break;
+                case "type":
+                    fields[2] = json.nextString();
+                    break;
+                case "status":
+                    fields[3] = json.nextString();
+                    break;
+                case "defaultSeverity":
+                    fields[4] = json.nextString();
+                    break;
+                case "tags":
+                    List<String> tags = new ArrayList<>();
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        tags.add(json.nextString());
+                    }
+                    json.endArray();
+                    fields[5] = String.join(",", tags);
+                    break;
+                case "remediation":
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        String remediationName = json.nextName();
+                        switch (remediationName) {
+                            case "func":
+                                fields[6] = json.nextString();
+                                break;
+                            case "constantCost":
+                                fields[7] = json.nextString();
+                                break;
+                            case "linearFactor":
+                                fields[8] = json.nextString();
+                                break;
+                            case "linearOffset":
+                                fields[9] = json.nextString();
+                                break;
+                            case "linearDesc":
+                                fields[10] = json.nextString();
+                                break;
+                            default:
+                                throw new IllegalArgumentException("unsupported field remediation." + remediationName);
+                        }
+                    }
+                    json.endObject();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported field " + name);
+            }
+        }
+        json.endObject();
+        return new Rule(fields);
+    }
+
+    private static String format(Rule rule) {
+        StringBuilder line = new StringBuilder();
+        for (String field : rule.fields) {
+            if (line.length() > 0) {
+                line.append('\t');
+            }
+            escape(field, line);
+        }
+        return line.toString();
+    }
+
+    static void escape(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i == value.length() - 1) {
+                out.append(c);
+                continue;
+            }
+            c = value.charAt(++i);
+            switch (c) {
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+
+    /**
+     * Indexed metadata of a rule
+     */
+    static final class Rule {
+        private final String[] fields;
+
+
+        private Rule(String[] fields) {
+            this.fields = fields;
+        }
+
+
+        String getKey() {
+            return fields[0];
+        }
+
+        String getTitle() {
+            return fields[1];
+        }
+
+        String getType() {
+            return fields[2];
+        }
+
+        String getStatus() {
+            return fields[3];
+        }
+
+        String getSeverity() {
+            return fields[4];
+        }
+
+        List<String> getTags() {
+            return fields[5].isEmpty() ? Collections.emptyList() : Arrays.asList(fields[5].split(","));
+        }
+
+        String getRemediationFunction() {
+            return fields[6];
+        }
+
+        String getConstantCost() {
+            return fields[7];
+        }
+
+        String getLinearFactor() {
+            return fields[8];
+        }
+
+        String getLinearOffset() {
+            return fields[9];
+        }
+
+        String getGapDescription() {
+            return fields[10];
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Events emitted for the phases of the Ansible sensors: whole analysis, {@code ansible-lint} commands, linted batches,
+ * processing of their output, issue saving, version probe and extraction of the extra rules. The events are
+ * <a href="https://docs.oracle.com/en/java/javase/11/docs/api/jdk.jfr/jdk/jfr/package-summary.html">Java Flight
+ * Recorder</a> events, so that a recording of a scanner run, e.g. with the JVM option
+ * {@code -XX:StartFlightRecording=filename=scanner.jfr}, tells where the analysis time goes. The phases are also added
+ * to the {@link AnsibleLintTrace timeline} of the sensor, if it is traced.
+ * <p>
+ * When no recording is in progress, or when the JVM does not support Java Flight Recorder, and the sensor is not
+ * traced, a phase only costs the allocation of a {@link Phase} object: its attributes are not computed. The Java Flight
+ * Recorder classes are only loaded if the JVM provides them.
+ */
+public final class AnsibleSensorEvents {
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+
+    private AnsibleSensorEvents() {
+    }
+
+
+    /**
+     * Starts the phase of the analysis of a sensor
+     *
+     * @param trace the trace of the sensor or {@code null} if it is not traced
+     * @param sensor the name of the sensor
+     * @return the phase, to be closed once the analysis has completed
+     */
+    static Phase analysis(@Nullable AnsibleLintTrace trace, String sensor) {
+        return new Phase(Phase.Type.ANALYSIS, trace).file(sensor);
+    }
+
+    /**
+     * Starts the phase of the execution of a command
+     *
+     * @param trace the trace of the sensor or {@code null} if it is not traced
+     * @param command the command
+     * @return the phase, to be closed once the command has exited
+     */
+    static Phase command(@Nullable AnsibleLintTrace trace, List<String> command) {
+        return new Phase(Phase.Type.COMMAND, trace).command(command);
+    }
+
+    /**
+     * Starts the phase of the linting of a batch of files or roles by a single {@code ansible-lint} execution, including
+     * the parsing of its output
+     *
+     * @param trace the trace of the sensor or {@code null} if it is not traced
+     * @param targets the paths of the files or roles of the batch
+     * @return the phase, to be closed once the output has been parsed
+     */
+    static Phase lint(@Nullable AnsibleLintTrace trace, List<String> targets) {
+        return new Phase(Phase.Type.LINT, trace).targets(targets);
+    }
+
+    /**
+     * Starts the phase of the processing of the result of a batch: error output, registration and caching of the issues
+     *
+     * @param trace the trace of the sensor or {@code null} if it is not traced
+     * @param file the first file of the batch
+     * @param batchSize the number of files in the batch
+     * @return the phase, to be closed once the result has been processed
+     */
+    static Phase processResult(@Nullable AnsibleLintTrace trace, String file, int batchSize) {
+        return new Phase(Phase.Type.PROCESS_RESULT, trace).file(file).files(batchSize);
+    }
+
+    /**
+     * Starts the phase of the saving of the issues
+     *
+     * @param trace the trace of the sensor or {@code null} if it is not traced
+     * @return the phase, to be closed once the issues have been saved
+     */
+    static Phase saveIssues(@Nullable AnsibleLintTrace trace) {
+        return new Phase(Phase.Type.SAVE_ISSUES, trace);
+    }
+
+    /**
+     * Starts the phase of the probe of the versions of Ansible and {@code ansible-lint}
+     *
+     * @param trace the trace of the sensor or {@code null} if it is not traced
+     * @return the phase, to be closed once the versions have been probed
+     */
+    static Phase versionProbe(@Nullable AnsibleLintTrace trace) {
+        return new Phase(Phase.Type.VERSION_PROBE, trace);
+    }
+
+    /**
+     * Starts the phase of the extraction of the extra rules from the plugin. This phase precedes the analysis and is
+     * not traced.
+     *
+     * @return the phase, to be closed once the rules have been extracted
+     */
+    public static Phase extraRulesExtraction() {
+        return new Phase(Phase.Type.EXTRA_RULES_EXTRACTION, null);
+    }
+
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, AnsibleSensorEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * A phase of the analysis, in progress until it is closed. The attributes of the phase are only worth being
+     * computed if the phase is {@link #isEnabled() enabled}.
+     */
+    public static final class Phase implements AutoCloseable {
+        /**
+         * Types of phases
+         */
+        enum Type {
+            ANALYSIS, COMMAND, LINT, PROCESS_RESULT, SAVE_ISSUES, VERSION_PROBE, EXTRA_RULES_EXTRACTION
+        }
+
+        private final Type type;
+        private final Object event;
+        private final AnsibleLintTrace trace;
+        private final long start;
+        private String command;
+        private String file;
+        private int files = 0;
+        private int exitCode = 0;
+        private long bytesRead = 0;
+        private int issues = 0;
+        private long parseTime = 0;
+        private long ruleKeyLookupTime = 0;
+        private String version;
+        private List<String> targets = Collections.emptyList();
+
+
+        private Phase(Type type, @Nullable AnsibleLintTrace trace) {
+            this.type = type;
+            this.event = AVAILABLE ? FlightRecorderEvents.begin(type) : null;
+            this.trace = trace;
+            this.start = (trace == null) ? 0 : System.nanoTime();
+        }
+
+
+        /**
+         * Tells if the phase is recorded or traced
+         *
+         * @return {@code true} if an event will be emitted for this phase
+         */
+        public boolean isEnabled() {
+            return event != null || trace != null;
+        }
+
+        Phase command(List<String> command) {
+            if (isEnabled()) {
+                this.command = String.join(" ", command);
+            }
+            return this;
+        }
+
+        private Phase targets(List<String> targets) {
+            this.targets = targets;
+            if (!targets.isEmpty()) {
+                this.file = targets.get(0);
+            }
+            this.files = targets.size();
+            return this;
+        }
+
+        /**
+         * Sets the file or directory the phase is about
+         *
+         * @param file the path of the file or directory
+         * @return this phase
+         */
+        public Phase file(@Nullable String file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * Sets the number of files the phase is about
+         *
+         * @param files the number of files
+         * @return this phase
+         */
+        public Phase files(int files) {
+            this.files = files;
+            return this;
+        }
+
+        Phase exitCode(int exitCode) {
+            this.exitCode = exitCode;
+            return this;
+        }
+
+        /**
+         * Counts the bytes of an output line, including its line break
+         *
+         * @param line a line read from an output
+         */
+        void addLine(String line) {
+            if (isEnabled()) {
+                bytesRead += utf8Length(line) + 1;
+            }
+        }
+
+        Phase issues(int issues) {
+            this.issues = issues;
+            return this;
+        }
+
+        void addParseTime(long nanos) {
+            parseTime += nanos;
+        }
+
+        void addRuleKeyLookupTime(long nanos) {
+            ruleKeyLookupTime += nanos;
+        }
+
+        Phase version(@Nullable String version) {
+            this.version = version;
+            return this;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        String getCommand() {
+            return command;
+        }
+
+        String getFile() {
+            return file;
+        }
+
+        int getFiles() {
+            return files;
+        }
+
+        int getExitCode() {
+            return exitCode;
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+
+        int getIssues() {
+            return issues;
+        }
+
+        long getParseTime() {
+            return parseTime;
+        }
+
+        long getRuleKeyLookupTime() {
+            return ruleKeyLookupTime;
+        }
+
+        String getVersion() {
+            return version;
+        }
+
+        List<String> getTargets() {
+            return targets;
+        }
+
+        /**
+         * Ends the phase and emits its event
+         */
+        @Override
+        public void close() {
+            if (event != null) {
+                FlightRecorderEvents.commit(event, this);
+            }
+            if (trace != null) {
+                trace.add(this, start, System.nanoTime(), Thread.currentThread());
+            }
+        }
+
+
+        private static int utf8Length(String line) {
+            int length = line.length();
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c >= 0x800 && !Character.isSurrogate(c)) {
+                    length += 2;
+                } else if (c >= 0x80) {
+                    // Two bytes, or four bytes for a surrogate pair
+                    length++;
+                }
+            }
+            return length;
+        }
+    }
+}
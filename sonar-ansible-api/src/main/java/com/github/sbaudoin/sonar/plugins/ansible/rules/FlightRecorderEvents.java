@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AnsibleSensorEvents.Phase;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import javax.annotation.Nullable;
+
+/**
+ * Java Flight Recorder events of the {@link AnsibleSensorEvents sensor phases}. This class is only loaded if the JVM
+ * provides Java Flight Recorder.
+ */
+final class FlightRecorderEvents {
+    private static final String PREFIX = "com.github.sbaudoin.sonar.ansible.";
+    private static final String CATEGORY = "SonarQube";
+    private static final String SUB_CATEGORY = "Ansible";
+
+
+    private FlightRecorderEvents() {
+    }
+
+
+    /**
+     * Begins the event of a phase
+     *
+     * @param type the type of the phase
+     * @return the event, or {@code null} if this type of event is not recorded
+     */
+    @Nullable
+    static Object begin(Phase.Type type) {
+        Event event;
+        switch (type) {
+            case ANALYSIS:
+                event = new AnalysisEvent();
+                break;
+            case COMMAND:
+                event = new CommandEvent();
+                break;
+            case LINT:
+                event = new LintEvent();
+                break;
+            case PROCESS_RESULT:
+                event = new ProcessResultEvent();
+                break;
+            case SAVE_ISSUES:
+                event = new SaveIssuesEvent();
+                break;
+            case VERSION_PROBE:
+                event = new VersionProbeEvent();
+                break;
+            default:
+                event = new ExtraRulesExtractionEvent();
+        }
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of a phase and commits it with the attributes of the phase
+     *
+     * @param event the event returned by {@link #begin(Phase.Type)}
+     * @param phase the phase
+     */
+    static void commit(Object event, Phase phase) {
+        Event jfrEvent = (Event)event;
+        jfrEvent.end();
+        if (!jfrEvent.shouldCommit()) {
+            return;
+        }
+        if (event instanceof AnalysisEvent) {
+            AnalysisEvent analysisEvent = (AnalysisEvent)event;
+            analysisEvent.sensor = phase.getFile();
+            analysisEvent.fileCount = phase.getFiles();
+        } else if (event instanceof CommandEvent) {
+            CommandEvent commandEvent = (CommandEvent)event;
+            commandEvent.command = phase.getCommand();
+            commandEvent.exitCode = phase.getExitCode();
+            commandEvent.bytesRead = phase.getBytesRead();
+        } else if (event instanceof LintEvent) {
+            LintEvent lintEvent = (LintEvent)event;
+            lintEvent.file = phase.getFile();
+            lintEvent.batchSize = phase.getFiles();
+            lintEvent.exitCode = phase.getExitCode();
+            lintEvent.bytesRead = phase.getBytesRead();
+            lintEvent.issueCount = phase.getIssues();
+            lintEvent.parseTime = phase.getParseTime();
+        } else if (event instanceof ProcessResultEvent) {
+            ProcessResultEvent processEvent = (ProcessResultEvent)event;
+            processEvent.file = phase.getFile();
+            processEvent.batchSize = phase.getFiles();
+            processEvent.issueCount = phase.getIssues();
+        } else if (event instanceof SaveIssuesEvent) {
+            SaveIssuesEvent saveEvent = (SaveIssuesEvent)event;
+            saveEvent.fileCount = phase.getFiles();
+            saveEvent.issueCount = phase.getIssues();
+            saveEvent.ruleKeyLookupTime = phase.getRuleKeyLookupTime();
+        } else if (event instanceof VersionProbeEvent) {
+            ((VersionProbeEvent)event).version = phase.getVersion();
+        } else {
+            ExtraRulesExtractionEvent extractionEvent = (ExtraRulesExtractionEvent)event;
+            extractionEvent.directory = phase.getFile();
+            extractionEvent.fileCount = phase.getFiles();
+        }
+        jfrEvent.commit();
+    }
+
+
+    @Name(PREFIX + "Analysis")
+    @Label("Analysis")
+    @Description("Analysis of a sensor")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    static final class AnalysisEvent extends Event {
+        @Label("Sensor")
+        String sensor;
+
+        @Label("File Count")
+        @Description("Number of analyzed files")
+        int fileCount;
+    }
+
+    @Name(PREFIX + "Command")
+    @Label("Command")
+    @Description("Execution of an ansible-lint or ansible command, or replay of a recorded one")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    static final class CommandEvent extends Event {
+        @Label("Command")
+        String command;
+
+        @Label("Exit Code")
+        int exitCode;
+
+        @Label("Bytes Read")
+        @Description("Size of the standard output")
+        @DataAmount
+        long bytesRead;
+    }
+
+    @Name(PREFIX + "Lint")
+    @Label("Lint")
+    @Description("Linting of a batch of files or roles by an ansible-lint execution, including the parsing of its output")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    static final class LintEvent extends Event {
+        @Label("File")
+        @Description("First file or role of the batch")
+        String file;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Exit Code")
+        int exitCode;
+
+        @Label("Bytes Read")
+        @Description("Size of the standard output")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Issue Count")
+        int issueCount;
+
+        @Label("Parse Time")
+        @Description("Time spent parsing the output, while ansible-lint was running")
+        @Timespan
+        long parseTime;
+    }
+
+    @Name(PREFIX + "ProcessResult")
+    @Label("Process Result")
+    @Description("Processing of the error output and registration of the issues of a batch")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    static final class ProcessResultEvent extends Event {
+        @Label("File")
+        @Description("First file of the batch")
+        String file;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Issue Count")
+        int issueCount;
+    }
+
+    @Name(PREFIX + "SaveIssues")
+    @Label("Save Issues")
+    @Description("Saving of the issues found on the analyzed files")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    static final class SaveIssuesEvent extends Event {
+        @Label("File Count")
+        int fileCount;
+
+        @Label("Issue Count")
+        int issueCount;
+
+        @Label("Rule Key Lookup Time")
+        @Description("Time spent looking up the keys of the active rules")
+        @Timespan
+        long ruleKeyLookupTime;
+    }
+
+    @Name(PREFIX + "VersionProbe")
+    @Label("Version Probe")
+    @Description("Probe of the versions of Ansible and ansible-lint")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    static final class VersionProbeEvent extends Event {
+        @Label("Version")
+        @Description("Output of ansible-lint --version")
+        String version;
+    }
+
+    @Name(PREFIX + "ExtraRulesExtraction")
+    @Label("Extra Rules Extraction")
+    @Description("Extraction of the extra ansible-lint rules from the plugin")
+    @Category({ CATEGORY, SUB_CATEGORY })
+    static final class ExtraRulesExtractionEvent extends Event {
+        @Label("Directory")
+        String directory;
+
+        @Label("File Count")
+        int fileCount;
+    }
+}
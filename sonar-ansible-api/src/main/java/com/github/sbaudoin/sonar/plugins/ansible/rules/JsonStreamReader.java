@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Minimal pull reader of a JSON document. Values are decoded one at a time from the underlying reader, so that a
+ * document of any size can be processed with a bounded amount of memory. Anything before the first {@code [} or
+ * {@code &#123;} of the document (e.g. a message printed by ansible-lint) and anything after its end are ignored.
+ */
+final class JsonStreamReader implements Closeable {
+    /**
+     * Type of the next item of the document
+     */
+    enum Token {
+        BEGIN_ARRAY,
+        END_ARRAY,
+        BEGIN_OBJECT,
+        END_OBJECT,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    private long offset = 0;
+    private int[] stack = new int[16];
+    private int depth = 1;
+    private final StringBuilder value = new StringBuilder();
+    private Token peeked;
+    private String peekedValue;
+
+
+    /**
+     * Constructor
+     *
+     * @param in the reader of the JSON document
+     */
+    JsonStreamReader(Reader in) {
+        this.in = in;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+
+    /**
+     * Returns the type of the next item without consuming it
+     *
+     * @return the type of the next item
+     * @throws IOException if the document cannot be read or is not valid JSON
+     */
+    Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_DOCUMENT:
+                do {
+                    c = read();
+                } while (c != -1 && c != '[' && c != '{');
+                if (c == -1) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return readValue(c);
+            case NONEMPTY_DOCUMENT:
+                return peeked = Token.END_DOCUMENT;
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (stack[depth - 1] == NONEMPTY_ARRAY) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                return readValue(c);
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                expect(c, '"');
+                peekedValue = readString();
+                stack[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            default:
+                expect(nextNonWhitespace(), ':');
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return readValue(nextNonWhitespace());
+        }
+    }
+
+    /**
+     * Tells if the current array or object has another element
+     *
+     * @return {@code false} if the next item is the end of an array, an object or the document
+     * @throws IOException if the document cannot be read or is not valid JSON
+     */
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    /**
+     * Returns the name of the next property of the current object
+     *
+     * @return the name of the property
+     * @throws IOException if the next item is not a property name
+     */
+    String nextName() throws IOException {
+        consume(Token.NAME);
+        return peekedValue;
+    }
+
+    /**
+     * Returns the next value as a string. Numbers are returned as written in the document.
+     *
+     * @return the string or the number
+     * @throws IOException if the next item is neither a string nor a number
+     */
+    String nextString() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw syntaxError("expected a string but was " + token);
+        }
+        peeked = null;
+        return peekedValue;
+    }
+
+    /**
+     * Returns the next value as an integer
+     *
+     * @return the integer
+     * @throws IOException if the next item is not a number or a string that represents an integer
+     */
+    int nextInt() throws IOException {
+        String number = nextString();
+        try {
+            return Integer.parseInt(number);
+        } catch (NumberFormatException e) {
+            try {
+                return (int)Double.parseDouble(number);
+            } catch (NumberFormatException e2) {
+                throw syntaxError("expected an integer but was " + number);
+            }
+        }
+    }
+
+    /**
+     * Skips the next value, including all the elements of an array or an object
+     *
+     * @throws IOException if the document cannot be read or is not valid JSON
+     */
+    void skipValue() throws IOException {
+        int count = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    count++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    count++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    count--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    count--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("unexpected end of document");
+                default:
+                    peeked = null;
+            }
+        } while (count > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    private void consume(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int context) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = context;
+    }
+
+    private Token readValue(int c) throws IOException {
+        switch (c) {
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+            case '"':
+                peekedValue = readString();
+                return peeked = Token.STRING;
+            case 't':
+                readLiteral("rue");
+                peekedValue = "true";
+                return peeked = Token.BOOLEAN;
+            case 'f':
+                readLiteral("alse");
+                peekedValue = "false";
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                readLiteral("ull");
+                peekedValue = null;
+                return peeked = Token.NULL;
+            default:
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw syntaxError("unexpected character " + describe(c));
+                }
+                value.setLength(0);
+                value.append((char)c);
+                while (pos < limit || fill()) {
+                    char next = buffer[pos];
+                    if ((next < '0' || next > '9') && next != '.' && next != 'e' && next != 'E' && next != '+' && next != '-') {
+                        break;
+                    }
+                    value.append(next);
+                    pos++;
+                }
+                peekedValue = value.toString();
+                return peeked = Token.NUMBER;
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            expect(read(), rest.charAt(i));
+        }
+    }
+
+    private String readString() throws IOException {
+        value.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == -1) {
+                throw syntaxError("unterminated string");
+            }
+            if (c != '\\') {
+                value.append((char)c);
+                continue;
+            }
+            c = read();
+            switch (c) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw syntaxError("invalid unicode escape sequence");
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    value.append((char)code);
+                    break;
+                case -1:
+                    throw syntaxError("unterminated string");
+                default:
+                    value.append((char)c);
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        if (c == -1) {
+            throw syntaxError("unexpected end of document");
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private void expect(int c, char expected) throws IOException {
+        if (c != expected) {
+            throw syntaxError("expected '" + expected + "' but was " + describe(c));
+        }
+    }
+
+    private static String describe(int c) {
+        return (c == -1) ? "end of document" : ("'" + (char)c + "'");
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed JSON at offset " + (offset + pos) + ": " + message);
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Enforces resource limits on child processes: a wall-clock timeout, enforced by a single shared watchdog thread that
+ * kills the whole process tree when the timeout expires, and a memory ceiling, enforced with {@code ulimit -v} by a
+ * shell wrapper on Linux.
+ * <p>
+ * On Unix systems, the wrapped command is also started in its own session with {@code setsid} (when available) so that
+ * its whole process group can be killed at once, including the processes started by ansible-lint.
+ * <p>
+ * The processes {@link #register(Process) registered} to the watchdog are killed with their descendants if the JVM
+ * exits while they are still running.
+ */
+final class ProcessWatchdog {
+    private static final Logger LOGGER = Loggers.get(ProcessWatchdog.class);
+
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().contains("windows");
+    private static final boolean LINUX = System.getProperty("os.name").toLowerCase().contains("linux");
+    private static final String SETSID = findExecutable("setsid");
+    private static final long KILL_TIMEOUT = 5000;
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "ansible-lint-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Set<Process> PROCESSES = ConcurrentHashMap.newKeySet();
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> PROCESSES.forEach(ProcessWatchdog::killTree), "ansible-lint-cleanup"));
+    }
+
+
+    private ProcessWatchdog() {
+    }
+
+
+    /**
+     * Tells if a memory limit can be enforced on this system
+     *
+     * @return {@code true} on Linux
+     */
+    static boolean isMemoryLimitSupported() {
+        return LINUX;
+    }
+
+    /**
+     * Wraps a command so that the memory limit is enforced and that its process tree can be killed
+     *
+     * @param command the command to be executed
+     * @param memoryLimit the maximum virtual memory of the command, in megabytes, or 0 for no limit. Ignored if not
+     *                    {@link #isMemoryLimitSupported() supported}.
+     * @return the command to be executed instead, or the passed command if it does not need to be wrapped
+     */
+    static List<String> wrap(List<String> command, long memoryLimit) {
+        if (WINDOWS || SETSID == null && (memoryLimit <= 0 || !LINUX)) {
+            return command;
+        }
+        StringBuilder script = new StringBuilder();
+        if (memoryLimit > 0 && LINUX) {
+            script.append("ulimit -v ").append(memoryLimit * 1024).append(" || exit 126; ");
+        }
+        script.append("exec ");
+        if (SETSID != null) {
+            script.append('\'').append(SETSID).append("' ");
+        }
+        script.append("\"$0\" \"$@\"");
+        List<String> wrapped = new ArrayList<>(Arrays.asList("/bin/sh", "-c", script.toString()));
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * Starts watching a process
+     *
+     * @param process the process to be watched
+     * @param timeout the maximum time the process may run, in milliseconds
+     * @return the watch, to be cancelled when the process exits
+     */
+    static Watch watch(Process process, long timeout) {
+        Watch watch = new Watch(process);
+        watch.future = TIMER.schedule(watch::expire, timeout, TimeUnit.MILLISECONDS);
+        return watch;
+    }
+
+    /**
+     * Registers a running process, to be killed if the JVM exits before it does
+     *
+     * @param process a process that has just been started
+     */
+    static void register(Process process) {
+        PROCESSES.add(process);
+    }
+
+    /**
+     * Unregisters a process, once it has exited
+     *
+     * @param process a registered process
+     */
+    static void unregister(Process process) {
+        PROCESSES.remove(process);
+    }
+
+    /**
+     * Kills a process and all its descendants, and waits at most 5 seconds for the process to exit. The descendants
+     * are listed before the process is killed, as they are not its descendants any more once it has exited.
+     *
+     * @param process the process to be killed
+     */
+    static void killTree(Process process) {
+        List<Object> descendants = getDescendants(process);
+        long pid = getPid(process);
+        if (pid > 0 && (WINDOWS || SETSID != null)) {
+            List<String> kill = WINDOWS ?
+                    Arrays.asList("taskkill", "/F", "/T", "/PID", Long.toString(pid)) :
+                    Arrays.asList("kill", "-KILL", "-" + pid);
+            try {
+                Process killer = new ProcessBuilder(kill).redirectErrorStream(true).start();
+                try (InputStream output = killer.getInputStream()) {
+                    while (output.read() != -1) {
+                        // Discard the output
+                    }
+                }
+                killer.waitFor();
+            } catch (IOException e) {
+                LOGGER.debug("Cannot kill process {}: {}", pid, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        process.destroyForcibly();
+        descendants.forEach(ProcessWatchdog::destroyForcibly);
+        try {
+            process.waitFor(KILL_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Returns the identifier of a process: {@code Process.pid()} is only available from Java 9, the private field of the
+     * process implementation is used with Java 8
+     *
+     * @return the identifier of the process or -1 if unknown
+     */
+    private static long getPid(Process process) {
+        try {
+            return (Long)Process.class.getMethod("pid").invoke(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8
+        }
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return field.getInt(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the descendants of a process, as {@code ProcessHandle} objects: {@code ProcessHandle} is only available
+     * from Java 9, it is used through reflection. With Java 8, only the process group (Unix) or the process tree
+     * (Windows) of the process is killed.
+     *
+     * @return the descendants of the process, or an empty list if they cannot be listed
+     */
+    private static List<Object> getDescendants(Process process) {
+        try {
+            Object handle = Process.class.getMethod("toHandle").invoke(process);
+            Stream<?> descendants = (Stream<?>)Class.forName("java.lang.ProcessHandle").getMethod("descendants").invoke(handle);
+            return descendants.collect(Collectors.<Object>toList());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static void destroyForcibly(Object processHandle) {
+        try {
+            Class.forName("java.lang.ProcessHandle").getMethod("destroyForcibly").invoke(processHandle);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Cannot kill process {}: {}", processHandle, e.getMessage());
+        }
+    }
+
+    private static String findExecutable(String name) {
+        if (WINDOWS) {
+            return null;
+        }
+        for (String dir : Arrays.asList("/usr/bin", "/bin", "/usr/local/bin")) {
+            File file = new File(dir, name);
+            if (file.canExecute()) {
+                return file.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Watch of a process
+     */
+    static final class Watch {
+        private final Process process;
+        private final AtomicBoolean expired = new AtomicBoolean(false);
+        private ScheduledFuture<?> future;
+
+
+        private Watch(Process process) {
+            this.process = process;
+        }
+
+
+        /**
+         * Stops watching the process
+         */
+        void cancel() {
+            future.cancel(false);
+        }
+
+        /**
+         * Tells if the process has been killed because it ran for too long
+         *
+         * @return {@code true} if the timeout expired
+         */
+        boolean isExpired() {
+            return expired.get();
+        }
+
+        private void expire() {
+            if (process.isAlive()) {
+                expired.set(true);
+                LOGGER.debug("Process timed out, killing it");
+                killTree(process);
+            }
+        }
+    }
+}
@@ -30,6 +30,38 @@ public class AnsibleSettings {
     public static final String ANSIBLE_LINT_CONF_PATH_DEFAULT_VALUE = "";
     public static final String ANSIBLE_LINT_DISABLE_WARNINGS_KEY = "sonar.ansible.ansiblelint.disable_warnings";
     public static final String ANSIBLE_LINT_DISABLE_WARNINGS_DEFAULT_VALUE = "false";
+    public static final String ANSIBLE_LINT_PARALLELISM_KEY = "sonar.ansible.ansiblelint.parallelism";
+    public static final String ANSIBLE_LINT_PARALLELISM_DEFAULT_VALUE = "0";
+    public static final String ANSIBLE_LINT_BATCH_SIZE_KEY = "sonar.ansible.ansiblelint.batch_size";
+    public static final String ANSIBLE_LINT_BATCH_SIZE_DEFAULT_VALUE = "1";
+    public static final String ANSIBLE_LINT_DAEMON_KEY = "sonar.ansible.ansiblelint.daemon";
+    public static final String ANSIBLE_LINT_DAEMON_DEFAULT_VALUE = "false";
+    public static final String ANSIBLE_LINT_PYTHON_PATH_KEY = "sonar.ansible.ansiblelint.python.path";
+    public static final String ANSIBLE_LINT_PYTHON_PATH_DEFAULT_VALUE = "";
+    public static final String ANSIBLE_LINT_CACHE_KEY = "sonar.ansible.cache.enabled";
+    public static final String ANSIBLE_LINT_CACHE_DEFAULT_VALUE = "false";
+    public static final String ANSIBLE_LINT_CACHE_PATH_KEY = "sonar.ansible.cache.path";
+    public static final String ANSIBLE_LINT_CACHE_PATH_DEFAULT_VALUE = "";
+    public static final String ANSIBLE_LINT_INCREMENTAL_KEY = "sonar.ansible.incremental";
+    public static final String ANSIBLE_LINT_INCREMENTAL_DEFAULT_VALUE = "false";
+    public static final String ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY = "sonar.ansible.incremental.reference";
+    public static final String ANSIBLE_LINT_INCREMENTAL_REFERENCE_DEFAULT_VALUE = "";
+    public static final String ANSIBLE_LINT_ROLE_AWARE_KEY = "sonar.ansible.ansiblelint.role_aware";
+    public static final String ANSIBLE_LINT_ROLE_AWARE_DEFAULT_VALUE = "false";
+    public static final String ANSIBLE_LINT_ENTRY_POINTS_KEY = "sonar.ansible.ansiblelint.entry_points";
+    public static final String ANSIBLE_LINT_ENTRY_POINTS_DEFAULT_VALUE = "false";
+    public static final String ANSIBLE_LINT_OUTPUT_FORMAT_KEY = "sonar.ansible.ansiblelint.output_format";
+    public static final String ANSIBLE_LINT_OUTPUT_FORMAT_DEFAULT_VALUE = "pep8";
+    public static final String ANSIBLE_LINT_TIMEOUT_KEY = "sonar.ansible.ansiblelint.timeout";
+    public static final String ANSIBLE_LINT_TIMEOUT_DEFAULT_VALUE = "0";
+    public static final String ANSIBLE_LINT_MEMORY_LIMIT_KEY = "sonar.ansible.ansiblelint.memory_limit";
+    public static final String ANSIBLE_LINT_MEMORY_LIMIT_DEFAULT_VALUE = "0";
+    public static final String ANSIBLE_LINT_RECORD_KEY = "sonar.ansible.ansiblelint.record";
+    public static final String ANSIBLE_LINT_RECORD_DEFAULT_VALUE = "";
+    public static final String ANSIBLE_LINT_REPLAY_KEY = "sonar.ansible.ansiblelint.replay";
+    public static final String ANSIBLE_LINT_REPLAY_DEFAULT_VALUE = "";
+    public static final String ANSIBLE_LINT_TRACE_KEY = "sonar.ansible.ansiblelint.trace";
+    public static final String ANSIBLE_LINT_TRACE_DEFAULT_VALUE = "";
     public static final String CATEGORY = "Ansible";
 
 
@@ -60,6 +92,129 @@ public class AnsibleSettings {
                         .defaultValue(ANSIBLE_LINT_DISABLE_WARNINGS_DEFAULT_VALUE)
                         .category(CATEGORY)
                         .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_PARALLELISM_KEY)
+                        .name("Number of parallel ansible-lint executions")
+                        .description("Maximum number of ansible-lint processes run at the same time. Set it to 0 to use the number of CPUs available to the scanner (container CPU limits included).")
+                        .type(PropertyType.INTEGER)
+                        .defaultValue(ANSIBLE_LINT_PARALLELISM_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_BATCH_SIZE_KEY)
+                        .name("Number of files per ansible-lint execution")
+                        .description("Maximum number of files passed to a single ansible-lint execution. Batches are automatically split if the command line gets too long for the operating system.")
+                        .type(PropertyType.INTEGER)
+                        .defaultValue(ANSIBLE_LINT_BATCH_SIZE_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_DAEMON_KEY)
+                        .name("Run ansible-lint as a daemon")
+                        .description("Check the box to load ansible-lint once in a resident Python process that lints all files, instead of starting ansible-lint for every batch of files. Requests to the daemon are processed one at a time.")
+                        .type(PropertyType.BOOLEAN)
+                        .defaultValue(ANSIBLE_LINT_DAEMON_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_PYTHON_PATH_KEY)
+                        .name("Path to the Python interpreter of ansible-lint")
+                        .description("Path to the Python interpreter where ansible-lint is installed, used to run the ansible-lint daemon. Leave it empty to use python3 from the system path.")
+                        .defaultValue(ANSIBLE_LINT_PYTHON_PATH_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_CACHE_KEY)
+                        .name("Cache ansible-lint results")
+                        .description("Check the box to keep the issues found by ansible-lint in a cache, so that the files that did not change since a previous analysis are not linted again.")
+                        .type(PropertyType.BOOLEAN)
+                        .defaultValue(ANSIBLE_LINT_CACHE_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_CACHE_PATH_KEY)
+                        .name("Path to the ansible-lint cache")
+                        .description("Path (absolute or relative to project root) to the directory where ansible-lint results are cached. Leave it empty to use the scanner work directory.")
+                        .defaultValue(ANSIBLE_LINT_CACHE_PATH_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_INCREMENTAL_KEY)
+                        .name("Incremental analysis")
+                        .description("Check the box to only lint the files added or changed since the reference analysis. The issues of the other files are taken from the results of the previous analysis, stored in the ansible-lint cache directory.")
+                        .type(PropertyType.BOOLEAN)
+                        .defaultValue(ANSIBLE_LINT_INCREMENTAL_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY)
+                        .name("Incremental analysis reference")
+                        .description("Git reference the changed files are computed against when SonarQube does not provide the status of the files. Leave it empty to use the pull request base branch.")
+                        .defaultValue(ANSIBLE_LINT_INCREMENTAL_REFERENCE_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_ROLE_AWARE_KEY)
+                        .name("Lint roles once")
+                        .description("Check the box to lint each role directory once, as a whole, and to lint the other files without descending into the roles. Avoids linting the same roles again for every playbook that uses them.")
+                        .type(PropertyType.BOOLEAN)
+                        .defaultValue(ANSIBLE_LINT_ROLE_AWARE_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_ENTRY_POINTS_KEY)
+                        .name("Lint entry points only")
+                        .description("Check the box to only pass to ansible-lint the playbooks and the files that are not reached from any playbook. Roles and task files reached from a playbook are linted through it and not on their own.")
+                        .type(PropertyType.BOOLEAN)
+                        .defaultValue(ANSIBLE_LINT_ENTRY_POINTS_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_OUTPUT_FORMAT_KEY)
+                        .name("ansible-lint output format")
+                        .description("Format of the ansible-lint output: pep8 (one issue per line), or json, codeclimate or sarif (structured reports read as a stream, with the column of the issues). The structured formats require ansible-lint 5 or later (6.8 for sarif).")
+                        .type(PropertyType.SINGLE_SELECT_LIST)
+                        .options("pep8", "json", "codeclimate", "sarif")
+                        .defaultValue(ANSIBLE_LINT_OUTPUT_FORMAT_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_TIMEOUT_KEY)
+                        .name("ansible-lint timeout")
+                        .description("Maximum duration in seconds of an ansible-lint execution. Executions that last longer are killed with all their child processes and the files they were linting are reported as partially analyzed. Set it to 0 for no timeout.")
+                        .type(PropertyType.INTEGER)
+                        .defaultValue(ANSIBLE_LINT_TIMEOUT_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_MEMORY_LIMIT_KEY)
+                        .name("ansible-lint memory limit")
+                        .description("Maximum virtual memory in MB of an ansible-lint execution (Linux only). Set it to 0 for no limit.")
+                        .type(PropertyType.INTEGER)
+                        .defaultValue(ANSIBLE_LINT_MEMORY_LIMIT_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_RECORD_KEY)
+                        .name("Record the ansible-lint executions")
+                        .description("Path (absolute or relative to project root) to a file where the command line, outputs, exit code and duration of every ansible-lint execution are recorded, to be replayed later. Leave it empty to record nothing.")
+                        .defaultValue(ANSIBLE_LINT_RECORD_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_REPLAY_KEY)
+                        .name("Replay the ansible-lint executions")
+                        .description("Path (absolute or relative to project root) to a file recorded during a previous analysis: ansible-lint is not executed, the recorded outputs are used instead. Leave it empty to execute ansible-lint.")
+                        .defaultValue(ANSIBLE_LINT_REPLAY_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
+                        .build(),
+                PropertyDefinition.builder(ANSIBLE_LINT_TRACE_KEY)
+                        .name("Trace the analysis")
+                        .description("Path (absolute or relative to project root) to a file where the timeline of the analysis (ansible-lint executions per worker thread, parsing and saving of the issues) is written in Chrome Trace Event format, to be loaded in Perfetto or chrome://tracing. Leave it empty to trace nothing.")
+                        .defaultValue(ANSIBLE_LINT_TRACE_DEFAULT_VALUE)
+                        .category(CATEGORY)
+                        .onQualifiers(Qualifiers.PROJECT)
                         .build()
         );
     }
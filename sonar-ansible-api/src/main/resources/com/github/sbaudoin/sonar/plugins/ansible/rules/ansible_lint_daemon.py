@@ -0,0 +1,73 @@
+"""
+Resident ansible-lint process used by the Ansible sensor: ansible-lint and its dependencies are imported once and
+then the lint requests sent by the sensor are processed one after another.
+
+The protocol is line-based, on the standard input and output:
+  * once ready, the daemon prints "READY"
+  * "PING" is answered with "PONG"
+  * "LINT <n>" followed by n lines (the ansible-lint command line arguments) is answered with
+    "RESULT <exit code> <p> <q>" followed by p lines of standard output and q lines of error output
+  * "QUIT" makes the daemon exit
+"""
+import contextlib
+import io
+import os
+import sys
+import traceback
+
+
+def lint(args):
+    from ansiblelint.__main__ import main
+
+    out = io.StringIO()
+    err = io.StringIO()
+    status = 0
+    # ansible-lint reads its arguments from sys.argv whatever its version
+    sys.argv = ['ansible-lint'] + args
+    with contextlib.redirect_stdout(out), contextlib.redirect_stderr(err):
+        try:
+            status = main()
+        except SystemExit as e:
+            status = e.code if isinstance(e.code, int) else (0 if e.code is None else 1)
+        except Exception:
+            traceback.print_exc()
+            status = 1
+    return status or 0, out.getvalue().splitlines(), err.getvalue().splitlines()
+
+
+def reply(channel, lines):
+    channel.write(''.join(line + '\n' for line in lines))
+    channel.flush()
+
+
+def serve(requests, channel):
+    try:
+        import ansiblelint.__main__
+    except ImportError as e:
+        reply(channel, ['ERROR cannot import ansiblelint: %s' % e])
+        return 1
+    reply(channel, ['READY'])
+
+    while True:
+        request = requests.readline()
+        if not request:
+            return 0
+        request = request.rstrip('\n')
+        if request == 'PING':
+            reply(channel, ['PONG'])
+        elif request == 'QUIT':
+            return 0
+        elif request.startswith('LINT '):
+            args = [requests.readline().rstrip('\n') for _ in range(int(request[5:]))]
+            status, out, err = lint(args)
+            reply(channel, ['RESULT %d %d %d' % (status, len(out), len(err))] + out + err)
+        else:
+            reply(channel, ['ERROR unknown request: %s' % request])
+
+
+if __name__ == '__main__':
+    # Keep the protocol channel away from whatever ansible, ansible-lint or their child processes may print: the
+    # standard output is redirected to the error output
+    channel = os.fdopen(os.dup(sys.stdout.fileno()), 'w')
+    os.dup2(sys.stderr.fileno(), sys.stdout.fileno())
+    sys.exit(serve(sys.stdin, channel))
@@ -64,15 +64,14 @@ public class AnsibleExtraSensorAdvancedTest {
 
 
     @Test
-    public void testExtractExtraRulesCannotCreateTempDir() throws NoSuchMethodException, IOException, InvocationTargetException, IllegalAccessException {
+    public void testExtractExtraRulesCannotCreateCacheDir() throws NoSuchMethodException, IOException, InvocationTargetException, IllegalAccessException {
         // Make the method public for test purpose
-        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class);
+        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class, Path.class);
         method.setAccessible(true);
 
-        // Prevent the temporary directory from being created
-        mockStatic(Files.class);
-        when(Files.createTempDirectory(any(Path.class), any(String.class))).thenThrow(new IOException("forbidden"));
-        assertNull(method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR));
+        // Prevent the cache directory from being created
+        Path cacheDir = temporaryFolder.newFile("cache").toPath();
+        assertNull(method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR, cacheDir));
     }
 
     @Test
@@ -92,11 +91,11 @@ public class AnsibleExtraSensorAdvancedTest {
 
     private void testExtractExtraRulesExtraRulesExtractionError(Exception e) throws Exception {
         // Make the method public for test purpose
-        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class);
+        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class, Path.class);
         method.setAccessible(true);
 
         whenNew(com.github.sbaudoin.sonar.plugins.ansible.util.FileSystem.class).withAnyArguments().thenThrow(e);
-        assertNull(method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR));
+        assertNull(method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR, temporaryFolder.getRoot().toPath()));
     }
 
     @Test
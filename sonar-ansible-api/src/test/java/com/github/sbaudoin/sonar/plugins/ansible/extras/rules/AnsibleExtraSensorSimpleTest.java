@@ -94,6 +94,9 @@ public class AnsibleExtraSensorSimpleTest {
         assertTrue(issueExists(issues, ruleKey1, playbook1, 4, null));
         assertTrue(issueExists(issues, ruleKey2, playbook1, 5, "Another error --nocolor"));
         assertTrue(issueExists(issues, ruleKey2, playbook2, 3, "Another error -q"));
+
+        // The extracted rules are kept for the next analyses
+        assertEquals(1, new File(temporaryFolder.getRoot(), "sonar" + File.separator + EXTRA_RULES_TEMP_DIR).list().length);
     }
 
     @Test
@@ -114,24 +117,61 @@ public class AnsibleExtraSensorSimpleTest {
     @Test
     public void testExtractExtraRulesExtraRulesDirNotFound() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
         // Make the method public for test purpose
-        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class);
+        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class, Path.class);
         method.setAccessible(true);
 
-        assertNull(method.invoke(sensor, "foo"));
+        assertNull(method.invoke(sensor, "foo", temporaryFolder.getRoot().toPath()));
     }
 
     @Test
-    public void testExtractExtraRulesExtraRules() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    public void testExtractExtraRulesExtraRules() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, IOException {
         // Make the method public for test purpose
-        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class);
+        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class, Path.class);
         method.setAccessible(true);
 
-        Path tempDir = (Path)method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR);
+        Path cacheDir = temporaryFolder.newFolder("cache").toPath();
+        Path tempDir = (Path)method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR, cacheDir);
+        assertEquals(cacheDir, tempDir.getParent());
+        assertEquals(64, tempDir.getFileName().toString().length());
+        assertEquals(1, cacheDir.toFile().list().length);
         assertEquals(4, tempDir.toFile().list().length);
         assertTrue(tempDir.resolve("extra-rule1.cmd").toFile().exists());
         assertTrue(tempDir.resolve("extra-rule1.sh").toFile().exists());
         assertTrue(tempDir.resolve("extra-rule2.cmd").toFile().exists());
         assertTrue(tempDir.resolve("extra-rule2.sh").toFile().exists());
+
+        // The rules already extracted are reused, with the files created meanwhile (Python bytecode for instance)
+        Path rule = tempDir.resolve("extra-rule1.sh");
+        assertTrue(rule.toFile().setLastModified(1000));
+        Files.createDirectory(tempDir.resolve("__pycache__"));
+        assertEquals(tempDir, method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR, cacheDir));
+        assertEquals(1000, rule.toFile().lastModified());
+        assertTrue(tempDir.resolve("__pycache__").toFile().isDirectory());
+
+        // An incomplete rule set is extracted again
+        Files.delete(rule);
+        assertEquals(tempDir, method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR, cacheDir));
+        assertTrue(rule.toFile().exists());
+        assertEquals(1, cacheDir.toFile().list().length);
+    }
+
+    @Test
+    public void testExtractExtraRulesPurge() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, IOException {
+        // Make the method public for test purpose
+        Method method = AnsibleExtraSensor.class.getDeclaredMethod("extractExtraRules", String.class, Path.class);
+        method.setAccessible(true);
+
+        // Rule sets of other versions of the extras plugins
+        Path cacheDir = temporaryFolder.newFolder("cache").toPath();
+        Path oldRules = Files.createDirectory(cacheDir.resolve("old"));
+        Files.createFile(oldRules.resolve("rule.py"));
+        assertTrue(oldRules.toFile().setLastModified(System.currentTimeMillis() - 31L * 24 * 3600 * 1000));
+        Path recentRules = Files.createDirectory(cacheDir.resolve("recent"));
+
+        Path tempDir = (Path)method.invoke(sensor, AnsibleExtraSensor.EXTRA_RULES_DIR, cacheDir);
+        assertTrue(tempDir.toFile().isDirectory());
+        assertFalse(oldRules.toFile().exists());
+        assertTrue(recentRules.toFile().exists());
     }
 
     @Before
@@ -141,6 +181,7 @@ public class AnsibleExtraSensorSimpleTest {
         DefaultFileSystem fs = Utils.getFileSystem();
         fs.setWorkDir(temporaryFolder.newFolder("temp").toPath());
         context.setFileSystem(fs);
+        context.settings().appendProperty("sonar.userHome", temporaryFolder.newFolder("sonar").getAbsolutePath());
 
         ActiveRules activeRules = new ActiveRulesBuilder()
                 .create(ruleKey1)
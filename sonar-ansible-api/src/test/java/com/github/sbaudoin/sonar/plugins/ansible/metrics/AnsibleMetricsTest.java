@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.metrics;
+
+import junit.framework.TestCase;
+import org.sonar.api.measures.Metric;
+
+import java.util.List;
+
+public class AnsibleMetricsTest extends TestCase {
+    public void testGetMetrics() {
+        List<Metric> metrics = new AnsibleMetrics().getMetrics();
+
+        assertEquals(7, metrics.size());
+        assertEquals(AnsibleMetrics.FILES_LINTED, metrics.get(0));
+        assertEquals(AnsibleMetrics.SLOWEST_FILES, metrics.get(6));
+        for (Metric metric : metrics) {
+            assertTrue(metric.key().startsWith("ansible_"));
+            assertEquals(AnsibleMetrics.DOMAIN, metric.getDomain());
+        }
+        assertEquals(Metric.ValueType.MILLISEC, AnsibleMetrics.LINT_TIME.getType());
+    }
+}
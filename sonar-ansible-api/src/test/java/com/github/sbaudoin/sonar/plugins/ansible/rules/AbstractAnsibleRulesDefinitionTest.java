@@ -70,6 +70,44 @@ public class AbstractAnsibleRulesDefinitionTest {
         }
     }
 
+    @Test
+    public void testDefineWithIndex() {
+        logTester.setLevel(LoggerLevel.DEBUG);
+        AbstractAnsibleRulesDefinition definition = new MyRulesDefinition("indexed-rules");
+        RulesDefinition.Context indexedContext = new RulesDefinition.Context();
+        definition.define(indexedContext);
+        assertTrue(logTester.logs(LoggerLevel.DEBUG).contains("Adding 1 rule(s) from rule index indexed-rules/rules.index"));
+
+        // The rules defined from the index are the same as the rules defined from the JSON files
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        definition.define(context, false);
+        RulesDefinition.Rule expected = context.repository(AnsibleCheckRepository.REPOSITORY_KEY).rule("rule1");
+        RulesDefinition.Repository repository = indexedContext.repository(AnsibleCheckRepository.REPOSITORY_KEY);
+        assertEquals(1, repository.rules().size());
+        RulesDefinition.Rule rule = repository.rule("rule1");
+        assertEquals(expected.name(), rule.name());
+        assertEquals(expected.htmlDescription(), rule.htmlDescription());
+        assertEquals(expected.type(), rule.type());
+        assertEquals(expected.status(), rule.status());
+        assertEquals(expected.severity(), rule.severity());
+        assertEquals(expected.tags(), rule.tags());
+        assertEquals(expected.debtRemediationFunction(), rule.debtRemediationFunction());
+        assertEquals(expected.gapDescription(), rule.gapDescription());
+    }
+
+    @Test
+    public void testDefineWithOutdatedIndex() {
+        // The index lists a rule that has no description: the JSON files are read
+        AbstractAnsibleRulesDefinition definition = new MyRulesDefinition("broken-index");
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        definition.define(context);
+        assertTrue(logTester.logs(LoggerLevel.WARN).contains("Rule rule9 indexed but not described (.html file missing), reading rule definition files"));
+
+        RulesDefinition.Repository repository = context.repository(AnsibleCheckRepository.REPOSITORY_KEY);
+        assertEquals(1, repository.rules().size());
+        assertEquals("Any rule", repository.rule("rule1").name());
+    }
+
     @Test
     public void testDefineWithNonExistingRules() {
         // Existing rules
@@ -17,14 +17,17 @@ package com.github.sbaudoin.sonar.plugins.ansible.rules;
 
 import com.github.sbaudoin.sonar.plugins.ansible.Utils;
 import com.github.sbaudoin.sonar.plugins.ansible.checks.AnsibleCheckRepository;
+import com.github.sbaudoin.sonar.plugins.ansible.metrics.AnsibleMetrics;
 import com.github.sbaudoin.sonar.plugins.ansible.settings.AnsibleSettings;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -40,16 +43,28 @@ import org.sonar.api.utils.log.LoggerLevel;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import static com.github.sbaudoin.sonar.plugins.ansible.Utils.issueExists;
 import static com.github.sbaudoin.sonar.plugins.ansible.Utils.setShellRights;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.*;
 
 public class AbstractAnsibleSensorTest {
@@ -65,6 +80,7 @@ public class AbstractAnsibleSensorTest {
     private final RuleKey ruleKey3 = RuleKey.of(AnsibleCheckRepository.REPOSITORY_KEY, RULE_ID3);
     private MySensor sensor;
     private SensorContextTester context;
+    private ActiveRules activeRules;
 
     @Test
     public void testExecuteWithAnsibleLintVersions() throws IOException {
@@ -82,9 +98,73 @@ public class AbstractAnsibleSensorTest {
         assertEquals(1, logTester.logs(LoggerLevel.WARN).size());
         assertEquals("Cannot get ansible version", logTester.logs(LoggerLevel.WARN).get(0));
         List<String> l = logTester.logs(LoggerLevel.INFO);
-        assertEquals(2, logTester.logs(LoggerLevel.INFO).size());
+        assertEquals(3, logTester.logs(LoggerLevel.INFO).size());
         assertEquals("ansible-lint version:", logTester.logs(LoggerLevel.INFO).get(0));
         assertEquals("ansible-lint 1.2.3", logTester.logs(LoggerLevel.INFO).get(1));
+        assertTrue(logTester.logs(LoggerLevel.INFO).get(2).startsWith("ansible-lint performance: "));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintCapabilities() throws IOException, InterruptedException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        context.fileSystem().add(playbook1);
+        setAnsibleLintPath("ansible-lint7");
+
+        // ansible-lint 6: -p is replaced with -f pep8 and the requirements are not installed
+        sensor.executeWithAnsibleLint(context, null);
+        assertTrue(logTester.logs(LoggerLevel.INFO).contains("ansible-lint 6.14.3 using ansible 2.14.4"));
+        assertTrue(issueExists(context.allIssues(), ruleKey1, playbook1, 2, "-f pep8 --nocolor -q --offline .*playbook1\\.yml"));
+
+        // The versions are probed once for all the sensors
+        logTester.clear();
+        MySensor theSensor = spy(new MySensor(context.fileSystem()));
+        theSensor.executeWithAnsibleLint(context, null);
+        verify(theSensor, times(1)).streamCommand(any(), any(), any());
+        assertTrue(logTester.logs(LoggerLevel.INFO).contains("ansible-lint 6.14.3 using ansible 2.14.4"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintStructuredOutput() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        context.fileSystem().add(playbook1);
+        setAnsibleLintPath("ansible-lint8");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_OUTPUT_FORMAT_KEY, "codeclimate");
+
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(1, context.allIssues().size());
+        assertTrue(issueExists(context.allIssues(), ruleKey1, playbook1, 4, "Module \"module1\" is deprecated"));
+        // The issue starts at the reported column
+        assertEquals(6, context.allIssues().iterator().next().primaryLocation().textRange().start().lineOffset());
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintUnsupportedOutputFormat() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        context.fileSystem().add(playbook1);
+        setAnsibleLintPath("ansible-lint-version");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_OUTPUT_FORMAT_KEY, "sarif");
+
+        sensor.executeWithAnsibleLint(context, null);
+        assertTrue(logTester.logs(LoggerLevel.WARN).contains("ansible-lint 1.2.3 does not support the sarif output format, using pep8"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintTimeout() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml");
+        context.fileSystem().add(playbook1).add(playbook2);
+        setAnsibleLintPath("ansible-lint9");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_BATCH_SIZE_KEY, "1");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_TIMEOUT_KEY, "1");
+
+        long start = System.currentTimeMillis();
+        sensor.executeWithAnsibleLint(context, null);
+        // The execution linting playbook2 is killed with its child process
+        assertTrue(System.currentTimeMillis() - start < 20000);
+        assertEquals(1, context.allIssues().size());
+        assertTrue(issueExists(context.allIssues(), ruleKey1, playbook1, 2, ".*playbook1\\.yml"));
+        assertTrue(logTester.logs(LoggerLevel.WARN).stream().anyMatch(log ->
+                log.startsWith("ansible-lint was stopped (timeout of 1 s exceeded) while linting") && log.contains("playbook2.yml") && !log.contains("playbook1.yml")));
     }
 
     @Test
@@ -134,18 +214,23 @@ public class AbstractAnsibleSensorTest {
         assertTrue(sensor.scannedFiles.contains(playbook3));
         assertEquals(0, context.allIssues().size());
 
-        // First test: warnings enabled
-        assertEquals(4, logTester.logs(LoggerLevel.WARN).size());
-        logTester.logs(LoggerLevel.WARN).subList(1, 4).forEach(log -> assertTrue(log.startsWith("Messages printed to error output during analysis:") && log.contains("WARNING ")));
+        // First test: warnings enabled, the messages printed for every file are logged once
+        String files = String.join(", ", Paths.get("playbooks", "playbook1.yml").toString(),
+                Paths.get("playbooks", "playbook2.yml").toString(), Paths.get("playbooks", "playbook3.yml").toString());
+        assertEquals(2, logTester.logs(LoggerLevel.WARN).size());
+        String summary = logTester.logs(LoggerLevel.WARN).get(1);
+        assertTrue(summary.startsWith("Messages printed to error output during analysis:"));
+        assertTrue(summary.contains("WARNING this is a test [3 time(s), file(s): " + files + "]"));
 
         // Second test: warnings disabled
         logTester.clear();
         context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_DISABLE_WARNINGS_KEY, "true");
         sensor.executeWithAnsibleLint(context, null);
-        assertEquals(2, logTester.logs(LoggerLevel.INFO).size());
+        assertEquals(3, logTester.logs(LoggerLevel.INFO).size());
         assertTrue(logTester.logs(LoggerLevel.INFO).get(1).startsWith("You asked not to see the ansible-lint warnings"));
-        assertEquals(4, logTester.logs(LoggerLevel.WARN).size());
-        logTester.logs(LoggerLevel.WARN).subList(1, 4).forEach(log -> assertTrue(log.startsWith("Messages printed to error output during analysis:") && !log.contains("WARNING ")));
+        assertEquals(2, logTester.logs(LoggerLevel.WARN).size());
+        summary = logTester.logs(LoggerLevel.WARN).get(1);
+        assertTrue(summary.startsWith("Messages printed to error output during analysis:") && !summary.contains("WARNING "));
     }
 
     @Test
@@ -187,7 +272,7 @@ public class AbstractAnsibleSensorTest {
         context.fileSystem().add(playbook1).add(playbook2).add(playbook3);
 
         MySensor theSensor = spy(sensor);
-        doThrow(new IOException("Boom!")).when(theSensor).executeCommand(any(), any(), any());
+        doThrow(new IOException("Boom!")).when(theSensor).streamCommand(any(), any(), any());
 
         theSensor.executeWithAnsibleLint(context, Arrays.asList("foo", "bar"));
         assertEquals(1, theSensor.scannedFiles.size());
@@ -204,7 +289,7 @@ public class AbstractAnsibleSensorTest {
         context.fileSystem().add(playbook1).add(playbook2).add(playbook3);
 
         MySensor theSensor = spy(sensor);
-        doThrow(new InterruptedException("Boom!")).when(theSensor).executeCommand(any(), any(), any());
+        doThrow(new InterruptedException("Boom!")).when(theSensor).streamCommand(any(), any(), any());
 
         theSensor.executeWithAnsibleLint(context, Arrays.asList("foo", "bar"));
         assertEquals(1, theSensor.scannedFiles.size());
@@ -255,6 +340,401 @@ public class AbstractAnsibleSensorTest {
         assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "-p --nocolor -q -c /path/to/ansible-lint\\.conf " + Pattern.quote(new File(playbook1.uri()).getAbsolutePath())));
     }
 
+    @Test
+    public void testExecuteWithAnsibleLintParallel() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml");
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml");
+        context.fileSystem().add(playbook1).add(playbook2).add(playbook3);
+        setAnsibleLintPath("ansible-lint5");
+
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_PARALLELISM_KEY, "3");
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(3, sensor.scannedFiles.size());
+
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(3, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook2, 2, "An error on playbook2\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook3, 2, "An error on playbook3\\.yml"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintBatch() throws IOException, InterruptedException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml");
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml");
+        context.fileSystem().add(playbook1).add(playbook2).add(playbook3);
+        setAnsibleLintPath("ansible-lint5");
+
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_BATCH_SIZE_KEY, "2");
+        MySensor theSensor = spy(sensor);
+        theSensor.executeWithAnsibleLint(context, null);
+        assertEquals(3, theSensor.scannedFiles.size());
+        // 2 executions for the versions, 2 batches
+        verify(theSensor, times(4)).streamCommand(any(), any(), any());
+
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(3, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook2, 2, "An error on playbook2\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook3, 2, "An error on playbook3\\.yml"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintBisection() throws IOException, InterruptedException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml");
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml");
+        context.fileSystem().add(playbook1).add(playbook2).add(playbook3);
+        setAnsibleLintPath("ansible-lint10");
+
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_BATCH_SIZE_KEY, "3");
+        MySensor theSensor = spy(sensor);
+        theSensor.executeWithAnsibleLint(context, null);
+        assertEquals(3, theSensor.scannedFiles.size());
+        // 2 executions for the versions, the whole batch, then [playbook1] and [playbook2, playbook3], then [playbook2] and [playbook3]
+        verify(theSensor, times(7)).streamCommand(any(), any(), any());
+
+        // Only the file that makes ansible-lint crash loses its issues
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(2, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook3, 2, "An error on playbook3\\.yml"));
+        assertTrue(logTester.logs(LoggerLevel.WARN).stream().anyMatch(log ->
+                log.startsWith("ansible-lint crashed while linting") && log.contains("playbook2.yml") && !log.contains("playbook1.yml") && !log.contains("playbook3.yml")));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintRecordAndReplay() throws IOException, InterruptedException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml");
+        context.fileSystem().add(playbook1).add(playbook3);
+        setAnsibleLintPath("ansible-lint10");
+        File recordingFile = new File(temporaryFolder.getRoot(), "ansible-lint.rec");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_RECORD_KEY, recordingFile.getAbsolutePath());
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(2, context.allIssues().size());
+        assertTrue(recordingFile.length() > 0);
+
+        // Replay with an ansible-lint executable that does not exist
+        AbstractAnsibleSensor.clearVersionProbes();
+        SensorContextTester replayContext = Utils.getSensorContext();
+        DefaultFileSystem fs = Utils.getFileSystem();
+        fs.setWorkDir(temporaryFolder.newFolder("replay").toPath());
+        fs.add(playbook1).add(playbook3);
+        replayContext.setFileSystem(fs);
+        replayContext.setActiveRules(activeRules);
+        String ansibleLintName = new File(context.settings().getString(AnsibleSettings.ANSIBLE_LINT_PATH_KEY)).getName();
+        replayContext.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_PATH_KEY, new File(temporaryFolder.getRoot(), ansibleLintName).getAbsolutePath());
+        replayContext.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_REPLAY_KEY, recordingFile.getAbsolutePath());
+        logTester.clear();
+        MySensor replaySensor = new MySensor(fs);
+        replaySensor.executeWithAnsibleLint(replayContext, null);
+        assertEquals(2, replaySensor.scannedFiles.size());
+        Collection<Issue> issues = replayContext.allIssues();
+        assertEquals(2, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook3, 2, "An error on playbook3\\.yml"));
+        assertTrue(logTester.logs(LoggerLevel.ERROR).isEmpty());
+
+        // Invalid recording
+        logTester.clear();
+        Files.write(recordingFile.toPath(), "invalid".getBytes(StandardCharsets.UTF_8));
+        new MySensor(fs).executeWithAnsibleLint(replayContext, null);
+        assertTrue(logTester.logs(LoggerLevel.ERROR).get(0).startsWith("Cannot read the ansible-lint recording"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintTrace() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml");
+        context.fileSystem().add(playbook1).add(playbook3);
+        setAnsibleLintPath("ansible-lint10");
+        File traceFile = new File(temporaryFolder.getRoot(), "trace.json");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_TRACE_KEY, traceFile.getAbsolutePath());
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(2, context.allIssues().size());
+
+        assertTrue(logTester.logs(LoggerLevel.INFO).contains("Analysis timeline written to " + traceFile.getAbsolutePath()));
+        String trace = new String(Files.readAllBytes(traceFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(trace.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(trace.contains("\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"MySensor\"}"));
+        for (String phase : Arrays.asList("analysis", "version probe", "ansible-lint", "command", "process result", "save issues")) {
+            assertTrue("No " + phase + " phase", trace.contains("{\"name\":\"" + phase + "\",\"cat\":\"ansible\",\"ph\":\"X\""));
+        }
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintMeasures() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml");
+        context.fileSystem().add(playbook1).add(playbook3);
+        setAnsibleLintPath("ansible-lint10");
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(2, context.allIssues().size());
+
+        String module = context.module().key();
+        assertEquals(Integer.valueOf(2), context.measure(module, AnsibleMetrics.FILES_LINTED).value());
+        assertEquals(Integer.valueOf(2), context.measure(module, AnsibleMetrics.LINT_EXECUTIONS).value());
+        assertEquals(Integer.valueOf(0), context.measure(module, AnsibleMetrics.CACHE_HITS).value());
+        long lintTime = context.measure(module, AnsibleMetrics.LINT_TIME).value();
+        assertTrue(lintTime >= context.measure(module, AnsibleMetrics.LINT_MEAN_TIME).value());
+        assertTrue(lintTime <= context.measure(module, AnsibleMetrics.ANALYSIS_TIME).value());
+        String slowestFiles = context.measure(module, AnsibleMetrics.SLOWEST_FILES).value();
+        for (String playbook : Arrays.asList("playbook1.yml", "playbook3.yml")) {
+            String path = Paths.get("playbooks", playbook).toString().replace("\\", "\\\\");
+            assertTrue(slowestFiles.contains("{\"file\":\"" + path + "\",\"time\":"));
+        }
+
+        File summaryFile = new File(context.fileSystem().workDir(), AbstractAnsibleSensor.SUMMARY_FILE_PREFIX + "MySensor.json");
+        String summary = new String(Files.readAllBytes(summaryFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(summary.startsWith("{\"ansible_files_linted\":2,\"ansible_lint_executions\":2,"));
+        assertTrue(summary.contains(",\"ansible_slowest_files\":" + slowestFiles + "}"));
+        String log = "ansible-lint performance: 2 file(s) linted in 2 execution(s), " + lintTime + " ms (";
+        assertTrue(logTester.logs(LoggerLevel.INFO).stream().anyMatch(line -> line.startsWith(log)));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintDaemon() throws IOException {
+        assumeFalse(System.getProperty("os.name").toLowerCase().contains("windows"));
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml");
+        context.fileSystem().add(playbook1).add(playbook2);
+        String python = new File(getClass().getResource("/scripts/python.sh").getFile()).getAbsolutePath();
+        setShellRights(python);
+
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_DAEMON_KEY, "true");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_PYTHON_PATH_KEY, python);
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(2, sensor.scannedFiles.size());
+
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(2, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook2, 2, "An error on playbook2\\.yml"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintDaemonNotStarted() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        context.fileSystem().add(playbook1);
+        setAnsibleLintPath("ansible-lint5");
+
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_DAEMON_KEY, "true");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_PYTHON_PATH_KEY, "invalid-python");
+        sensor.executeWithAnsibleLint(context, null);
+        assertTrue(logTester.logs(LoggerLevel.WARN).stream().anyMatch(log -> log.startsWith("Cannot start the ansible-lint daemon")));
+
+        // Falls back to ansible-lint processes
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(1, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintCache() throws IOException, InterruptedException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml");
+        context.fileSystem().add(playbook1).add(playbook2);
+        setAnsibleLintPath("ansible-lint5");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_CACHE_KEY, "true");
+
+        // First analysis: the cache is empty
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(2, context.allIssues().size());
+        assertTrue(logTester.logs(LoggerLevel.INFO).contains("ansible-lint cache: 0 hit(s), 2 miss(es)"));
+        assertTrue(new File(context.fileSystem().workDir(), "ansible-lint-cache").isDirectory());
+
+        // Second analysis: all files are in the cache and the versions probed during the first analysis are reused, so
+        // ansible-lint is not executed at all
+        logTester.clear();
+        DefaultFileSystem fs = context.fileSystem();
+        context = Utils.getSensorContext();
+        context.setFileSystem(fs);
+        context.setActiveRules(activeRules);
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_CACHE_KEY, "true");
+        setAnsibleLintPath("ansible-lint5");
+        MySensor theSensor = spy(new MySensor(fs));
+        theSensor.executeWithAnsibleLint(context, null);
+        verify(theSensor, never()).streamCommand(any(), any(), any());
+        assertTrue(logTester.logs(LoggerLevel.INFO).contains("ansible-lint version:"));
+        assertTrue(logTester.logs(LoggerLevel.INFO).contains("ansible-lint cache: 2 hit(s), 0 miss(es)"));
+        assertEquals(2, theSensor.scannedFiles.size());
+
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(2, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook2, 2, "An error on playbook2\\.yml"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintIncremental() throws IOException, InterruptedException {
+        context.fileSystem().add(Utils.getInputFile("playbooks/playbook1.yml", InputFile.Status.ADDED))
+                .add(Utils.getInputFile("playbooks/playbook2.yml", InputFile.Status.ADDED));
+        setAnsibleLintPath("ansible-lint5");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_KEY, "true");
+
+        // First analysis: no previous results, all files are linted
+        sensor.executeWithAnsibleLint(context, null);
+        assertEquals(2, context.allIssues().size());
+        assertFalse(logTester.logs(LoggerLevel.INFO).stream().anyMatch(log -> log.startsWith("Incremental analysis")));
+
+        // Second analysis: only the changed file is linted
+        logTester.clear();
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml", InputFile.Status.SAME);
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml", InputFile.Status.CHANGED);
+        DefaultFileSystem fs = Utils.getFileSystem();
+        fs.setWorkDir(context.fileSystem().workDir().toPath());
+        fs.add(playbook1).add(playbook2);
+        context = Utils.getSensorContext();
+        context.setFileSystem(fs);
+        context.setActiveRules(activeRules);
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_KEY, "true");
+        setAnsibleLintPath("ansible-lint5");
+        MySensor theSensor = spy(new MySensor(fs));
+        theSensor.executeWithAnsibleLint(context, null);
+        verify(theSensor, times(1)).streamCommand(any(), any(), any());
+        assertTrue(logTester.logs(LoggerLevel.INFO).contains("Incremental analysis: 1 of 2 file(s) to be analyzed"));
+        assertEquals(2, theSensor.scannedFiles.size());
+
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(2, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, playbook2, 2, "An error on playbook2\\.yml"));
+    }
+
+    @Test
+    public void testGetChangedFiles() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml", InputFile.Status.SAME);
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml", InputFile.Status.CHANGED);
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml", InputFile.Status.ADDED);
+        assertEquals(new HashSet<>(Arrays.asList(playbook2, playbook3)), sensor.getChangedFiles(context, Arrays.asList(playbook1, playbook2, playbook3)));
+
+        // Status unknown and no reference
+        assertNull(sensor.getChangedFiles(context, Arrays.asList(Utils.getInputFile("playbooks/playbook1.yml"))));
+    }
+
+    @Test
+    public void testGetChangedFilesFromGit() throws IOException, InterruptedException {
+        File baseDir = temporaryFolder.newFolder();
+        Files.write(baseDir.toPath().resolve("a.yml"), "---\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(baseDir.toPath().resolve("b.yml"), "---\n".getBytes(StandardCharsets.UTF_8));
+        assumeTrue(git(baseDir, "init", "-q") == 0);
+        assertEquals(0, git(baseDir, "add", "."));
+        assertEquals(0, git(baseDir, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "Initial commit"));
+        Files.write(baseDir.toPath().resolve("b.yml"), "---\nfoo: bar\n".getBytes(StandardCharsets.UTF_8));
+
+        DefaultFileSystem fs = new DefaultFileSystem(baseDir);
+        InputFile a = TestInputFileBuilder.create(Utils.MODULE_KEY, "a.yml").setModuleBaseDir(baseDir.toPath()).build();
+        InputFile b = TestInputFileBuilder.create(Utils.MODULE_KEY, "b.yml").setModuleBaseDir(baseDir.toPath()).build();
+        MySensor theSensor = new MySensor(fs);
+        List<InputFile> inputFiles = Arrays.asList(a, b);
+
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY, "HEAD");
+        assertEquals(Collections.singleton(b), theSensor.getChangedFiles(context, inputFiles));
+
+        // Unknown reference
+        context.settings().setProperty(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY, "unknown");
+        assertNull(theSensor.getChangedFiles(context, inputFiles));
+        assertTrue(logTester.logs(LoggerLevel.WARN).stream().anyMatch(log -> log.startsWith("Cannot list the files changed since unknown")));
+
+        // Reference taken from the pull request base branch
+        context.settings().removeProperty(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY);
+        context.settings().setProperty("sonar.pullrequest.base", "HEAD");
+        assertEquals(Collections.singleton(b), theSensor.getChangedFiles(context, inputFiles));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintRoleAware() throws IOException, InterruptedException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile tasks = Utils.getInputFile("roles/common/tasks/main.yml");
+        InputFile handlers = Utils.getInputFile("roles/common/handlers/main.yml");
+        context.fileSystem().add(playbook1).add(tasks).add(handlers);
+        setAnsibleLintPath("ansible-lint6");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_ROLE_AWARE_KEY, "true");
+
+        MySensor theSensor = spy(sensor);
+        theSensor.executeWithAnsibleLint(context, null);
+
+        // The playbook and the role are linted separately, the role being excluded from the playbook execution
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> commands = ArgumentCaptor.forClass((Class<List<String>>)(Class<?>)List.class);
+        verify(theSensor, times(4)).streamCommand(commands.capture(), any(), any());
+        String roleDir = new File(tasks.uri()).getParentFile().getParent();
+        // Batches are linted concurrently: the order of the executions is not known
+        List<String> playbookCommand = commands.getAllValues().get(2).contains("--exclude") ? commands.getAllValues().get(2) : commands.getAllValues().get(3);
+        List<String> roleCommand = commands.getAllValues().get(2).contains("--exclude") ? commands.getAllValues().get(3) : commands.getAllValues().get(2);
+        assertEquals(new File(playbook1.uri()).getAbsolutePath(), playbookCommand.get(playbookCommand.size() - 1));
+        assertEquals(roleDir, playbookCommand.get(playbookCommand.indexOf("--exclude") + 1));
+        assertEquals(roleDir, roleCommand.get(roleCommand.size() - 1));
+        assertFalse(roleCommand.contains("--exclude"));
+        assertEquals(3, theSensor.scannedFiles.size());
+
+        Collection<Issue> issues = context.allIssues();
+        assertEquals(3, issues.size());
+        assertTrue(issueExists(issues, ruleKey1, playbook1, 2, "An error on playbook1\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, tasks, 2, "An error on main\\.yml"));
+        assertTrue(issueExists(issues, ruleKey1, handlers, 2, "An error on main\\.yml"));
+    }
+
+    @Test
+    public void testExecuteWithAnsibleLintEntryPoints() throws IOException, InterruptedException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile site = Utils.getInputFile("playbooks/site.yml");
+        InputFile tasks = Utils.getInputFile("roles/common/tasks/main.yml");
+        InputFile handlers = Utils.getInputFile("roles/common/handlers/main.yml");
+        context.fileSystem().add(playbook1).add(site).add(tasks).add(handlers);
+        setAnsibleLintPath("ansible-lint6");
+        context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_ENTRY_POINTS_KEY, "true");
+
+        MySensor theSensor = spy(sensor);
+        theSensor.executeWithAnsibleLint(context, null);
+
+        // The role is linted through the playbook that uses it
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> commands = ArgumentCaptor.forClass((Class<List<String>>)(Class<?>)List.class);
+        verify(theSensor, times(4)).streamCommand(commands.capture(), any(), any());
+        Set<String> linted = new HashSet<>();
+        commands.getAllValues().subList(2, 4).forEach(command -> linted.add(command.get(command.size() - 1)));
+        assertEquals(new HashSet<>(Arrays.asList(new File(playbook1.uri()).getAbsolutePath(), new File(site.uri()).getAbsolutePath())), linted);
+        assertEquals(4, theSensor.scannedFiles.size());
+        assertEquals(2, context.allIssues().size());
+    }
+
+    @Test
+    public void testGetBatches() throws IOException {
+        InputFile playbook1 = Utils.getInputFile("playbooks/playbook1.yml");
+        InputFile playbook2 = Utils.getInputFile("playbooks/playbook2.yml");
+        InputFile playbook3 = Utils.getInputFile("playbooks/playbook3.yml");
+        List<AbstractAnsibleSensor.LintTarget> files = Arrays.asList(new AbstractAnsibleSensor.LintTarget(playbook1),
+                new AbstractAnsibleSensor.LintTarget(playbook2), new AbstractAnsibleSensor.LintTarget(playbook3));
+        int pathLength = new File(playbook1.uri()).getAbsolutePath().length() + 1;
+
+        assertEquals(3, AbstractAnsibleSensor.getBatches(files, 10, 1, Integer.MAX_VALUE).size());
+        List<List<AbstractAnsibleSensor.LintTarget>> batches = AbstractAnsibleSensor.getBatches(files, 10, 2, Integer.MAX_VALUE);
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList(playbook1, playbook2), getFiles(batches.get(0)));
+        assertEquals(Collections.singletonList(playbook3), getFiles(batches.get(1)));
+
+        // Command line length limit
+        batches = AbstractAnsibleSensor.getBatches(files, 10, 100, 10 + 2 * pathLength);
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList(playbook1, playbook2), getFiles(batches.get(0)));
+        // Too long path
+        assertEquals(3, AbstractAnsibleSensor.getBatches(files, 10, 100, 1).size());
+        assertTrue(AbstractAnsibleSensor.getBatches(Collections.emptyList(), 10, 100, 1).isEmpty());
+    }
+
+    @Test
+    public void testGetParallelism() {
+        assertEquals(Runtime.getRuntime().availableProcessors(), sensor.getParallelism(context));
+        context.settings().setProperty(AnsibleSettings.ANSIBLE_LINT_PARALLELISM_KEY, "-1");
+        assertEquals(Runtime.getRuntime().availableProcessors(), sensor.getParallelism(context));
+        context.settings().setProperty(AnsibleSettings.ANSIBLE_LINT_PARALLELISM_KEY, "3");
+        assertEquals(3, sensor.getParallelism(context));
+    }
+
     @Test
     public void testGetAnsibleLintPath() {
         assertEquals("ansible-lint", sensor.getAnsibleLintPath(context));
@@ -269,6 +749,64 @@ public class AbstractAnsibleSensorTest {
         assertEquals("/path/to/ansible-lint.conf", sensor.getAnsibleLintConfPath(context));
     }
 
+    @Test
+    public void testStreamCommand() throws IOException, InterruptedException {
+        assumeFalse(System.getProperty("os.name").toLowerCase().contains("windows"));
+        String path = new File(getClass().getResource("/scripts/stream.sh").getFile()).getAbsolutePath();
+        setShellRights(path);
+        File marker = new File(temporaryFolder.getRoot(), "marker");
+
+        // The script waits for the first line to be consumed before printing the second one
+        List<String> stdOut = new ArrayList<>();
+        assertEquals(0, sensor.streamCommand(Arrays.asList(path, marker.getAbsolutePath()), line -> {
+            stdOut.add(line);
+            try {
+                marker.createNewFile();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, line -> {}));
+        assertEquals(Arrays.asList("first", "second"), stdOut);
+    }
+
+    @Test
+    public void testStreamCommandKillsChildProcesses() throws IOException, InterruptedException {
+        // The descendants of a process are only known from Java 9 and checked through /proc
+        assumeFalse(System.getProperty("java.specification.version").startsWith("1."));
+        assumeTrue(new File("/proc/self/stat").exists());
+
+        // The command prints the PID of a child process and waits for it; the analysis fails while reading the output
+        List<String> stdOut = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        try {
+            sensor.streamCommand(Arrays.asList("sh", "-c", "sleep 30 & echo $!; wait"), line -> {
+                stdOut.add(line);
+                throw new IllegalStateException("Boom!");
+            }, line -> {});
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("Boom!", e.getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < 20000);
+
+        // The child process has been killed (it may remain a zombie until its parent is reaped)
+        File stat = new File("/proc/" + stdOut.get(0) + "/stat");
+        for (int i = 0; i < 50 && stat.exists() && !isZombie(stat); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(!stat.exists() || isZombie(stat));
+    }
+
+    private static boolean isZombie(File stat) {
+        try {
+            String content = new String(Files.readAllBytes(stat.toPath()), StandardCharsets.UTF_8);
+            return content.substring(content.lastIndexOf(')') + 1).trim().startsWith("Z");
+        } catch (IOException e) {
+            // The process does not exist any more
+            return true;
+        }
+    }
+
     @Test
     public void testExecuteCommand() {
         ArrayList<String> stdOut = new ArrayList();
@@ -434,15 +972,30 @@ public class AbstractAnsibleSensorTest {
     }
 
 
+    private void setAnsibleLintPath(String script) throws IOException {
+        if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+            context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_PATH_KEY,
+                    new File(getClass().getResource("/scripts/" + script + ".cmd").getFile()).getAbsolutePath());
+        } else {
+            String path = new File(getClass().getResource("/scripts/" + script + ".sh").getFile()).getAbsolutePath();
+            context.settings().appendProperty(AnsibleSettings.ANSIBLE_LINT_PATH_KEY, path);
+            setShellRights(path);
+        }
+    }
+
+
     @Before
     public void init() throws Exception {
+        AbstractAnsibleSensor.clearVersionProbes();
+        AnsibleLintRecording.clear();
+        AnsibleLintTrace.clear();
         context = Utils.getSensorContext();
 
         DefaultFileSystem fs = Utils.getFileSystem();
         fs.setWorkDir(temporaryFolder.newFolder("temp").toPath());
         context.setFileSystem(fs);
 
-        ActiveRules activeRules = new ActiveRulesBuilder()
+        activeRules = new ActiveRulesBuilder()
                 .create(ruleKey1)
                 .activate()
                 .create(ruleKey2)
@@ -459,6 +1012,25 @@ public class AbstractAnsibleSensorTest {
     }
 
 
+    private static List<InputFile> getFiles(List<AbstractAnsibleSensor.LintTarget> batch) {
+        List<InputFile> files = new ArrayList<>();
+        batch.forEach(target -> files.addAll(target.getFiles()));
+        return files;
+    }
+
+    private static int git(File dir, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        try {
+            return new ProcessBuilder(command).directory(dir).inheritIO().start().waitFor();
+        } catch (IOException e) {
+            // git not installed
+            return -1;
+        }
+    }
+
+
     private static class MySensor extends AbstractAnsibleSensor {
         protected MySensor(FileSystem fileSystem) {
             super(fileSystem);
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class AnsibleDependencyGraphTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private Path baseDir;
+
+
+    @Test
+    public void testParse() throws IOException {
+        Path file = write("playbook.yml",
+                "---",
+                "- hosts: all",
+                "  roles:",
+                "  - common",
+                "  - role: web",
+                "    vars:",
+                "      name: notarole",
+                "  - { role: 'db', tags: db }",
+                "  - name: ns.collection.monitoring",
+                "  - \"{{ templated }}\"",
+                "  tasks:",
+                "    - import_tasks: tasks/extra.yml  # comment",
+                "    - ansible.builtin.include_tasks:",
+                "        file: \"tasks/other.yml\"",
+                "    - include_role:",
+                "        name: cache",
+                "    - import_role: name=proxy",
+                "    - name: Not a role",
+                "      debug:",
+                "        msg: hello",
+                "- import_playbook: other.yml");
+        assertEquals(Arrays.asList("role:common", "role:web", "role:db", "role:ns.collection.monitoring",
+                "file:tasks/extra.yml", "file:tasks/other.yml", "role:cache", "role:proxy", "file:other.yml"),
+                AnsibleDependencyGraph.parse(file));
+
+        Path meta = write("roles/web/meta/main.yml",
+                "dependencies:",
+                "- role: base",
+                "- common",
+                "galaxy_info:",
+                "  author: me");
+        assertEquals(Arrays.asList("role:base", "role:common"), AnsibleDependencyGraph.parse(meta));
+
+        assertEquals(Collections.emptyList(), AnsibleDependencyGraph.parse(baseDir.resolve("unknown.yml")));
+    }
+
+    @Test
+    public void testGetRoleDir() {
+        assertEquals(baseDir.resolve("roles/web"), AnsibleDependencyGraph.getRoleDir(baseDir.resolve("roles/web/tasks/main.yml")));
+        assertEquals(baseDir.resolve("roles/web/roles/nested"), AnsibleDependencyGraph.getRoleDir(baseDir.resolve("roles/web/roles/nested/tasks/main.yml")));
+        assertNull(AnsibleDependencyGraph.getRoleDir(baseDir.resolve("playbook.yml")));
+        assertNull(AnsibleDependencyGraph.getRoleDir(baseDir.resolve("roles/playbook.yml")));
+    }
+
+    @Test
+    public void testBuild() throws IOException {
+        Path site = write("site.yml",
+                "- import_playbook: web.yml",
+                "- hosts: all",
+                "  roles:",
+                "    - common",
+                "  tasks:",
+                "    - include_tasks: tasks/extra.yml");
+        Path web = write("web.yml",
+                "- hosts: web",
+                "  tasks:",
+                "    - import_role:",
+                "        name: web");
+        Path other = write("other.yml",
+                "- hosts: all",
+                "  tasks: []");
+        Path extra = write("tasks/extra.yml", "- debug: msg=extra");
+        Path commonMain = write("roles/common/tasks/main.yml", "- include_tasks: setup.yml");
+        Path commonSetup = write("roles/common/tasks/setup.yml", "- debug: msg=setup");
+        Path commonMeta = write("roles/common/meta/main.yml", "dependencies:", "  - base");
+        Path baseMain = write("roles/base/tasks/main.yml", "- debug: msg=base");
+        Path webMain = write("roles/web/tasks/main.yml", "- debug: msg=web");
+
+        Path index = baseDir.resolve("cache").resolve("dependencies");
+        AnsibleDependencyGraph graph = AnsibleDependencyGraph.build(listFiles(), baseDir, index);
+        assertTrue(Files.isRegularFile(index));
+
+        assertEquals(set(web, webMain, extra, commonMain, commonSetup, commonMeta, baseMain), graph.getDependencies(site));
+        assertEquals(set(commonSetup), graph.getDependencies(commonMain));
+        assertEquals(set(), graph.getDependencies(other));
+        assertEquals(set(site, commonMeta), graph.getDependents(Collections.singleton(baseMain)));
+        assertEquals(set(site, web), graph.getDependents(Collections.singleton(webMain)));
+        assertEquals(set(), graph.getDependents(Collections.singleton(other)));
+
+        // References of unchanged files are taken from the index
+        Files.write(index, Collections.singletonList(site + "\t" + Files.getLastModifiedTime(site).toMillis() + ":" + Files.size(site) + "\tfile:other.yml"));
+        graph = AnsibleDependencyGraph.build(listFiles(), baseDir, index);
+        assertEquals(set(other), graph.getDependencies(site));
+        assertEquals(set(commonSetup), graph.getDependencies(commonMain));
+    }
+
+
+    @Before
+    public void init() throws IOException {
+        baseDir = temporaryFolder.newFolder().toPath().toAbsolutePath();
+    }
+
+    private Path write(String relativePath, String... lines) throws IOException {
+        Path file = baseDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(baseDir)) {
+            return files.filter(file -> file.toString().endsWith(".yml")).collect(Collectors.toList());
+        }
+    }
+
+    private static Set<Path> set(Path... paths) {
+        return new HashSet<>(Arrays.asList(paths));
+    }
+}
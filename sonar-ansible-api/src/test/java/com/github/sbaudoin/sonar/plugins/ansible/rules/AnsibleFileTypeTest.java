@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnsibleFileTypeTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void testClassify() throws IOException {
+        assertEquals(AnsibleFileType.PLAYBOOK, classify("site.yml", "---", "# A play", "- hosts: all", "  roles:", "    - common"));
+        assertEquals(AnsibleFileType.PLAYBOOK, classify("web.yml", "- name: Web servers", "  hosts: web", "  tasks: []"));
+        assertEquals(AnsibleFileType.PLAYBOOK, classify("all.yml", "- import_playbook: site.yml", "- ansible.builtin.import_playbook: web.yml"));
+        assertEquals(AnsibleFileType.INCLUDED_TASKS, classify("tasks/extra.yml", "- name: Debug", "  debug:", "    msg: hosts"));
+        assertEquals(AnsibleFileType.ROLE_FILE, classify("roles/common/tasks/main.yml", "- hosts: all"));
+        assertEquals(AnsibleFileType.ROLE_FILE, classify("roles/common/defaults/main.yml", "foo: bar"));
+        assertEquals(AnsibleFileType.DATA, classify("group_vars/all.yml", "- hosts: all"));
+        assertEquals(AnsibleFileType.DATA, classify("inventories/prod/hosts.yml", "all:", "  hosts:", "    host1:"));
+        assertEquals(AnsibleFileType.DATA, classify("vars.yml", "---", "foo: bar"));
+        assertEquals(AnsibleFileType.DATA, classify("empty.yml"));
+        assertEquals(AnsibleFileType.PLAYBOOK, AnsibleFileType.classify(temporaryFolder.getRoot().toPath().resolve("unknown.yml")));
+    }
+
+
+    private AnsibleFileType classify(String relativePath, String... lines) throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return AnsibleFileType.classify(file);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.Utils;
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintCacheTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private Path cacheDir;
+    private Path configFile;
+    private InputFile playbook;
+
+
+    @Test
+    public void testPutGet() throws IOException {
+        AnsibleLintCache cache = open("1.0", Collections.emptyList(), Arrays.asList("ansible:rule1", "ansible:rule2"));
+        assertNull(cache.get(playbook));
+
+        Map<URI, Set<AnsibleLintIssue>> issues = new HashMap<>();
+        URI role = URI.create("file:///path/to/role/tasks/main.yml");
+        issues.put(playbook.uri(), new HashSet<>(Arrays.asList(new AnsibleLintIssue(2, "rule1", "A\tmessage"), new AnsibleLintIssue(3, "rule2", null, 5))));
+        issues.put(role, Collections.singleton(new AnsibleLintIssue(4, "rule1", "Another message")));
+        cache.put(playbook, issues);
+
+        Map<URI, Set<AnsibleLintIssue>> cached = cache.get(playbook);
+        assertEquals(issues, cached);
+        for (AnsibleLintIssue issue : cached.get(playbook.uri())) {
+            assertEquals((issue.getLine() == 2) ? "A message" : null, issue.getMessage());
+            assertEquals((issue.getLine() == 2) ? 0 : 5, issue.getColumn());
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Same parameters, rules in another order
+        cache = open("1.0", Collections.emptyList(), Arrays.asList("ansible:rule2", "ansible:rule1"));
+        assertEquals(issues, cache.get(playbook));
+    }
+
+    @Test
+    public void testKey() throws IOException {
+        AnsibleLintCache cache = open("1.0", Collections.emptyList(), Collections.singletonList("ansible:rule1"));
+        cache.put(playbook, Collections.emptyMap());
+        assertNotNull(cache.get(playbook));
+
+        // Another version of ansible-lint
+        assertNull(open("2.0", Collections.emptyList(), Collections.singletonList("ansible:rule1")).get(playbook));
+        // Other active rules
+        assertNull(open("1.0", Collections.emptyList(), Arrays.asList("ansible:rule1", "ansible:rule2")).get(playbook));
+        // Other arguments
+        assertNull(open("1.0", Collections.singletonList("-x"), Collections.singletonList("ansible:rule1")).get(playbook));
+        // Another configuration
+        Files.write(configFile, Collections.singletonList("skip_list: []"));
+        assertNull(open("1.0", Collections.emptyList(), Collections.singletonList("ansible:rule1")).get(playbook));
+    }
+
+    @Test
+    public void testExtraRulesKey() throws IOException {
+        Path rules1 = temporaryFolder.newFolder("rules1").toPath();
+        Path rules2 = temporaryFolder.newFolder("rules2").toPath();
+        Files.write(rules1.resolve("rule.py"), Collections.singletonList("pass"));
+        Files.write(rules2.resolve("rule.py"), Collections.singletonList("pass"));
+
+        // Directories with the same content have the same key whatever their path
+        open("1.0", Arrays.asList("-r", rules1.toString()), Collections.emptyList()).put(playbook, Collections.emptyMap());
+        assertNotNull(open("1.0", Arrays.asList("-r", rules2.toString()), Collections.emptyList()).get(playbook));
+
+        Files.write(rules2.resolve("rule.py"), Collections.singletonList("print()"));
+        assertNull(open("1.0", Arrays.asList("-r", rules2.toString()), Collections.emptyList()).get(playbook));
+    }
+
+    @Test
+    public void testDependenciesKey() throws IOException {
+        Path baseDir = temporaryFolder.newFolder("project").toPath();
+        Path site = baseDir.resolve("site.yml");
+        Path role = baseDir.resolve("roles").resolve("common").resolve("tasks").resolve("main.yml");
+        Files.createDirectories(role.getParent());
+        Files.write(site, Arrays.asList("- hosts: all", "  roles:", "    - common"));
+        Files.write(role, Collections.singletonList("- debug: msg=hello"));
+        InputFile sitePlaybook = TestInputFileBuilder.create(Utils.MODULE_KEY, "site.yml").setModuleBaseDir(baseDir).build();
+        AnsibleDependencyGraph graph = AnsibleDependencyGraph.build(Arrays.asList(site, role), baseDir, null);
+        String fingerprint = AnsibleLintCache.fingerprint("1.0", configFile, Collections.emptyList(), Collections.emptyList());
+        Files.createDirectories(cacheDir);
+
+        new AnsibleLintCache(cacheDir, fingerprint, graph).put(sitePlaybook, Collections.emptyMap());
+        assertNotNull(new AnsibleLintCache(cacheDir, fingerprint, graph).get(sitePlaybook));
+
+        // The entry of the playbook is invalidated by a modification of the role
+        Files.write(role, Collections.singletonList("- debug: msg=world"));
+        assertNull(new AnsibleLintCache(cacheDir, fingerprint, graph).get(sitePlaybook));
+    }
+
+    @Test
+    public void testInvalidEntry() throws IOException {
+        AnsibleLintCache cache = open("1.0", Collections.emptyList(), Collections.emptyList());
+        cache.put(playbook, Collections.emptyMap());
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            Files.write(entries.findFirst().get(), Collections.singletonList("invalid"));
+        }
+        assertNull(cache.get(playbook));
+        assertEquals(1, cache.getMisses());
+    }
+
+
+    @Before
+    public void init() throws IOException {
+        cacheDir = temporaryFolder.getRoot().toPath().resolve("cache");
+        configFile = temporaryFolder.getRoot().toPath().resolve(".ansible-lint");
+        playbook = Utils.getInputFile("playbooks/playbook1.yml");
+    }
+
+    private AnsibleLintCache open(String version, List<String> args, List<String> rules) throws IOException {
+        return AnsibleLintCache.open(cacheDir, version, configFile, args, rules);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintCapabilitiesTest {
+    @Test
+    public void testUnknownVersion() {
+        for (String output : Arrays.asList(null, "", "Bla bla")) {
+            AnsibleLintCapabilities capabilities = AnsibleLintCapabilities.parse(output);
+            assertFalse(capabilities.isVersionKnown());
+            assertEquals("unknown", capabilities.toString());
+            assertEquals(Collections.singleton(AnsibleLintCapabilities.FORMAT_PEP8), capabilities.getOutputFormats());
+            assertEquals(Collections.singletonList("-p"), capabilities.getParseableOptions());
+            assertFalse(capabilities.supportsOffline());
+            assertEquals(AnsibleLintCapabilities.RuleIdStyle.NUMERIC, capabilities.getRuleIdStyle());
+        }
+    }
+
+    @Test
+    public void testVersion4() {
+        AnsibleLintCapabilities capabilities = AnsibleLintCapabilities.parse("ansible-lint 4.3.7");
+        assertTrue(capabilities.isVersionKnown());
+        assertEquals("4.3.7", capabilities.toString());
+        assertTrue(capabilities.isAtLeast(4, 3));
+        assertFalse(capabilities.isAtLeast(4, 4));
+        assertEquals(Collections.singletonList("-p"), capabilities.getParseableOptions());
+        assertEquals(AnsibleLintCapabilities.RuleIdStyle.NUMERIC, capabilities.getRuleIdStyle());
+    }
+
+    @Test
+    public void testVersion5() {
+        AnsibleLintCapabilities capabilities = AnsibleLintCapabilities.parse("ansible-lint 5.4.0 using ansible 2.11.6");
+        assertEquals(new HashSet<>(Arrays.asList(AnsibleLintCapabilities.FORMAT_PEP8, AnsibleLintCapabilities.FORMAT_JSON, AnsibleLintCapabilities.FORMAT_CODECLIMATE)),
+                capabilities.getOutputFormats());
+        assertFalse(capabilities.isParseableOptionDeprecated());
+        assertFalse(capabilities.supportsOffline());
+        assertEquals(AnsibleLintCapabilities.RuleIdStyle.NAMED, capabilities.getRuleIdStyle());
+    }
+
+    @Test
+    public void testVersion6() {
+        AnsibleLintCapabilities capabilities = AnsibleLintCapabilities.parse("ansible-lint 6.14.3 using ansible 2.14.4\nA new release of ansible-lint is available");
+        assertEquals("6.14.3", capabilities.toString());
+        assertTrue(capabilities.getOutputFormats().contains(AnsibleLintCapabilities.FORMAT_SARIF));
+        assertTrue(capabilities.isParseableOptionDeprecated());
+        assertEquals(Arrays.asList("-f", "pep8"), capabilities.getParseableOptions());
+        assertTrue(capabilities.supportsOffline());
+        assertFalse(AnsibleLintCapabilities.parse("ansible-lint 6.7.0").getOutputFormats().contains(AnsibleLintCapabilities.FORMAT_SARIF));
+        assertEquals("24.2.0", AnsibleLintCapabilities.parse("ansible-lint 24.2.0 using ansible-core:2.16.4").toString());
+    }
+}
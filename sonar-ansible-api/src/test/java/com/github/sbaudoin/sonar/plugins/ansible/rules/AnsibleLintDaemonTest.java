@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.sbaudoin.sonar.plugins.ansible.Utils.setShellRights;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class AnsibleLintDaemonTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private List<String> command;
+    private File logFile;
+
+
+    @Test
+    public void testExtractScript() throws IOException {
+        Path dir = temporaryFolder.getRoot().toPath().resolve("foo");
+        Path script = AnsibleLintDaemon.extractScript(dir);
+        assertEquals(dir.resolve(AnsibleLintDaemon.SCRIPT), script);
+        assertTrue(Files.readAllLines(script).contains("def serve(requests, channel):"));
+    }
+
+    @Test
+    public void testLint() throws IOException {
+        try (AnsibleLintDaemon daemon = new AnsibleLintDaemon(command, temporaryFolder.getRoot(), logFile)) {
+            daemon.start();
+            assertTrue(daemon.isHealthy());
+
+            List<String> stdOut = new ArrayList<>();
+            List<String> errOut = new ArrayList<>();
+            assertEquals(2, daemon.lint(Arrays.asList("-p", "a.yml", "b.yml"), stdOut, errOut));
+            assertEquals(Arrays.asList("a.yml:2: [EANSIBLE1] An error on a.yml", "b.yml:2: [EANSIBLE1] An error on b.yml"), stdOut);
+            assertEquals(Collections.singletonList("WARNING this is a test"), errOut);
+        }
+    }
+
+    @Test
+    public void testTooManyRestarts() {
+        try (AnsibleLintDaemon daemon = new AnsibleLintDaemon(command, temporaryFolder.getRoot(), logFile)) {
+            daemon.start();
+
+            // The daemon crashes each time and is restarted until it crashed too many times
+            String message = null;
+            for (int i = 0; i <= AnsibleLintDaemon.MAX_RESTARTS; i++) {
+                try {
+                    daemon.lint(Collections.singletonList("crash"), new ArrayList<>(), new ArrayList<>());
+                    fail("Daemon should have crashed");
+                } catch (IOException e) {
+                    message = e.getMessage();
+                }
+            }
+            assertEquals("ansible-lint daemon crashed too many times", message);
+        } catch (IOException e) {
+            fail("Daemon not started: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRestartAfterCrash() throws IOException {
+        try (AnsibleLintDaemon daemon = new AnsibleLintDaemon(command, temporaryFolder.getRoot(), logFile)) {
+            daemon.start();
+            try {
+                daemon.lint(Collections.singletonList("crash"), new ArrayList<>(), new ArrayList<>());
+                fail("Daemon should have crashed");
+            } catch (IOException e) {
+                assertFalse(daemon.isHealthy());
+            }
+
+            List<String> stdOut = new ArrayList<>();
+            assertEquals(2, daemon.lint(Collections.singletonList("a.yml"), stdOut, new ArrayList<>()));
+            assertEquals(1, stdOut.size());
+        }
+    }
+
+    @Test
+    public void testStartError() throws IOException {
+        AnsibleLintDaemon daemon = new AnsibleLintDaemon(Arrays.asList("python3", "-c", "print('ERROR no ansiblelint')"), temporaryFolder.getRoot(), logFile);
+        try {
+            daemon.start();
+            fail("Daemon should not start");
+        } catch (IOException e) {
+            assertEquals("ansible-lint daemon could not start: ERROR no ansiblelint", e.getMessage());
+        }
+        assertFalse(daemon.isHealthy());
+    }
+
+
+    @Before
+    public void init() throws IOException {
+        assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
+        String python = new File(getClass().getResource("/scripts/python.sh").getFile()).getAbsolutePath();
+        setShellRights(python);
+        assumeTrue(isPythonAvailable(python));
+
+        Path script = AnsibleLintDaemon.extractScript(temporaryFolder.newFolder("daemon").toPath());
+        command = Arrays.asList(python, "-u", script.toString());
+        logFile = temporaryFolder.newFile("daemon.log");
+    }
+
+    private boolean isPythonAvailable(String python) {
+        try {
+            return new ProcessBuilder(python, "--version").start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AnsibleLintOutputParser.Dialect;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintOutputParserTest {
+    @Test
+    public void testDialects() {
+        assertIssue("path/to/file.yml", 2, "ANSIBLE0002", "Trailing whitespace", new AnsibleLintOutputParser(null).parse("path/to/file.yml:2: [EANSIBLE0002] Trailing whitespace"));
+        assertIssue("path/to/file.yml", 3, "risky-file-permissions", null, new AnsibleLintOutputParser(null).parse("risky-file-permissions path/to/file.yml:3"));
+        assertIssue("path/to/file.yml", 4, "yaml", null, new AnsibleLintOutputParser(null).parse("path/to/file.yml:4: yaml"));
+        assertIssue("path/to/file.yml", 6, "yaml[there is a problem]", null, new AnsibleLintOutputParser(null).parse("path/to/file.yml:6: yaml (yaml[there is a problem])"));
+        assertIssue("C:\\path\\file.yml", 1, "301", "msg", new AnsibleLintOutputParser(null).parse("C:\\path\\file.yml:1: [E301] msg"));
+        assertIssue("file.yml", 1, "301", "", new AnsibleLintOutputParser(null).parse("file.yml:1: [E301] "));
+    }
+
+    @Test
+    public void testInvalidLines() {
+        AnsibleLintOutputParser parser = new AnsibleLintOutputParser(null);
+        for (String line : Arrays.asList("", "invalid issue", "filename:invalid issue", "filename:a:invalid issue",
+                "filename:12:invalid issue", "filename:12: invalid issue", "filename:12: [xxx] invalid issue",
+                "filename:12:[Exxx] invalid issue", "filename:12: [Exxx invalid issue", "xxx filename:12: invalid issue",
+                "xxx filename:99999999999", "filename:12: x ()x")) {
+            assertNull(line, parser.parse(line));
+        }
+        assertNull(parser.getDialect());
+    }
+
+    @Test
+    public void testDialectDetection() {
+        AnsibleLintOutputParser parser = new AnsibleLintOutputParser(null);
+        assertNotNull(parser.parse("file.yml:4: yaml"));
+        assertEquals(Dialect.NAMED, parser.getDialect());
+        // Other dialects are still recognized
+        assertNotNull(parser.parse("file.yml:1: [E301] msg"));
+        assertEquals(Dialect.NAMED, parser.getDialect());
+
+        assertNull(AnsibleLintOutputParser.getDialect(AnsibleLintCapabilities.parse(null)));
+        assertEquals(Dialect.LEGACY, AnsibleLintOutputParser.getDialect(AnsibleLintCapabilities.parse("ansible-lint 4.3.7")));
+        assertEquals(Dialect.NAMED, AnsibleLintOutputParser.getDialect(AnsibleLintCapabilities.parse("ansible-lint 5.4.0")));
+        assertEquals(Dialect.NAMED_WITH_DETAILS, AnsibleLintOutputParser.getDialect(AnsibleLintCapabilities.parse("ansible-lint 6.14.3")));
+    }
+
+    @Test
+    public void testSameResultsAsRegularExpressions() {
+        Pattern[] patterns = {
+                Pattern.compile("^(.*):([0-9]+): \\[E([^\\[]+)\\] (.*)$"),
+                Pattern.compile("^([^ ]+) (.+):([0-9]+)$"),
+                Pattern.compile("^(.*):([0-9]+): ([^ ]+)$"),
+                Pattern.compile("^(.*):([0-9]+): ([^ ]+) \\((.*)\\)$")
+        };
+        for (String line : Arrays.asList(
+                "a:1: [E1] b:2: [E2] message",
+                "a:1: [Ex] y] z [w] message",
+                "a:1: [Ex] y] z] message",
+                "a:1: [E[x] message",
+                "a b:1:2",
+                "a b: c:12",
+                "a:b:1: c",
+                "a:1: b:2: c",
+                "a:1: b (c) d:2: e (f)",
+                "a:1: b (c:2: d (e))",
+                "a:1: b:2: c (d)",
+                "a:1:  (x)",
+                "a:1: b (",
+                ":12: x")) {
+            Map.Entry<String, AnsibleLintIssue> parsed = new AnsibleLintOutputParser(null).parse(line);
+            Matcher matcher = null;
+            int index = 0;
+            for (; index < patterns.length; index++) {
+                matcher = patterns[index].matcher(line);
+                if (matcher.matches()) {
+                    break;
+                }
+            }
+            if (index == patterns.length) {
+                assertNull(line, parsed);
+                continue;
+            }
+            assertNotNull(line, parsed);
+            switch (index) {
+                case 0:
+                    assertIssue(matcher.group(1), Integer.parseInt(matcher.group(2)), matcher.group(3), matcher.group(4), parsed);
+                    break;
+                case 1:
+                    assertIssue(matcher.group(2), Integer.parseInt(matcher.group(3)), matcher.group(1), null, parsed);
+                    break;
+                case 2:
+                    assertIssue(matcher.group(1), Integer.parseInt(matcher.group(2)), matcher.group(3), null, parsed);
+                    break;
+                default:
+                    assertIssue(matcher.group(1), Integer.parseInt(matcher.group(2)), matcher.group(4), null, parsed);
+            }
+        }
+    }
+
+
+    private static void assertIssue(String path, int line, String id, String message, Map.Entry<String, AnsibleLintIssue> parsed) {
+        assertNotNull(parsed);
+        assertEquals(path, parsed.getKey());
+        assertEquals(line, parsed.getValue().getLine());
+        assertEquals(id, parsed.getValue().getId());
+        assertEquals(message, parsed.getValue().getMessage());
+    }
+}
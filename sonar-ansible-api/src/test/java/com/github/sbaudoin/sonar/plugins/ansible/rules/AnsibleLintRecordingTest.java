@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintRecordingTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private Path file;
+    private Path recordedBaseDir;
+    private Path replayedBaseDir;
+
+
+    @Before
+    public void init() throws IOException {
+        AnsibleLintRecording.clear();
+        file = temporaryFolder.getRoot().toPath().resolve("recordings/ansible-lint.rec");
+        recordedBaseDir = temporaryFolder.newFolder("recorded").toPath();
+        replayedBaseDir = temporaryFolder.newFolder("replayed").toPath();
+    }
+
+
+    @Test
+    public void testRecordAndReplay() throws IOException {
+        AnsibleLintRecording recording = AnsibleLintRecording.record(file, "MySensor", recordedBaseDir);
+        assertFalse(recording.isReplaying());
+        recording.add(Arrays.asList("/usr/bin/ansible-lint", "--version"), 0, 10, Collections.singletonList("ansible-lint 4.2.0"), Collections.emptyList(), null);
+        recording.add(Arrays.asList("/usr/bin/ansible-lint", "-p", "-r", "/tmp/rules-1234", recorded("a.yml")), 2, 1500,
+                Collections.singletonList(recorded("a.yml") + ":2: [E301] Issue"), Collections.singletonList("WARNING on " + recorded("a.yml")), null);
+
+        // Another machine, another ansible-lint path, another temporary directory
+        recording = AnsibleLintRecording.replay(file, "MySensor", replayedBaseDir);
+        assertTrue(recording.isReplaying());
+        List<String> out = new ArrayList<>();
+        List<String> err = new ArrayList<>();
+        assertEquals(0, recording.replay(Arrays.asList("ansible-lint.cmd", "--version"), out::add, err::add));
+        assertEquals(Collections.singletonList("ansible-lint 4.2.0"), out);
+        out.clear();
+        assertEquals(2, recording.replay(Arrays.asList("ansible-lint", "-p", "-r", "/tmp/rules-5678", replayed("a.yml")), out::add, err::add));
+        assertEquals(Collections.singletonList(replayed("a.yml") + ":2: [E301] Issue"), out);
+        assertEquals(Collections.singletonList("WARNING on " + replayed("a.yml")), err);
+    }
+
+    @Test
+    public void testReplayInOrder() throws IOException {
+        List<String> command = Arrays.asList("ansible-lint", recorded("a.yml"));
+        AnsibleLintRecording recording = AnsibleLintRecording.record(file, "MySensor", recordedBaseDir);
+        recording.add(command, 1, 0, Collections.singletonList("first"), Collections.emptyList(), null);
+        recording.add(command, 2, 0, Collections.singletonList("second"), Collections.emptyList(), null);
+
+        recording = AnsibleLintRecording.replay(file, "MySensor", recordedBaseDir);
+        List<String> out = new ArrayList<>();
+        assertEquals(1, recording.replay(command, out::add, line -> {}));
+        assertEquals(2, recording.replay(command, out::add, line -> {}));
+        // The last execution is served again
+        assertEquals(2, recording.replay(command, out::add, line -> {}));
+        assertEquals(Arrays.asList("first", "second", "second"), out);
+    }
+
+    @Test
+    public void testReplayLimitExceeded() throws IOException {
+        List<String> command = Arrays.asList("ansible-lint", recorded("a.yml"));
+        AnsibleLintRecording recording = AnsibleLintRecording.record(file, "MySensor", recordedBaseDir);
+        recording.add(command, -1, 60000, Collections.singletonList("partial"), Collections.emptyList(), "timeout of 60 s exceeded");
+
+        recording = AnsibleLintRecording.replay(file, "MySensor", recordedBaseDir);
+        List<String> out = new ArrayList<>();
+        try {
+            recording.replay(command, out::add, line -> {});
+            fail("Exception expected");
+        } catch (AbstractAnsibleSensor.LimitExceededException e) {
+            assertEquals("timeout of 60 s exceeded", e.getMessage());
+        }
+        assertEquals(Collections.singletonList("partial"), out);
+    }
+
+    @Test
+    public void testReplayNotFound() throws IOException {
+        AnsibleLintRecording recording = AnsibleLintRecording.record(file, "MySensor", recordedBaseDir);
+        recording.add(Arrays.asList("ansible-lint", recorded("a.yml")), 0, 0, Collections.emptyList(), Collections.emptyList(), null);
+
+        // Executions of other sensors are ignored
+        recording = AnsibleLintRecording.replay(file, "OtherSensor", recordedBaseDir);
+        try {
+            recording.replay(Arrays.asList("ansible-lint", recorded("a.yml")), line -> {}, line -> {});
+            fail("Exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Execution not found in the recording"));
+        }
+    }
+
+    @Test
+    public void testRecordingEmptiedOnce() throws IOException {
+        List<String> command = Arrays.asList("ansible-lint", recorded("a.yml"));
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] { 1, 2, 3 });
+        AnsibleLintRecording.record(file, "MySensor", recordedBaseDir).add(command, 1, 0, Collections.emptyList(), Collections.emptyList(), null);
+        // Another sensor of the same analysis appends to the file
+        AnsibleLintRecording.record(file, "OtherSensor", recordedBaseDir).add(command, 2, 0, Collections.emptyList(), Collections.emptyList(), null);
+
+        assertEquals(1, AnsibleLintRecording.replay(file, "MySensor", recordedBaseDir).replay(command, line -> {}, line -> {}));
+        assertEquals(2, AnsibleLintRecording.replay(file, "OtherSensor", recordedBaseDir).replay(command, line -> {}, line -> {}));
+    }
+
+    @Test
+    public void testReplayEmptyRecording() throws IOException {
+        AnsibleLintRecording.record(file, "MySensor", recordedBaseDir);
+        assertTrue(AnsibleLintRecording.replay(file, "MySensor", recordedBaseDir).isReplaying());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplayInvalidRecording() throws IOException {
+        Files.createDirectories(file.getParent());
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+            // Unknown format version
+            out.writeInt(99);
+        }
+        AnsibleLintRecording.replay(file, "MySensor", recordedBaseDir);
+    }
+
+
+    private String recorded(String path) {
+        return recordedBaseDir.resolve(path).toString();
+    }
+
+    private String replayed(String path) {
+        return replayedBaseDir.resolve(path).toString();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintReportReaderTest {
+    @Test
+    public void testCodeClimate() throws IOException {
+        List<Map.Entry<String, AnsibleLintIssue>> issues = read("[\n" +
+                "  {\"type\": \"issue\", \"check_name\": \"yaml[truthy]\", \"categories\": [\"formatting\", \"yaml\"],\n" +
+                "   \"url\": \"https://ansible-lint.readthedocs.io/rules/yaml/\", \"severity\": \"minor\",\n" +
+                "   \"description\": \"Truthy value should be one of [false, true]\", \"fingerprint\": \"123\",\n" +
+                "   \"location\": {\"path\": \"site.yml\", \"positions\": {\"begin\": {\"line\": 3, \"column\": 5}}}},\n" +
+                "  {\"check_name\": \"[no-changed-when] Commands should not change things if nothing needs doing\",\n" +
+                "   \"description\": \"Task \\\"run\\\" \\u00e9\", \"location\": {\"path\": \"roles/r/tasks/main.yml\", \"lines\": {\"begin\": 7}}},\n" +
+                "  {\"check_name\": \"load-failure\", \"location\": {\"lines\": {\"begin\": 1}}}\n" +
+                "]", AnsibleLintCapabilities.FORMAT_CODECLIMATE);
+        assertEquals(2, issues.size());
+        assertIssue("site.yml", 3, 5, "yaml[truthy]", "Truthy value should be one of [false, true]", issues.get(0));
+        assertIssue("roles/r/tasks/main.yml", 7, 0, "no-changed-when", "Task \"run\" \u00e9", issues.get(1));
+    }
+
+    @Test
+    public void testSarif() throws IOException {
+        List<Map.Entry<String, AnsibleLintIssue>> issues = read("{\"$schema\": \"https://json.schemastore.org/sarif-2.1.0.json\", \"version\": \"2.1.0\",\n" +
+                " \"runs\": [{\"tool\": {\"driver\": {\"name\": \"ansible-lint\", \"rules\": [{\"id\": \"yaml[truthy]\"}]}},\n" +
+                "  \"columnKind\": \"utf16CodeUnits\",\n" +
+                "  \"results\": [{\"ruleId\": \"yaml[truthy]\", \"level\": \"error\", \"message\": {\"text\": \"Truthy value\"},\n" +
+                "    \"locations\": [{\"physicalLocation\": {\"artifactLocation\": {\"uri\": \"my%20site.yml\", \"uriBaseId\": \"SRCROOT\"},\n" +
+                "      \"region\": {\"startLine\": 3, \"startColumn\": 5}}}, {\"physicalLocation\": {\"artifactLocation\": {\"uri\": \"other.yml\"}}}]},\n" +
+                "   {\"ruleId\": \"name[missing]\", \"message\": {\"text\": null}, \"locations\": [{\"physicalLocation\": {\"artifactLocation\": {\"uri\": \"site.yml\"}, \"region\": {\"startLine\": 8}}}]}]}]}",
+                AnsibleLintCapabilities.FORMAT_SARIF);
+        assertEquals(2, issues.size());
+        assertIssue("my site.yml", 3, 5, "yaml[truthy]", "Truthy value", issues.get(0));
+        assertIssue("site.yml", 8, 0, "name[missing]", null, issues.get(1));
+    }
+
+    @Test
+    public void testPush() throws IOException {
+        List<String> ids = new ArrayList<>();
+        AnsibleLintReportReader reader = new AnsibleLintReportReader(AnsibleLintCapabilities.FORMAT_CODECLIMATE, (path, issue) -> ids.add(issue.getId()));
+        reader.accept("[{\"check_name\": \"a\", \"location\": {\"path\": \"a.yml\"}},");
+        // Issues are decoded as soon as they are complete
+        assertEquals(Collections.singletonList("a"), ids);
+        reader.accept("{\"check_name\": \"b\",");
+        reader.accept(" \"description\": \"[{\\\"]\", \"location\": {\"path\": \"b.yml\"}}");
+        assertEquals(Arrays.asList("a", "b"), ids);
+        reader.accept("]");
+        reader.finish();
+    }
+
+    @Test
+    public void testEmptyReport() throws IOException {
+        assertTrue(read("", AnsibleLintCapabilities.FORMAT_JSON).isEmpty());
+        assertTrue(read("[]", AnsibleLintCapabilities.FORMAT_JSON).isEmpty());
+        assertTrue(read("{\"runs\": []}", AnsibleLintCapabilities.FORMAT_SARIF).isEmpty());
+    }
+
+    @Test
+    public void testInvalidReport() {
+        List<Map.Entry<String, AnsibleLintIssue>> issues = new ArrayList<>();
+        try {
+            AnsibleLintReportReader.read(new StringReader("[{\"check_name\": \"a\", \"location\": {\"path\": \"a.yml\"}}, {\"check_name\": \"b\""),
+                    AnsibleLintCapabilities.FORMAT_JSON, (path, issue) -> issues.add(new AbstractMap.SimpleImmutableEntry<>(path, issue)));
+            fail("Invalid report not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Malformed JSON at offset"));
+        }
+        // The issues decoded before the error have been emitted
+        assertEquals(1, issues.size());
+    }
+
+    @Test
+    public void testIsStructured() {
+        assertFalse(AnsibleLintReportReader.isStructured(AnsibleLintCapabilities.FORMAT_PEP8));
+        assertTrue(AnsibleLintReportReader.isStructured(AnsibleLintCapabilities.FORMAT_JSON));
+        assertTrue(AnsibleLintReportReader.isStructured(AnsibleLintCapabilities.FORMAT_CODECLIMATE));
+        assertTrue(AnsibleLintReportReader.isStructured(AnsibleLintCapabilities.FORMAT_SARIF));
+    }
+
+
+    private static List<Map.Entry<String, AnsibleLintIssue>> read(String report, String format) throws IOException {
+        List<Map.Entry<String, AnsibleLintIssue>> issues = new ArrayList<>();
+        AnsibleLintReportReader.read(new StringReader(report), format, (path, issue) -> issues.add(new AbstractMap.SimpleImmutableEntry<>(path, issue)));
+        return issues;
+    }
+
+    private static void assertIssue(String path, int line, int column, String id, String message, Map.Entry<String, AnsibleLintIssue> issue) {
+        assertEquals(path, issue.getKey());
+        assertEquals(line, issue.getValue().getLine());
+        assertEquals(column, issue.getValue().getColumn());
+        assertEquals(id, issue.getValue().getId());
+        assertEquals(message, issue.getValue().getMessage());
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AbstractAnsibleSensor.AnsibleLintIssue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintResultStoreTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void testSaveLoad() {
+        Path file = temporaryFolder.getRoot().toPath().resolve("store").resolve("results");
+        AnsibleLintResultStore store = new AnsibleLintResultStore(file);
+        assertNull(store.load());
+
+        Map<URI, Set<AnsibleLintIssue>> results = new HashMap<>();
+        results.put(URI.create("file:/playbook1.yml"), new HashSet<>(Arrays.asList(new AnsibleLintIssue(2, "ANSIBLE1", "An error"), new AnsibleLintIssue(3, "ANSIBLE2"))));
+        results.put(URI.create("file:/playbook2.yml"), Collections.emptySet());
+        store.save(results);
+        assertTrue(Files.isRegularFile(file));
+
+        Map<URI, Set<AnsibleLintIssue>> loaded = store.load();
+        assertEquals(results, loaded);
+        assertTrue(loaded.get(URI.create("file:/playbook2.yml")).isEmpty());
+    }
+
+    @Test
+    public void testInvalidStore() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, Collections.singletonList("invalid"));
+        assertNull(new AnsibleLintResultStore(file).load());
+    }
+}
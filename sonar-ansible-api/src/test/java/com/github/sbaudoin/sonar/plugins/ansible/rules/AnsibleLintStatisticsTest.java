@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintStatisticsTest {
+    private static final Path BASE_DIR = Paths.get("project").toAbsolutePath();
+    private static final long MS = 1_000_000;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void testEmpty() {
+        AnsibleLintStatistics statistics = new AnsibleLintStatistics(BASE_DIR);
+        assertEquals(0, statistics.getExecutions());
+        assertEquals(0, statistics.getLintTime());
+        assertEquals(0, statistics.getMeanTime());
+        assertTrue(statistics.getSlowestFiles().isEmpty());
+        assertEquals("[]", statistics.getSlowestFilesJson());
+        assertEquals("ansible-lint performance: 0 file(s) linted in 0 execution(s), 0 ms (0 ms per execution), 0 cache hit(s), analysis 0 ms",
+                statistics.getSummary());
+    }
+
+    @Test
+    public void testExecutions() {
+        AnsibleLintStatistics statistics = new AnsibleLintStatistics(BASE_DIR);
+        statistics.addExecution(Collections.singletonList(file("a.yml")), 300 * MS);
+        statistics.addExecution(Arrays.asList(file("b.yml"), file("c.yml")), 500 * MS);
+        statistics.addExecution(Collections.singletonList("/other/d.yml"), 100 * MS);
+        statistics.setFilesLinted(4);
+        statistics.setCacheHits(2);
+        statistics.setAnalysisTime(1200 * MS + 1);
+
+        assertEquals(4, statistics.getFilesLinted());
+        assertEquals(3, statistics.getExecutions());
+        assertEquals(900, statistics.getLintTime());
+        assertEquals(300, statistics.getMeanTime());
+        assertEquals(2, statistics.getCacheHits());
+        assertEquals(1200, statistics.getAnalysisTime());
+
+        // The files of a batch are given the time of the batch, the ties are sorted by path
+        List<Map.Entry<String, Long>> slowestFiles = statistics.getSlowestFiles();
+        assertEquals(4, slowestFiles.size());
+        assertEquals("b.yml", slowestFiles.get(0).getKey());
+        assertEquals(Long.valueOf(500), slowestFiles.get(0).getValue());
+        assertEquals("c.yml", slowestFiles.get(1).getKey());
+        assertEquals("a.yml", slowestFiles.get(2).getKey());
+        assertEquals("/other/d.yml", slowestFiles.get(3).getKey());
+
+        assertEquals("ansible-lint performance: 4 file(s) linted in 3 execution(s), 900 ms (300 ms per execution), 2 cache hit(s), analysis 1200 ms, slowest: b.yml (500 ms)",
+                statistics.getSummary());
+        assertEquals("{\"ansible_files_linted\":4,\"ansible_lint_executions\":3,\"ansible_lint_time\":900,\"ansible_lint_mean_time\":300," +
+                "\"ansible_analysis_time\":1200,\"ansible_cache_hits\":2,\"ansible_slowest_files\":[{\"file\":\"b.yml\",\"time\":500}," +
+                "{\"file\":\"c.yml\",\"time\":500},{\"file\":\"a.yml\",\"time\":300},{\"file\":\"/other/d.yml\",\"time\":100}]}",
+                statistics.toJson());
+    }
+
+    @Test
+    public void testSlowestFiles() {
+        AnsibleLintStatistics statistics = new AnsibleLintStatistics(BASE_DIR);
+        for (int i = 1; i <= AnsibleLintStatistics.SLOWEST_FILES + 5; i++) {
+            statistics.addExecution(Collections.singletonList(file(i + ".yml")), i * MS);
+        }
+        // A file linted twice (as part of a role for instance) keeps its slowest execution
+        statistics.addExecution(Collections.singletonList(file("1.yml")), 100 * MS);
+        statistics.addExecution(Collections.singletonList(file("1.yml")), 50 * MS);
+
+        List<Map.Entry<String, Long>> slowestFiles = statistics.getSlowestFiles();
+        assertEquals(AnsibleLintStatistics.SLOWEST_FILES, slowestFiles.size());
+        assertEquals("1.yml", slowestFiles.get(0).getKey());
+        assertEquals(Long.valueOf(100), slowestFiles.get(0).getValue());
+        assertEquals("15.yml", slowestFiles.get(1).getKey());
+        assertEquals("7.yml", slowestFiles.get(AnsibleLintStatistics.SLOWEST_FILES - 1).getKey());
+    }
+
+    @Test
+    public void testEscaping() {
+        AnsibleLintStatistics statistics = new AnsibleLintStatistics(BASE_DIR);
+        statistics.addExecution(Collections.singletonList(file("a \"b\".yml")), MS);
+        assertEquals("[{\"file\":\"a \\\"b\\\".yml\",\"time\":1}]", statistics.getSlowestFilesJson());
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        AnsibleLintStatistics statistics = new AnsibleLintStatistics(BASE_DIR);
+        statistics.addExecution(Collections.singletonList(file("a.yml")), 10 * MS);
+        Path file = temporaryFolder.getRoot().toPath().resolve("work").resolve("summary.json");
+        statistics.write(file);
+        assertEquals(statistics.toJson() + "\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+
+    private static String file(String name) {
+        return BASE_DIR.resolve(name).toString();
+    }
+}
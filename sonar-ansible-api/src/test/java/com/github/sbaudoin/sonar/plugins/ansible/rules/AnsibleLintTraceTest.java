@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintTraceTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Before
+    public void setUp() {
+        AnsibleLintTrace.clear();
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("trace").resolve("trace.json");
+        AnsibleLintTrace trace = AnsibleLintTrace.open(file, "AnsibleSensor");
+        try (AnsibleSensorEvents.Phase analysis = AnsibleSensorEvents.analysis(trace, "AnsibleSensor")) {
+            assertTrue(analysis.isEnabled());
+            try (AnsibleSensorEvents.Phase lint = AnsibleSensorEvents.lint(trace, Arrays.asList("playbook.yml", "roles/common"))) {
+                try (AnsibleSensorEvents.Phase command = AnsibleSensorEvents.command(trace, Arrays.asList("ansible-lint", "playbook.yml", "roles/common"))) {
+                    command.addLine("playbook.yml:1: [E301] Commands should not change things if nothing needs doing");
+                    command.exitCode(2);
+                }
+                lint.exitCode(2).issues(1);
+            }
+            analysis.files(2);
+        }
+        trace.write();
+        assertEquals(file.toAbsolutePath().normalize(), trace.getFile());
+
+        List<Map<String, Object>> events = read(file);
+        String tid = String.valueOf(Thread.currentThread().getId());
+        Map<String, Object> process = find(events, "process_name");
+        assertEquals("M", process.get("ph"));
+        assertEquals("1", process.get("pid"));
+        assertEquals("AnsibleSensor", args(process).get("name"));
+        Map<String, Object> thread = find(events, "thread_name");
+        assertEquals(tid, thread.get("tid"));
+        assertEquals(Thread.currentThread().getName(), args(thread).get("name"));
+
+        Map<String, Object> analysis = find(events, "analysis");
+        assertEquals("X", analysis.get("ph"));
+        assertEquals("AnsibleSensor", args(analysis).get("sensor"));
+        assertEquals("2", args(analysis).get("files"));
+        Map<String, Object> lint = find(events, "ansible-lint");
+        assertEquals(tid, lint.get("tid"));
+        assertEquals(Arrays.asList("playbook.yml", "roles/common"), args(lint).get("targets"));
+        assertEquals("2", args(lint).get("exitCode"));
+        assertEquals("1", args(lint).get("issues"));
+        Map<String, Object> command = find(events, "command");
+        assertEquals("ansible-lint playbook.yml roles/common", args(command).get("command"));
+        assertEquals("80", args(command).get("bytesRead"));
+
+        // The phases are nested in time
+        assertTrue(Long.parseLong((String)analysis.get("ts")) <= Long.parseLong((String)lint.get("ts")));
+        assertTrue(Long.parseLong((String)lint.get("ts")) <= Long.parseLong((String)command.get("ts")));
+        assertTrue(Long.parseLong((String)command.get("dur")) <= Long.parseLong((String)lint.get("dur")));
+    }
+
+    @Test
+    public void testSharedTimeline() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("trace.json");
+        AnsibleLintTrace trace1 = AnsibleLintTrace.open(file, "AnsibleSensor");
+        AnsibleSensorEvents.saveIssues(trace1).close();
+        trace1.write();
+        AnsibleLintTrace trace2 = AnsibleLintTrace.open(file, "AnsibleExtraSensor");
+        AnsibleSensorEvents.saveIssues(trace2).close();
+        trace2.write();
+
+        List<Map<String, Object>> events = read(file);
+        assertEquals(Arrays.asList("AnsibleSensor", "AnsibleExtraSensor"), events.stream()
+                .filter(event -> "process_name".equals(event.get("name")))
+                .map(event -> args(event).get("name"))
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("1", "2"), events.stream()
+                .filter(event -> "save issues".equals(event.get("name")))
+                .map(event -> event.get("pid"))
+                .collect(Collectors.toList()));
+
+        // A new analysis starts a new timeline
+        AnsibleLintTrace.clear();
+        AnsibleLintTrace trace3 = AnsibleLintTrace.open(file, "AnsibleSensor");
+        trace3.write();
+        assertEquals(1L, read(file).stream().filter(event -> "process_name".equals(event.get("name"))).count());
+    }
+
+    @Test
+    public void testAppendString() {
+        StringBuilder out = new StringBuilder();
+        AnsibleLintTrace.appendString(out, "a \"b\" c\\d\n\t\u0001");
+        assertEquals("\"a \\\"b\\\" c\\\\d\\n\\t\\u0001\"", out.toString());
+    }
+
+
+    private static List<Map<String, Object>> read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonStreamReader json = new JsonStreamReader(reader);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> trace = (Map<String, Object>)readValue(json);
+            assertEquals(JsonStreamReader.Token.END_DOCUMENT, json.peek());
+            assertEquals("ms", trace.get("displayTimeUnit"));
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> events = (List<Map<String, Object>>)trace.get("traceEvents");
+            return events;
+        }
+    }
+
+    private static Object readValue(JsonStreamReader json) throws IOException {
+        switch (json.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                json.beginObject();
+                while (json.hasNext()) {
+                    object.put(json.nextName(), readValue(json));
+                }
+                json.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                List<Object> array = new ArrayList<>();
+                json.beginArray();
+                while (json.hasNext()) {
+                    array.add(readValue(json));
+                }
+                json.endArray();
+                return array;
+            case STRING:
+            case NUMBER:
+                return json.nextString();
+            default:
+                json.skipValue();
+                return null;
+        }
+    }
+
+    private static Map<String, Object> find(List<Map<String, Object>> events, String name) {
+        return events.stream().filter(event -> name.equals(event.get("name"))).findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " event"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> args(Map<String, Object> event) {
+        return (Map<String, Object>)event.get("args");
+    }
+}
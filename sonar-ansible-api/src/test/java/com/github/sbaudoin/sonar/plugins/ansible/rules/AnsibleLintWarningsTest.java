@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class AnsibleLintWarningsTest {
+    private static final String SEPARATOR = System.getProperty("line.separator");
+    private static final Path BASE_DIR = Paths.get("project").toAbsolutePath();
+
+
+    @Test
+    public void testNormalize() {
+        assertEquals("", AnsibleLintWarnings.normalize(""));
+        assertEquals("", AnsibleLintWarnings.normalize(" \t "));
+        assertEquals("WARNING a b", AnsibleLintWarnings.normalize("  WARNING \t a    b  "));
+    }
+
+    @Test
+    public void testEmpty() {
+        AnsibleLintWarnings warnings = new AnsibleLintWarnings(BASE_DIR);
+        assertTrue(warnings.isEmpty());
+        assertNull(warnings.getSummary());
+
+        warnings.add(Arrays.asList("", "  "), Collections.singletonList(file("a.yml")));
+        assertTrue(warnings.isEmpty());
+        assertNull(warnings.getSummary());
+    }
+
+    @Test
+    public void testDuplicates() {
+        AnsibleLintWarnings warnings = new AnsibleLintWarnings(BASE_DIR);
+        warnings.add(Arrays.asList("WARNING deprecated", "WARNING  deprecated "), Arrays.asList(file("a.yml"), file("b.yml")));
+        warnings.add(Collections.singletonList("WARNING deprecated"), Collections.singletonList(file("c.yml")));
+
+        assertFalse(warnings.isEmpty());
+        assertEquals("Messages printed to error output during analysis:" + SEPARATOR +
+                "WARNING deprecated [3 time(s), file(s): a.yml, b.yml, c.yml]", warnings.getSummary());
+    }
+
+    @Test
+    public void testFilePaths() {
+        AnsibleLintWarnings warnings = new AnsibleLintWarnings(BASE_DIR);
+        // The paths of the linted files are replaced so that the messages can be deduplicated
+        warnings.add(Arrays.asList("Couldn't parse " + file("a.yml"), "Couldn't parse b.yml", "Other"), Arrays.asList(file("a.yml"), file("b.yml")));
+
+        assertEquals("Messages printed to error output during analysis:" + SEPARATOR +
+                "Couldn't parse <file> [2 time(s), file(s): a.yml, b.yml]" + SEPARATOR +
+                "Other [1 time(s), file(s): a.yml, b.yml]", warnings.getSummary());
+    }
+
+    @Test
+    public void testMaxFiles() {
+        AnsibleLintWarnings warnings = new AnsibleLintWarnings(BASE_DIR);
+        for (int i = 1; i <= AnsibleLintWarnings.MAX_FILES + 3; i++) {
+            warnings.add(Collections.singletonList("WARNING deprecated"), Collections.singletonList(file(i + ".yml")));
+        }
+
+        assertEquals("Messages printed to error output during analysis:" + SEPARATOR +
+                "WARNING deprecated [8 time(s), file(s): 1.yml, 2.yml, 3.yml, 4.yml, 5.yml and 3 more]", warnings.getSummary());
+    }
+
+    @Test
+    public void testMaxMessages() {
+        AnsibleLintWarnings warnings = new AnsibleLintWarnings(BASE_DIR);
+        for (int i = 0; i < AnsibleLintWarnings.MAX_MESSAGES + 2; i++) {
+            warnings.add(Collections.singletonList("Message " + i), Collections.singletonList(file("a.yml")));
+        }
+
+        String summary = warnings.getSummary();
+        assertTrue(summary.contains("Message " + (AnsibleLintWarnings.MAX_MESSAGES - 1) + " ["));
+        assertFalse(summary.contains("Message " + AnsibleLintWarnings.MAX_MESSAGES + " ["));
+        assertTrue(summary.endsWith(SEPARATOR + "... and 2 other line(s)"));
+    }
+
+
+    private static Path file(String name) {
+        return BASE_DIR.resolve(name);
+    }
+}
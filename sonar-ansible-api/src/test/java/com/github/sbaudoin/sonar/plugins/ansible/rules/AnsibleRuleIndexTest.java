@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnsibleRuleIndexTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path dir = copy("rule1.json", "rule1.html", "rule2.json");
+
+        // rule2 has no description and is not indexed
+        assertEquals(1, AnsibleRuleIndex.write(dir));
+
+        List<AnsibleRuleIndex.Rule> rules;
+        try (InputStream in = Files.newInputStream(dir.resolve(AnsibleRuleIndex.FILE_NAME))) {
+            rules = AnsibleRuleIndex.read(in);
+        }
+        assertEquals(1, rules.size());
+        AnsibleRuleIndex.Rule rule = rules.get(0);
+        assertEquals("rule1", rule.getKey());
+        assertEquals("Any rule", rule.getTitle());
+        assertEquals("CODE_SMELL", rule.getType());
+        assertEquals("ready", rule.getStatus());
+        assertEquals("Minor", rule.getSeverity());
+        assertEquals(Arrays.asList("ansible", "formatting", "convention"), rule.getTags());
+        assertEquals("Constant/Issue", rule.getRemediationFunction());
+        assertEquals("2min", rule.getConstantCost());
+        assertEquals("", rule.getLinearFactor());
+        assertEquals("", rule.getLinearOffset());
+        assertEquals("", rule.getGapDescription());
+    }
+
+    @Test
+    public void testWriteLinearRemediation() throws IOException {
+        Path dir = temporaryFolder.newFolder().toPath();
+        Files.write(dir.resolve("rule.json"), ("{\"title\": \"A\\ttabbed\\\\rule\", \"type\": \"BUG\", \"status\": \"beta\", \"defaultSeverity\": \"Major\", " +
+                "\"tags\": [], \"remediation\": {\"func\": \"Linear with offset\", \"linearFactor\": \"1mn\", \"linearOffset\": \"5min\", " +
+                "\"linearDesc\": \"Per line\\nof code\"}}").getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("rule.html"), Collections.singletonList("<p>Rule</p>"));
+
+        assertEquals(1, AnsibleRuleIndex.write(dir));
+
+        List<AnsibleRuleIndex.Rule> rules;
+        try (InputStream in = Files.newInputStream(dir.resolve(AnsibleRuleIndex.FILE_NAME))) {
+            rules = AnsibleRuleIndex.read(in);
+        }
+        AnsibleRuleIndex.Rule rule = rules.get(0);
+        assertEquals("A\ttabbed\\rule", rule.getTitle());
+        assertEquals(Collections.emptyList(), rule.getTags());
+        assertEquals("Linear with offset", rule.getRemediationFunction());
+        assertEquals("1mn", rule.getLinearFactor());
+        assertEquals("5min", rule.getLinearOffset());
+        assertEquals("Per line\nof code", rule.getGapDescription());
+    }
+
+    @Test
+    public void testWriteUnsupportedField() throws IOException {
+        Path dir = copy("rule1.json", "rule1.html");
+        Files.write(dir.resolve(AnsibleRuleIndex.FILE_NAME), Collections.singletonList(AnsibleRuleIndex.HEADER));
+        Files.write(dir.resolve("rule3.json"), "{\"title\": \"Rule\", \"securityStandards\": {}}".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("rule3.html"), Collections.singletonList("<p>Rule</p>"));
+
+        // No index, not even a previous one, so that the rule files are read
+        assertEquals(-1, AnsibleRuleIndex.write(dir));
+        assertFalse(Files.exists(dir.resolve(AnsibleRuleIndex.FILE_NAME)));
+    }
+
+    @Test
+    public void testMain() throws IOException {
+        Path dir = copy("rule1.json", "rule1.html");
+        AnsibleRuleIndex.main(new String[] { dir.toString(), dir.resolve("missing").toString() });
+        assertTrue(Files.exists(dir.resolve(AnsibleRuleIndex.FILE_NAME)));
+        assertFalse(Files.exists(dir.resolve("missing")));
+    }
+
+    @Test
+    public void testReadInvalidIndex() throws IOException {
+        try {
+            read("# Other format\n");
+            fail("Invalid header should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("unsupported rule index format", e.getMessage());
+        }
+        try {
+            read(AnsibleRuleIndex.HEADER + "\nrule1\tAny rule\n");
+            fail("Invalid line should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid rule index line: rule1\tAny rule", e.getMessage());
+        }
+        assertTrue(read(AnsibleRuleIndex.HEADER + "\n\n").isEmpty());
+    }
+
+    @Test
+    public void testEscape() {
+        String value = "a\tb\nc\rd\\e";
+        StringBuilder escaped = new StringBuilder();
+        AnsibleRuleIndex.escape(value, escaped);
+        assertEquals("a\\tb\\nc\\rd\\\\e", escaped.toString());
+        assertEquals(value, AnsibleRuleIndex.unescape(escaped.toString()));
+        assertEquals("plain", AnsibleRuleIndex.unescape("plain"));
+        assertEquals("trailing\\", AnsibleRuleIndex.unescape("trailing\\"));
+    }
+
+
+    private Path copy(String... files) throws IOException {
+        Path dir = temporaryFolder.newFolder().toPath();
+        for (String file : files) {
+            Files.copy(new File(getClass().getResource("/my-rules/" + file).getFile()).toPath(), dir.resolve(file));
+        }
+        return dir;
+    }
+
+    private static List<AnsibleRuleIndex.Rule> read(String index) throws IOException {
+        return AnsibleRuleIndex.read(new ByteArrayInputStream(index.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnsibleSensorEventsTest {
+    private static final String PREFIX = "com.github.sbaudoin.sonar.ansible.";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    @Test
+    public void testNotRecorded() {
+        try (AnsibleSensorEvents.Phase phase = AnsibleSensorEvents.command(null, Arrays.asList("ansible-lint", "--version"))) {
+            assertFalse(phase.isEnabled());
+            // The attributes are not computed
+            phase.addLine("ansible-lint 4.2.0");
+            assertEquals(0L, phase.getBytesRead());
+            assertNull(phase.getCommand());
+        }
+    }
+
+    @Test
+    public void testRecorded() throws IOException {
+        Path file = temporaryFolder.newFile("events.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable(PREFIX + "Command").withThreshold(Duration.ZERO);
+            recording.enable(PREFIX + "Lint").withThreshold(Duration.ZERO);
+            recording.enable(PREFIX + "SaveIssues").withThreshold(Duration.ZERO);
+            recording.disable(PREFIX + "VersionProbe");
+            recording.start();
+
+            try (AnsibleSensorEvents.Phase lint = AnsibleSensorEvents.lint(null, Arrays.asList("playbook.yml", "site.yml", "roles/common"))) {
+                assertTrue(lint.isEnabled());
+                try (AnsibleSensorEvents.Phase command = AnsibleSensorEvents.command(null, Arrays.asList("ansible-lint", "playbook.yml"))) {
+                    assertTrue(command.isEnabled());
+                    // 1 byte per ASCII character, 2 for an accented letter, 3 for the euro sign, 4 for an emoji, and the line breaks
+                    command.addLine("abc");
+                    command.addLine("\u00e9\u20ac\ud83d\ude00");
+                    command.exitCode(2);
+                    assertEquals(4L + 10L, command.getBytesRead());
+                }
+                lint.addLine("abc");
+                lint.addParseTime(1000);
+                lint.exitCode(2).issues(5);
+            }
+            try (AnsibleSensorEvents.Phase saveIssues = AnsibleSensorEvents.saveIssues(null)) {
+                saveIssues.addRuleKeyLookupTime(2000);
+                saveIssues.files(3).issues(5);
+            }
+            // Disabled in the recording
+            try (AnsibleSensorEvents.Phase versionProbe = AnsibleSensorEvents.versionProbe(null)) {
+                assertFalse(versionProbe.isEnabled());
+            }
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(3, events.size());
+        RecordedEvent command = find(events, "Command");
+        assertEquals("ansible-lint playbook.yml", command.getString("command"));
+        assertEquals(2, command.getInt("exitCode"));
+        assertEquals(14L, command.getLong("bytesRead"));
+        RecordedEvent lint = find(events, "Lint");
+        assertEquals("playbook.yml", lint.getString("file"));
+        assertEquals(3, lint.getInt("batchSize"));
+        assertEquals(2, lint.getInt("exitCode"));
+        assertEquals(4L, lint.getLong("bytesRead"));
+        assertEquals(5, lint.getInt("issueCount"));
+        assertEquals(Duration.ofNanos(1000), lint.getDuration("parseTime"));
+        RecordedEvent saveIssues = find(events, "SaveIssues");
+        assertEquals(3, saveIssues.getInt("fileCount"));
+        assertEquals(5, saveIssues.getInt("issueCount"));
+        assertEquals(Duration.ofNanos(2000), saveIssues.getDuration("ruleKeyLookupTime"));
+    }
+
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(PREFIX + name)).findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " event"));
+    }
+}
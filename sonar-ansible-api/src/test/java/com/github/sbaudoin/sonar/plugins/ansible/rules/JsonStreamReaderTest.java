@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.rules.JsonStreamReader.Token;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class JsonStreamReaderTest {
+    @Test
+    public void testRead() throws IOException {
+        JsonStreamReader reader = new JsonStreamReader(new StringReader("WARNING: noise\n{\"a\": [1, -2.5e1, \"x\\ty\\/\"], \"b\": {\"c\": true, \"d\": null}, \"e\": false} trailing"));
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(Token.NUMBER, reader.peek());
+        assertEquals(1, reader.nextInt());
+        assertEquals(-25, reader.nextInt());
+        assertEquals("x\ty/", reader.nextString());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("b", reader.nextName());
+        reader.skipValue();
+        assertEquals("e", reader.nextName());
+        assertEquals(Token.BOOLEAN, reader.peek());
+        reader.skipValue();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void testLongDocument() throws IOException {
+        // Values spanning several buffers
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            json.append((i == 0) ? "" : ",").append("\"value").append(i).append('"');
+        }
+        JsonStreamReader reader = new JsonStreamReader(new StringReader(json.append(']').toString()));
+        reader.beginArray();
+        int count = 0;
+        while (reader.hasNext()) {
+            assertEquals("value" + count++, reader.nextString());
+        }
+        reader.endArray();
+        assertEquals(10000, count);
+    }
+
+    @Test
+    public void testMalformed() {
+        for (String json : new String[] { "[1 2]", "{\"a\" 1}", "{1: 2}", "[tru]", "[\"a", "[{]" }) {
+            try {
+                JsonStreamReader reader = new JsonStreamReader(new StringReader(json));
+                reader.skipValue();
+                fail("Malformed JSON not detected: " + json);
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Malformed JSON at offset"));
+            }
+        }
+    }
+}
@@ -24,9 +24,32 @@ public class AnsibleSettingsTest extends TestCase {
     public void testGetProperties() {
         List<PropertyDefinition> defs = AnsibleSettings.getProperties();
 
-        assertEquals(3, defs.size());
+        assertEquals(19, defs.size());
         assertEquals(AnsibleSettings.ANSIBLE_LINT_PATH_KEY, defs.get(0).key());
         assertEquals(AnsibleSettings.ANSIBLE_LINT_PATH_DEFAULT_VALUE, defs.get(0).defaultValue());
         assertEquals(AnsibleSettings.ANSIBLE_LINT_DISABLE_WARNINGS_DEFAULT_VALUE, defs.get(2).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_PARALLELISM_KEY, defs.get(3).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_PARALLELISM_DEFAULT_VALUE, defs.get(3).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_BATCH_SIZE_KEY, defs.get(4).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_BATCH_SIZE_DEFAULT_VALUE, defs.get(4).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_DAEMON_KEY, defs.get(5).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_DAEMON_DEFAULT_VALUE, defs.get(5).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_PYTHON_PATH_KEY, defs.get(6).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_CACHE_KEY, defs.get(7).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_CACHE_DEFAULT_VALUE, defs.get(7).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_CACHE_PATH_KEY, defs.get(8).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_KEY, defs.get(9).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_DEFAULT_VALUE, defs.get(9).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_INCREMENTAL_REFERENCE_KEY, defs.get(10).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_ROLE_AWARE_KEY, defs.get(11).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_ROLE_AWARE_DEFAULT_VALUE, defs.get(11).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_ENTRY_POINTS_KEY, defs.get(12).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_ENTRY_POINTS_DEFAULT_VALUE, defs.get(12).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_OUTPUT_FORMAT_KEY, defs.get(13).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_OUTPUT_FORMAT_DEFAULT_VALUE, defs.get(13).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_TIMEOUT_KEY, defs.get(14).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_TIMEOUT_DEFAULT_VALUE, defs.get(14).defaultValue());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_MEMORY_LIMIT_KEY, defs.get(15).key());
+        assertEquals(AnsibleSettings.ANSIBLE_LINT_MEMORY_LIMIT_DEFAULT_VALUE, defs.get(15).defaultValue());
     }
 }
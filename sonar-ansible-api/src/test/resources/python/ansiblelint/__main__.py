@@ -0,0 +1,12 @@
+import os
+import sys
+
+
+def main():
+    for arg in sys.argv[1:]:
+        if arg == 'crash':
+            os._exit(3)
+        if arg.endswith('.yml'):
+            print('%s:2: [EANSIBLE1] An error on %s' % (arg, os.path.basename(arg)))
+    print('WARNING this is a test', file=sys.stderr)
+    return 2
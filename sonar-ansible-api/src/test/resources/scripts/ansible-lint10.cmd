@@ -0,0 +1,2 @@
+@echo %* | find "playbook2" >nul && (echo Traceback ^(most recent call last^):>&2& echo ruamel.yaml.parser.ParserError: while parsing a block mapping>&2& exit /b 1)
+@for %%a in (%*) do @if "%%~xa"==".yml" @echo %%a:2: [EANSIBLE1] An error on %%~nxa
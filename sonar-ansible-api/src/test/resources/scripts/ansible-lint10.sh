@@ -0,0 +1,15 @@
+#!/bin/sh
+
+# Crashes if playbook2.yml is linted, otherwise reports an issue for every file passed
+case "$*" in
+    *playbook2*)
+        echo "Traceback (most recent call last):" >&2
+        echo "ruamel.yaml.parser.ParserError: while parsing a block mapping" >&2
+        exit 1
+        ;;
+esac
+for arg in "$@"; do
+    case $arg in
+        *.yml) echo "$arg:2: [EANSIBLE1] An error on $(basename $arg)";;
+    esac
+done
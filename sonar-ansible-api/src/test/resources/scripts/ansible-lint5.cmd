@@ -0,0 +1 @@
+@for %%a in (%*) do @if "%%~xa"==".yml" @echo %%a:2: [EANSIBLE1] An error on %%~nxa
@@ -0,0 +1,7 @@
+#!/bin/sh
+
+for arg in "$@"; do
+    case $arg in
+        *.yml) echo "$arg:2: [EANSIBLE1] An error on $(basename $arg)";;
+    esac
+done
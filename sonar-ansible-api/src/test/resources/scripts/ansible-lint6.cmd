@@ -0,0 +1,11 @@
+@echo off
+set skip=
+for %%a in (%*) do call :lint %%a
+goto :eof
+
+:lint
+if defined skip (set skip=& goto :eof)
+if "%~1"=="--exclude" (set skip=1& goto :eof)
+if "%~x1"==".yml" (echo %~1:2: [EANSIBLE1] An error on %~nx1& goto :eof)
+if exist "%~1\" for /r "%~1" %%f in (*.yml) do echo %%f:2: [EANSIBLE1] An error on %%~nxf
+goto :eof
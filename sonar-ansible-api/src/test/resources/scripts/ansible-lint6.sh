@@ -0,0 +1,20 @@
+#!/bin/sh
+
+# Reports an issue for every file passed, or found in the directories passed, except the excluded ones
+exclude=false
+for arg in "$@"; do
+    if [ "$exclude" = true ]; then
+        exclude=false
+        continue
+    fi
+    case $arg in
+        --exclude) exclude=true;;
+        -*) ;;
+        *.yml) echo "$arg:2: [EANSIBLE1] An error on $(basename $arg)";;
+        *) if [ -d "$arg" ]; then
+               for file in $(find "$arg" -name "*.yml" | sort); do
+                   echo "$file:2: [EANSIBLE1] An error on $(basename $file)"
+               done
+           fi;;
+    esac
+done
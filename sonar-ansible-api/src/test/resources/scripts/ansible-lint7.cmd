@@ -0,0 +1,2 @@
+@if "%1"=="--version" (echo ansible-lint 6.14.3 using ansible 2.14.4& exit /b 0)
+@echo playbooks/playbook1.yml:2: [EANSIBLE1] %*
@@ -0,0 +1,8 @@
+@if "%1"=="--version" (echo ansible-lint 6.14.3 using ansible 2.14.4& exit /b 0)
+@if "%1 %2"=="-f codeclimate" (
+@echo [{"type": "issue", "check_name": "ANSIBLE1", "categories": ["idiom"], "severity": "major",
+@echo  "description": "Module \"module1\" is deprecated", "fingerprint": "0123456789abcdef",
+@echo  "location": {"path": "playbooks/playbook1.yml", "positions": {"begin": {"line": 4, "column": 7}}}}]
+@exit /b 2
+)
+@echo playbooks/playbook1.yml:2: [EANSIBLE1] %*
@@ -0,0 +1,13 @@
+#!/bin/sh
+
+if [ "$1" = "--version" ]; then
+    echo "ansible-lint 6.14.3 using ansible 2.14.4"
+    exit 0
+fi
+if [ "$1 $2" = "-f codeclimate" ]; then
+    echo '[{"type": "issue", "check_name": "ANSIBLE1", "categories": ["idiom"], "severity": "major",'
+    echo ' "description": "Module \"module1\" is deprecated", "fingerprint": "0123456789abcdef",'
+    echo ' "location": {"path": "playbooks/playbook1.yml", "positions": {"begin": {"line": 4, "column": 7}}}}]'
+    exit 2
+fi
+echo playbooks/playbook1.yml:2: [EANSIBLE1] $@
@@ -0,0 +1,12 @@
+#!/bin/sh
+
+if [ "$1" = "--version" ]; then
+    echo "ansible-lint 6.14.3 using ansible 2.14.4"
+    exit 0
+fi
+case "$*" in
+    *playbook2*)
+        sleep 30
+        ;;
+esac
+echo playbooks/playbook1.yml:2: [EANSIBLE1] $@
@@ -0,0 +1,3 @@
+#!/bin/sh
+
+PYTHONPATH=$(dirname $0)/../python exec python3 "$@"
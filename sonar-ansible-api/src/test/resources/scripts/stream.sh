@@ -0,0 +1,14 @@
+#!/bin/sh
+
+# Prints a line, then waits for the file passed as argument to be created before printing another line
+echo first
+i=0
+while [ ! -f "$1" ] && [ $i -lt 100 ]; do
+    sleep 0.1
+    i=$((i+1))
+done
+if [ -f "$1" ]; then
+    echo second
+else
+    echo timeout
+fi
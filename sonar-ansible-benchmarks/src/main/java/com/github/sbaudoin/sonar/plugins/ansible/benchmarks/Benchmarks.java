@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Entry point of the benchmark JAR. It accepts the usual JMH command line options and, unless another result format
+ * or file is passed, writes the results in JSON to {@code jmh-result-<version>.json} so that the results of different
+ * versions of the plugin can be compared.
+ */
+public final class Benchmarks {
+    private Benchmarks() {
+    }
+
+
+    /**
+     * Runs the benchmarks
+     *
+     * @param args the JMH command line options, e.g. a regular expression selecting the benchmarks to be run
+     * @throws CommandLineOptionException if the options are invalid
+     * @throws RunnerException if the benchmarks could not be run
+     * @throws IOException if the list of the benchmarks could not be read
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams() ||
+                commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            // Let the JMH launcher handle the informational options
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result-" + getVersion() + ".json");
+        }
+        new Runner(options.build()).run();
+    }
+
+    private static String getVersion() {
+        String version = Benchmarks.class.getPackage().getImplementationVersion();
+        return (version == null) ? "dev" : version;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Writer of a stub of {@code ansible-lint} (a POSIX shell script) with a configurable latency and output volume. The
+ * stub prints the issues in the format of {@code ansible-lint} 4.
+ */
+public final class StubAnsibleLint {
+    /**
+     * Ids of the rules reported by the stub, without their heading E
+     */
+    public static final String[] RULES = { "301", "303", "305", "306", "401", "403", "502", "503", "601", "701" };
+
+    private static final String TEMPLATE = "stub-ansible-lint.sh";
+
+    private final long latency;
+    private final long fileLatency;
+    private final int issuesPerFile;
+    private final int warningsPerFile;
+
+
+    /**
+     * Constructor
+     *
+     * @param latency the time waited by every execution, in milliseconds
+     * @param fileLatency the time waited for every linted file, in milliseconds
+     * @param issuesPerFile the number of issues reported for every linted file
+     * @param warningsPerFile the number of lines printed to the error output for every linted file
+     */
+    public StubAnsibleLint(long latency, long fileLatency, int issuesPerFile, int warningsPerFile) {
+        this.latency = latency;
+        this.fileLatency = fileLatency;
+        this.issuesPerFile = issuesPerFile;
+        this.warningsPerFile = warningsPerFile;
+    }
+
+
+    /**
+     * Writes the stub
+     *
+     * @param file the path of the script
+     * @throws IOException if the script cannot be written or made executable
+     */
+    public void write(Path file) throws IOException {
+        String script = readTemplate()
+                .replace("@LATENCY@", toSeconds(latency))
+                .replace("@FILE_LATENCY@", toSeconds(fileLatency))
+                .replace("@ISSUES@", String.valueOf(issuesPerFile))
+                .replace("@WARNINGS@", String.valueOf(warningsPerFile))
+                .replace("@RULES@", String.join(" ", RULES));
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        if (!file.toFile().setExecutable(true)) {
+            throw new IOException("Cannot make " + file + " executable");
+        }
+    }
+
+
+    private static String toSeconds(long millis) {
+        return (millis <= 0) ? "0" : String.format(Locale.ROOT, "%d.%03d", millis / 1000, millis % 1000);
+    }
+
+    private static String readTemplate() throws IOException {
+        try (InputStream in = StubAnsibleLint.class.getResourceAsStream(TEMPLATE)) {
+            if (in == null) {
+                throw new IOException("Resource " + TEMPLATE + " not found");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generator of a synthetic Ansible project: playbooks that use roles and include shared task files, and roles made of
+ * several task files included from their {@code main.yml}. The project is the same for the same parameters, so that
+ * the runs of different versions of the plugin can be compared.
+ */
+public final class SyntheticProject {
+    private final int playbooks;
+    private final int roles;
+    private final int roleTaskFiles;
+    private final int includes;
+    private final int tasksPerFile;
+
+
+    /**
+     * Constructor
+     *
+     * @param playbooks the number of playbooks
+     * @param roles the number of roles, each playbook uses two of them
+     * @param roleTaskFiles the number of task files per role, including {@code main.yml}
+     * @param includes the number of shared task files, each playbook includes two of them
+     * @param tasksPerFile the number of tasks (two lines each) of every file
+     */
+    public SyntheticProject(int playbooks, int roles, int roleTaskFiles, int includes, int tasksPerFile) {
+        this.playbooks = playbooks;
+        this.roles = roles;
+        this.roleTaskFiles = Math.max(1, roleTaskFiles);
+        this.includes = includes;
+        this.tasksPerFile = tasksPerFile;
+    }
+
+
+    /**
+     * Writes the files of the project
+     *
+     * @param baseDir the project directory
+     * @return the paths of the files, relative to the project directory
+     * @throws IOException if a file cannot be written
+     */
+    public List<String> generate(Path baseDir) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < includes; i++) {
+            paths.add(write(baseDir, "includes/include-" + i + ".yml", tasks("---\n", "")));
+        }
+        for (int i = 0; i < roles; i++) {
+            StringBuilder main = new StringBuilder("---\n");
+            for (int j = 1; j < roleTaskFiles; j++) {
+                main.append("- name: Include task file ").append(j).append('\n');
+                main.append("  include_tasks: task-").append(j).append(".yml\n");
+                paths.add(write(baseDir, "roles/role-" + i + "/tasks/task-" + j + ".yml", tasks("---\n", "")));
+            }
+            paths.add(write(baseDir, "roles/role-" + i + "/tasks/main.yml", tasks(main.toString(), "")));
+        }
+        for (int i = 0; i < playbooks; i++) {
+            StringBuilder playbook = new StringBuilder("---\n");
+            playbook.append("- name: Playbook ").append(i).append('\n');
+            playbook.append("  hosts: all\n");
+            if (roles > 0) {
+                playbook.append("  roles:\n");
+                playbook.append("    - role-").append(i % roles).append('\n');
+                playbook.append("    - role-").append((i * 7 + 3) % roles).append('\n');
+            }
+            playbook.append("  tasks:\n");
+            if (includes > 0) {
+                for (int include : new int[] { i % includes, (i * 3 + 1) % includes }) {
+                    playbook.append("    - name: Include ").append(include).append('\n');
+                    playbook.append("      include_tasks: ../includes/include-").append(include).append(".yml\n");
+                }
+            }
+            paths.add(write(baseDir, "playbooks/playbook-" + i + ".yml", tasks(playbook.toString(), "    ")));
+        }
+        return paths;
+    }
+
+
+    private String tasks(String header, String indent) {
+        StringBuilder content = new StringBuilder(header);
+        for (int i = 1; i <= tasksPerFile; i++) {
+            content.append(indent).append("- name: Task ").append(i).append('\n');
+            content.append(indent).append("  command: echo ").append(i).append('\n');
+        }
+        return content.toString();
+    }
+
+    private static String write(Path baseDir, String path, String content) throws IOException {
+        Path file = baseDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.benchmarks;
+
+import com.github.sbaudoin.sonar.plugins.ansible.checks.AnsibleCheckRepository;
+import com.github.sbaudoin.sonar.plugins.ansible.rules.AnsibleSensor;
+import com.github.sbaudoin.sonar.plugins.ansible.settings.AnsibleSettings;
+import com.github.sbaudoin.sonar.plugins.yaml.languages.YamlLanguage;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end throughput benchmark of the Ansible sensor: a synthetic project is generated and analyzed several times by
+ * {@link AnsibleSensor}, through a {@link SensorContextTester}, with a stub of {@code ansible-lint}. For every run, it
+ * reports the number of files analyzed per second, the median and 99th percentile of the per-file latency (the
+ * duration of the {@code ansible-lint} execution that linted the file) and the peak heap usage.
+ * <p>
+ * Usage: {@code ThroughputBenchmark [--option value]... [-Dproperty=value]...}, see {@link #usage()}. The stub is a
+ * shell script: the benchmark only runs on Unix systems.
+ */
+public final class ThroughputBenchmark {
+    private static final String MODULE_KEY = "synthetic";
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    static {
+        DEFAULTS.put("playbooks", "200");
+        DEFAULTS.put("roles", "50");
+        DEFAULTS.put("role-task-files", "4");
+        DEFAULTS.put("includes", "20");
+        DEFAULTS.put("issues", "5");
+        DEFAULTS.put("warnings", "0");
+        DEFAULTS.put("latency", "200");
+        DEFAULTS.put("file-latency", "10");
+        DEFAULTS.put("warmups", "1");
+        DEFAULTS.put("runs", "3");
+        DEFAULTS.put("dir", "");
+        DEFAULTS.put("output", "");
+    }
+
+    private final Map<String, String> options;
+    private final Map<String, String> properties;
+
+
+    private ThroughputBenchmark(Map<String, String> options, Map<String, String> properties) {
+        this.options = options;
+        this.properties = properties;
+    }
+
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args the options of the benchmark and the properties of the analysis
+     * @throws IOException if the project cannot be generated or the report cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("-D") && arg.indexOf('=') > 2) {
+                properties.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else if (arg.startsWith("--") && options.containsKey(arg.substring(2)) && i + 1 < args.length) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                System.err.println(usage());
+                System.exit("--help".equals(arg) ? 0 : 1);
+                return;
+            }
+        }
+        new ThroughputBenchmark(options, properties).run();
+    }
+
+    /**
+     * Returns the usage of the benchmark
+     *
+     * @return the usage text
+     */
+    static String usage() {
+        String separator = System.getProperty("line.separator");
+        StringBuilder usage = new StringBuilder("Usage: ThroughputBenchmark [--option value]... [-Dproperty=value]...");
+        usage.append(separator).append("Options (default value):");
+        usage.append(separator).append("  --playbooks        number of playbooks (").append(DEFAULTS.get("playbooks")).append(')');
+        usage.append(separator).append("  --roles            number of roles, each playbook uses two of them (").append(DEFAULTS.get("roles")).append(')');
+        usage.append(separator).append("  --role-task-files  number of task files per role (").append(DEFAULTS.get("role-task-files")).append(')');
+        usage.append(separator).append("  --includes         number of shared task files, each playbook includes two of them (").append(DEFAULTS.get("includes")).append(')');
+        usage.append(separator).append("  --issues           issues reported per file (").append(DEFAULTS.get("issues")).append(')');
+        usage.append(separator).append("  --warnings         error output lines printed per file (").append(DEFAULTS.get("warnings")).append(')');
+        usage.append(separator).append("  --latency          time waited by every ansible-lint execution, in ms (").append(DEFAULTS.get("latency")).append(')');
+        usage.append(separator).append("  --file-latency     time waited for every linted file, in ms (").append(DEFAULTS.get("file-latency")).append(')');
+        usage.append(separator).append("  --warmups          runs not reported (").append(DEFAULTS.get("warmups")).append(')');
+        usage.append(separator).append("  --runs             runs reported (").append(DEFAULTS.get("runs")).append(')');
+        usage.append(separator).append("  --dir              directory of the generated project (temporary directory)");
+        usage.append(separator).append("  --output           JSON file the results are written to (none)");
+        usage.append(separator).append("The -D options set properties of the analysis, e.g. -D").append(AnsibleSettings.ANSIBLE_LINT_PARALLELISM_KEY).append("=8");
+        return usage.toString();
+    }
+
+
+    private void run() throws IOException {
+        boolean temporary = options.get("dir").isEmpty();
+        Path dir = temporary ? Files.createTempDirectory("sonar-ansible-benchmark") : Paths.get(options.get("dir")).toAbsolutePath();
+        try {
+            Path baseDir = dir.resolve("project");
+            Path workDir = Files.createDirectories(dir.resolve("work"));
+            int issues = getInt("issues");
+            List<String> paths = new SyntheticProject(getInt("playbooks"), getInt("roles"), getInt("role-task-files"), getInt("includes"), Math.max(10, issues))
+                    .generate(baseDir);
+            Path stub = dir.resolve("ansible-lint");
+            new StubAnsibleLint(getInt("latency"), getInt("file-latency"), issues, getInt("warnings")).write(stub);
+            System.out.println("Synthetic project: " + paths.size() + " file(s) in " + baseDir);
+
+            List<InputFile> inputFiles = new ArrayList<>(paths.size());
+            for (String path : paths) {
+                inputFiles.add(TestInputFileBuilder.create(MODULE_KEY, path)
+                        .setModuleBaseDir(baseDir)
+                        .setContents(new String(Files.readAllBytes(baseDir.resolve(path)), StandardCharsets.UTF_8))
+                        .setLanguage(YamlLanguage.KEY)
+                        .setType(InputFile.Type.MAIN)
+                        .setCharset(StandardCharsets.UTF_8)
+                        .build());
+            }
+
+            List<RunResult> results = new ArrayList<>();
+            int warmups = getInt("warmups");
+            int runs = getInt("runs");
+            for (int i = 0; i < warmups + runs; i++) {
+                RunResult result = analyze(baseDir, workDir, stub, inputFiles);
+                boolean warmup = i < warmups;
+                System.out.println((warmup ? "Warm-up " + (i + 1) : "Run " + (i - warmups + 1)) + ": " + result);
+                if (!warmup) {
+                    results.add(result);
+                }
+            }
+            if (!options.get("output").isEmpty()) {
+                writeReport(Paths.get(options.get("output")), paths.size(), results);
+            }
+        } finally {
+            if (temporary) {
+                delete(dir);
+            }
+        }
+    }
+
+    /**
+     * Analyzes the project once
+     */
+    private RunResult analyze(Path baseDir, Path workDir, Path stub, List<InputFile> inputFiles) {
+        SensorContextTester context = SensorContextTester.create(baseDir);
+        DefaultFileSystem fileSystem = new DefaultFileSystem(baseDir);
+        fileSystem.setWorkDir(workDir);
+        inputFiles.forEach(fileSystem::add);
+        context.setFileSystem(fileSystem);
+        ActiveRulesBuilder activeRules = new ActiveRulesBuilder();
+        for (String rule : StubAnsibleLint.RULES) {
+            activeRules.create(AnsibleCheckRepository.getRuleKey("E" + rule)).activate();
+        }
+        context.setActiveRules(activeRules.build());
+        context.settings().setProperty(AnsibleSettings.ANSIBLE_LINT_PATH_KEY, stub.toString());
+        properties.forEach(context.settings()::setProperty);
+        TimedAnsibleSensor sensor = new TimedAnsibleSensor(fileSystem, stub.toString());
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long start = System.nanoTime();
+        sensor.execute(context);
+        long duration = System.nanoTime() - start;
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        // Latency of every file: the duration of the execution that linted it or its role
+        List<Long> latencies = new ArrayList<>();
+        for (InputFile inputFile : inputFiles) {
+            for (File file = new File(inputFile.uri()).getAbsoluteFile(); file != null; file = file.getParentFile()) {
+                Long latency = sensor.latencies.get(file.getPath());
+                if (latency != null) {
+                    latencies.add(latency);
+                    break;
+                }
+            }
+        }
+        Collections.sort(latencies);
+        return new RunResult(inputFiles.size(), context.allIssues().size(), sensor.executions.get(), duration,
+                percentile(latencies, 50), percentile(latencies, 99), peakHeap);
+    }
+
+    private int getInt(String option) {
+        try {
+            return Integer.parseInt(options.get(option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for --" + option + ": " + options.get(option), e);
+        }
+    }
+
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        if (sortedValues.isEmpty()) {
+            return 0;
+        }
+        int index = (int)Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, index));
+    }
+
+    private void writeReport(Path output, int files, List<RunResult> results) throws IOException {
+        StringBuilder json = new StringBuilder("{\n  \"parameters\": {");
+        String separator = "\n";
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (!"dir".equals(option.getKey()) && !"output".equals(option.getKey())) {
+                json.append(separator).append("    ").append(quote(option.getKey())).append(": ").append(option.getValue());
+                separator = ",\n";
+            }
+        }
+        json.append("\n  },\n  \"properties\": {");
+        separator = "\n";
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            json.append(separator).append("    ").append(quote(property.getKey())).append(": ").append(quote(property.getValue()));
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"files\": ").append(files).append(",\n  \"runs\": [");
+        separator = "\n";
+        for (RunResult result : results) {
+            json.append(separator).append("    ").append(result.toJson());
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        Files.write(output, json.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println("Results written to " + output.toAbsolutePath());
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+
+    /**
+     * Sensor that records the duration of every {@code ansible-lint} execution for each of its arguments
+     */
+    private static final class TimedAnsibleSensor extends AnsibleSensor {
+        private final String ansibleLintPath;
+        private final Map<String, Long> latencies = new ConcurrentHashMap<>();
+        private final AtomicInteger executions = new AtomicInteger();
+
+
+        TimedAnsibleSensor(DefaultFileSystem fileSystem, String ansibleLintPath) {
+            super(fileSystem);
+            this.ansibleLintPath = ansibleLintPath;
+        }
+
+
+        @Override
+        protected int streamCommand(List<String> command, Consumer<String> stdOut, Consumer<String> errOut) throws InterruptedException, IOException {
+            // Other commands (version probes, Git) are not measured
+            if (!ansibleLintPath.equals(command.get(0)) || command.contains("--version")) {
+                return super.streamCommand(command, stdOut, errOut);
+            }
+            long start = System.nanoTime();
+            try {
+                return super.streamCommand(command, stdOut, errOut);
+            } finally {
+                long duration = System.nanoTime() - start;
+                executions.incrementAndGet();
+                // A file linted again after a crash keeps the duration of its last execution
+                command.subList(1, command.size()).forEach(arg -> latencies.put(arg, duration));
+            }
+        }
+    }
+
+    /**
+     * Measures of a run
+     */
+    private static final class RunResult {
+        private final int files;
+        private final int issues;
+        private final int executions;
+        private final long duration;
+        private final long p50Latency;
+        private final long p99Latency;
+        private final long peakHeap;
+
+
+        RunResult(int files, int issues, int executions, long duration, long p50Latency, long p99Latency, long peakHeap) {
+            this.files = files;
+            this.issues = issues;
+            this.executions = executions;
+            this.duration = duration;
+            this.p50Latency = p50Latency;
+            this.p99Latency = p99Latency;
+            this.peakHeap = peakHeap;
+        }
+
+
+        double getFilesPerSecond() {
+            return (duration == 0) ? 0 : files * 1e9 / duration;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"durationMs\": %d, \"filesPerSecond\": %.2f, \"p50LatencyMs\": %.3f, \"p99LatencyMs\": %.3f, \"peakHeapBytes\": %d, \"issues\": %d, \"executions\": %d}",
+                    duration / 1_000_000, getFilesPerSecond(), p50Latency / 1e6, p99Latency / 1e6, peakHeap, issues, executions);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d file(s) in %d ms, %.1f file(s)/s, per-file latency p50 %.1f ms p99 %.1f ms, peak heap %.1f MB, %d issue(s), %d ansible-lint execution(s)",
+                    files, duration / 1_000_000, getFilesPerSecond(), p50Latency / 1e6, p99Latency / 1e6, peakHeap / 1048576.0, issues, executions);
+        }
+    }
+}
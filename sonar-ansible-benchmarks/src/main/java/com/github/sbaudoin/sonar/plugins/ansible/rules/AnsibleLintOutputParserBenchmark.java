@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the parsing of the lines printed by ansible-lint, for every output dialect. The dialect is a string
+ * because the JMH generated code cannot access the package-private {@link AnsibleLintOutputParser.Dialect}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnsibleLintOutputParserBenchmark {
+    private static final int LINES = 1000;
+
+    @Param({ "LEGACY", "ID_FIRST", "NAMED", "NAMED_WITH_DETAILS" })
+    public String dialect;
+
+    /**
+     * {@code realistic} for lines printed by ansible-lint, {@code pathological} for lines expensive to parse
+     */
+    @Param({ "realistic", "pathological" })
+    public String lines;
+
+    private List<String> input;
+    private AnsibleLintOutputParser.Dialect expectedDialect;
+
+
+    @Setup
+    public void setUp() {
+        expectedDialect = AnsibleLintOutputParser.Dialect.valueOf(dialect);
+        input = "pathological".equals(lines) ?
+                BenchmarkData.pathologicalLines(LINES) :
+                BenchmarkData.lines(expectedDialect, BenchmarkData.paths(100), LINES, 500);
+    }
+
+
+    /**
+     * Parses the lines with the dialect of the detected ansible-lint version
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseKnownDialect(Blackhole blackhole) {
+        AnsibleLintOutputParser parser = new AnsibleLintOutputParser(expectedDialect);
+        for (String line : input) {
+            blackhole.consume(parser.parse(line));
+        }
+    }
+
+    /**
+     * Parses the lines with a dialect to be detected, as when the ansible-lint version is unknown
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseDetectedDialect(Blackhole blackhole) {
+        AnsibleLintOutputParser parser = new AnsibleLintOutputParser(null);
+        for (String line : input) {
+            blackhole.consume(parser.parse(line));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of the data used by the benchmarks. The data is generated with a fixed seed so that the runs of different
+ * versions of the plugin can be compared.
+ */
+final class BenchmarkData {
+    /**
+     * Seed of the random generators
+     */
+    static final long SEED = 42L;
+
+    /**
+     * Ids of rules of ansible-lint 3 and 4
+     */
+    static final String[] LEGACY_IDS = {
+            "102", "103", "104", "105", "201", "202", "203", "204", "205", "206", "301", "302", "303", "304", "305",
+            "306", "401", "402", "403", "404", "501", "502", "503", "504", "601", "602", "701", "702", "703", "704"
+    };
+
+    /**
+     * Ids of rules of ansible-lint 5 and above
+     */
+    static final String[] NAMED_IDS = {
+            "command-instead-of-module", "command-instead-of-shell", "deprecated-bare-vars", "deprecated-local-action",
+            "deprecated-module", "empty-string-compare", "fqcn", "ignore-errors", "inline-env-var", "jinja",
+            "key-order", "latest", "literal-compare", "meta-incorrect", "meta-no-info", "meta-no-tags",
+            "meta-runtime", "name", "no-changed-when", "no-free-form", "no-handler", "no-jinja-when", "no-relative-paths",
+            "no-tabs", "package-latest", "partial-become", "risky-file-permissions", "risky-octal",
+            "risky-shell-pipe", "role-name", "run-once", "schema", "var-naming", "yaml"
+    };
+
+    /**
+     * Details of the rules printed by ansible-lint 6.5 and above
+     */
+    private static final String[] DETAILS = {
+            "indentation", "line-length", "truthy", "trailing-spaces", "casing", "play", "template", "invalid"
+    };
+
+    private static final String[] MESSAGES = {
+            "Trailing whitespace",
+            "Lines should be no longer than 160 chars",
+            "Commands should not change things if nothing needs doing",
+            "Use shell only when shell functionality is required",
+            "All tasks should be named",
+            "Variables should have spaces before and after: {{ var_name }}",
+            "become_user requires become to work as expected [become_user: root]",
+            "Don't compare to literal True/False: when: ansible_os_family == \"RedHat\" and result is True",
+            "Octal file permissions must contain leading zero or be a string: mode: 644"
+    };
+
+
+    private BenchmarkData() {
+    }
+
+
+    /**
+     * Returns the paths of project files
+     *
+     * @param count the number of paths
+     * @return paths of playbooks and role task files, relative to the project directory
+     */
+    static List<String> paths(int count) {
+        List<String> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            paths.add((i % 4 == 0) ? ("playbooks/playbook-" + i + ".yml") : ("roles/role-" + (i / 4) + "/tasks/main-" + i + ".yml"));
+        }
+        return paths;
+    }
+
+    /**
+     * Returns lines as printed by ansible-lint
+     *
+     * @param dialect the output dialect
+     * @param paths the paths of the files the issues are on
+     * @param count the number of lines
+     * @param maxLine the greatest line number
+     * @return the lines
+     */
+    static List<String> lines(AnsibleLintOutputParser.Dialect dialect, List<String> paths, int count, int maxLine) {
+        Random random = new Random(SEED);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String path = paths.get(random.nextInt(paths.size()));
+            int line = 1 + random.nextInt(maxLine);
+            switch (dialect) {
+                case LEGACY:
+                    lines.add(path + ":" + line + ": [E" + pick(random, LEGACY_IDS) + "] " + pick(random, MESSAGES));
+                    break;
+                case ID_FIRST:
+                    lines.add("E" + pick(random, LEGACY_IDS) + " " + path + ":" + line);
+                    break;
+                case NAMED:
+                    lines.add(path + ":" + line + ": " + pick(random, NAMED_IDS));
+                    break;
+                default:
+                    String id = pick(random, NAMED_IDS);
+                    lines.add(path + ":" + line + ": " + id + " (" + id + "[" + pick(random, DETAILS) + "])");
+                    break;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns lines that are expensive to parse: long lines, lines that look like issues of several dialects and lines
+     * that match no dialect, so that every dialect is tried
+     *
+     * @param count the number of lines
+     * @return the lines
+     */
+    static List<String> pathologicalLines(int count) {
+        StringBuilder repeatedMarkers = new StringBuilder();
+        StringBuilder colons = new StringBuilder();
+        StringBuilder brackets = new StringBuilder("roles/common/tasks/main.yml:12: [E301] ");
+        for (int i = 0; i < 500; i++) {
+            repeatedMarkers.append("a:").append(i).append(": [E");
+            colons.append(i).append(':');
+            brackets.append("[x] ");
+        }
+        String longPath = String.join("/", Collections.nCopies(1000, "very-deep-directory"));
+        String[] templates = {
+                // The legacy marker everywhere but no valid id
+                repeatedMarkers.toString(),
+                // Line numbers everywhere but no id
+                colons.toString(),
+                // An id hidden behind many brackets
+                brackets.toString(),
+                // A very long path
+                longPath + "/main.yml:1: [E301] Commands should not change things if nothing needs doing",
+                longPath + "/main.yml:1: no-changed-when",
+                // No issue at all
+                String.join(" ", Collections.nCopies(2000, "WARNING")),
+                "WARNING  Listing 12 violation(s) that are fatal",
+                // Line number overflow
+                "playbook.yml:99999999999999999999: [E301] Overflow",
+                // Windows paths
+                "C:\\projects\\ansible\\playbook.yml:12: [E301] Commands should not change things if nothing needs doing"
+        };
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(templates[i % templates.length]);
+        }
+        return lines;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.checks.AnsibleCheckRepository;
+import com.github.sbaudoin.sonar.plugins.yaml.languages.YamlLanguage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the registration, the aggregation per file and the saving of the issues found by ansible-lint. An
+ * operation handles all the issues of the analysis.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IssueRegistrationBenchmark {
+    private static final String MODULE_KEY = "benchmark";
+    private static final int FILES = 1000;
+    private static final int LINES_PER_FILE = 500;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int issues;
+
+    private File baseDir;
+    private List<InputFile> inputFiles;
+    private List<String> rawIssues;
+    private List<InputFile> issueFiles;
+    private List<AbstractAnsibleSensor.AnsibleLintIssue> parsedIssues;
+    private ActiveRules activeRules;
+    private DefaultFileSystem fileSystem;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        baseDir = new File("benchmark-project").getAbsoluteFile();
+        fileSystem = new DefaultFileSystem(baseDir);
+        StringBuilder contents = new StringBuilder();
+        for (int i = 1; i <= LINES_PER_FILE; i++) {
+            contents.append("- name: task ").append(i).append('\n');
+        }
+        List<String> paths = BenchmarkData.paths(FILES);
+        inputFiles = new ArrayList<>(FILES);
+        Map<String, InputFile> filesByPath = new HashMap<>();
+        for (String path : paths) {
+            InputFile inputFile = TestInputFileBuilder.create(MODULE_KEY, path)
+                    .setModuleBaseDir(baseDir.toPath())
+                    .setContents(contents.toString())
+                    .setLanguage(YamlLanguage.KEY)
+                    .setCharset(StandardCharsets.UTF_8)
+                    .build();
+            inputFiles.add(inputFile);
+            filesByPath.put(path, inputFile);
+        }
+
+        rawIssues = BenchmarkData.lines(AnsibleLintOutputParser.Dialect.LEGACY, paths, issues, LINES_PER_FILE);
+        issueFiles = new ArrayList<>(issues);
+        parsedIssues = new ArrayList<>(issues);
+        AnsibleLintOutputParser parser = new AnsibleLintOutputParser(AnsibleLintOutputParser.Dialect.LEGACY);
+        for (String rawIssue : rawIssues) {
+            Map.Entry<String, AbstractAnsibleSensor.AnsibleLintIssue> issue = parser.parse(rawIssue);
+            issueFiles.add(filesByPath.get(issue.getKey()));
+            parsedIssues.add(issue.getValue());
+        }
+
+        // The legacy ids are saved with the heading E
+        ActiveRulesBuilder builder = new ActiveRulesBuilder();
+        for (String id : BenchmarkData.LEGACY_IDS) {
+            builder.create(AnsibleCheckRepository.getRuleKey("E" + id)).activate();
+        }
+        activeRules = builder.build();
+    }
+
+
+
+    /**
+     * Parses the lines printed by ansible-lint, resolves the paths and aggregates the issues per file
+     */
+    @Benchmark
+    public int registerRawIssues() {
+        BenchmarkSensor sensor = new BenchmarkSensor(fileSystem);
+        for (String rawIssue : rawIssues) {
+            sensor.registerIssue(rawIssue);
+        }
+        return sensor.getIssueCount();
+    }
+
+    /**
+     * Aggregates issues already parsed, as read from the structured outputs, the cache or the result store
+     */
+    @Benchmark
+    public int registerParsedIssues() {
+        BenchmarkSensor sensor = new BenchmarkSensor(fileSystem);
+        for (int i = 0; i < parsedIssues.size(); i++) {
+            sensor.registerIssue(issueFiles.get(i).uri(), parsedIssues.get(i));
+        }
+        return sensor.getIssueCount();
+    }
+
+    /**
+     * Deduplicates the issues, which stresses {@link AbstractAnsibleSensor.AnsibleLintIssue#hashCode()} and
+     * {@link AbstractAnsibleSensor.AnsibleLintIssue#equals(Object)}
+     */
+    @Benchmark
+    public int deduplicateIssues() {
+        Set<AbstractAnsibleSensor.AnsibleLintIssue> set = new HashSet<>();
+        set.addAll(parsedIssues);
+        return set.size();
+    }
+
+    /**
+     * Resolves the rules and saves the registered issues in the sensor context
+     */
+    @Benchmark
+    public int saveIssues(RegisteredIssues registered) {
+        registered.sensor.saveIssues(registered.context);
+        return registered.context.allIssues().size();
+    }
+
+
+    /**
+     * Sensor with all the issues registered and an empty sensor context, created again before every invocation of
+     * {@link #saveIssues(RegisteredIssues)}
+     */
+    @State(Scope.Thread)
+    public static class RegisteredIssues {
+        private BenchmarkSensor sensor;
+        private SensorContextTester context;
+
+
+        @Setup(Level.Invocation)
+        public void setUp(IssueRegistrationBenchmark benchmark) {
+            context = SensorContextTester.create(benchmark.baseDir);
+            context.setActiveRules(benchmark.activeRules);
+            sensor = new BenchmarkSensor(context.fileSystem());
+            sensor.scannedFiles.addAll(benchmark.inputFiles);
+            for (int i = 0; i < benchmark.parsedIssues.size(); i++) {
+                sensor.registerIssue(benchmark.issueFiles.get(i).uri(), benchmark.parsedIssues.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import com.github.sbaudoin.sonar.plugins.ansible.checks.AnsibleCheckRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.rule.RuleKey;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the resolution of the ansible-lint rule ids into the keys of the active rules. The active rules are
+ * built with the in-memory implementation of the plugin API rather than mocked, so that the mocking framework does not
+ * dominate the measures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleKeyBenchmark {
+    /**
+     * Number of active rules, besides the ansible-lint ones: the quality profile may contain custom rules
+     */
+    @Param({ "0", "1000" })
+    public int extraRules;
+
+    private BenchmarkSensor sensor;
+    private SensorContextTester context;
+    private String[] activeIds;
+    private String[] inactiveIds;
+    private String[] legacyIds;
+    private int index = 0;
+
+
+    @Setup
+    public void setUp() {
+        ActiveRulesBuilder builder = new ActiveRulesBuilder();
+        // Every other rule is active
+        List<String> active = new ArrayList<>();
+        List<String> inactive = new ArrayList<>();
+        for (int i = 0; i < BenchmarkData.NAMED_IDS.length; i++) {
+            String id = BenchmarkData.NAMED_IDS[i];
+            if (i % 2 == 0) {
+                active.add(id);
+                builder.create(AnsibleCheckRepository.getRuleKey(id)).activate();
+            } else {
+                inactive.add(id);
+            }
+        }
+        activeIds = active.toArray(new String[0]);
+        inactiveIds = inactive.toArray(new String[0]);
+        // Legacy ids are printed without the heading E of the rule keys
+        legacyIds = BenchmarkData.LEGACY_IDS.clone();
+        for (String id : legacyIds) {
+            builder.create(AnsibleCheckRepository.getRuleKey("E" + id)).activate();
+        }
+        for (int i = 0; i < extraRules; i++) {
+            builder.create(RuleKey.of("custom", "rule-" + i)).activate();
+        }
+
+        context = SensorContextTester.create(new File("benchmark-project").getAbsoluteFile());
+        context.setActiveRules(builder.build());
+        sensor = new BenchmarkSensor(context.fileSystem());
+    }
+
+
+    /**
+     * Resolves the id of an active rule
+     */
+    @Benchmark
+    public RuleKey activeRule() {
+        return sensor.getRuleKey(context, next(activeIds));
+    }
+
+    /**
+     * Resolves the id of an inactive rule
+     */
+    @Benchmark
+    public RuleKey inactiveRule() {
+        return sensor.getRuleKey(context, next(inactiveIds));
+    }
+
+    /**
+     * Resolves a legacy id, as in {@link AbstractAnsibleSensor#saveIssue}: the id is looked up as is, then with a
+     * heading E
+     */
+    @Benchmark
+    public RuleKey legacyRule() {
+        String id = next(legacyIds);
+        RuleKey key = sensor.getRuleKey(context, id);
+        return (key == null) ? sensor.getRuleKey(context, "E" + id) : key;
+    }
+
+
+    private String next(String[] ids) {
+        index = (index + 1) % ids.length;
+        return ids[index];
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2018-2021, Sylvain Baudoin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.sbaudoin.sonar.plugins.ansible.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.server.rule.RulesDefinition;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the definition of the rule repository at server startup, from the rule index generated at build time
+ * or from the rule definition files. The single shot measure, in a new JVM every time, is the one a server sees at
+ * startup; the average time shows the cost once the classes are loaded and compiled.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RulesDefinitionBenchmark {
+    /**
+     * {@code true} to define the rules from the rule index, {@code false} to read the rule definition files
+     */
+    @Param({ "true", "false" })
+    public boolean index;
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public RulesDefinition.Context defineCold() {
+        return define();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public RulesDefinition.Context defineWarm() {
+        return define();
+    }
+
+
+    private RulesDefinition.Context define() {
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        new AnsibleRulesDefinition().define(context, index);
+        return context;
+    }
+}
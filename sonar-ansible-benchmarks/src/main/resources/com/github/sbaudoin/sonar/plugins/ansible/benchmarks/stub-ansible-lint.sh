@@ -0,0 +1,51 @@
+#!/bin/sh
+
+# Stub of ansible-lint 4 generated by the throughput benchmark: it waits for a fixed time per execution and per linted
+# file, then reports the same number of issues and error lines for every linted file. Roles passed as directories are
+# linted file by file.
+if [ "$1" = "--version" ]; then
+    echo "ansible-lint 4.2.0"
+    exit 0
+fi
+
+emit() {
+    if [ "@FILE_LATENCY@" != "0" ]; then
+        sleep @FILE_LATENCY@
+    fi
+    awk -v file="$1" -v issues=@ISSUES@ -v warnings=@WARNINGS@ 'BEGIN {
+        count = split("@RULES@", rules, " ")
+        for (i = 1; i <= issues; i++) {
+            printf "%s:%d: [E%s] Synthetic issue %d\n", file, 2 * i, rules[(i - 1) % count + 1], i
+        }
+        for (i = 1; i <= warnings; i++) {
+            printf "WARNING Synthetic warning %d on %s\n", i, file > "/dev/stderr"
+        }
+    }'
+}
+
+if [ "@LATENCY@" != "0" ]; then
+    sleep @LATENCY@
+fi
+skip=0
+for arg in "$@"; do
+    if [ $skip = 1 ]; then
+        skip=0
+        continue
+    fi
+    case "$arg" in
+        -c|-f|-r|-t|-x|--exclude)
+            skip=1
+            ;;
+        -*)
+            ;;
+        *)
+            if [ -d "$arg" ]; then
+                find "$arg" -type f -name '*.yml' | sort | while IFS= read -r file; do
+                    emit "$file"
+                done
+            else
+                emit "$arg"
+            fi
+            ;;
+    esac
+done
@@ -15,6 +15,7 @@
  */
 package com.github.sbaudoin.sonar.plugins.ansible;
 
+import com.github.sbaudoin.sonar.plugins.ansible.metrics.AnsibleMetrics;
 import com.github.sbaudoin.sonar.plugins.ansible.rules.AnsibleRulesDefinition;
 import com.github.sbaudoin.sonar.plugins.ansible.rules.AnsibleSensor;
 import com.github.sbaudoin.sonar.plugins.ansible.settings.AnsibleSettings;
@@ -28,5 +29,8 @@ public class AnsiblePlugin implements Plugin {
 
         // Extends YAML rules
         context.addExtensions(AnsibleRulesDefinition.class, AnsibleSensor.class);
+
+        // Analysis performance measures
+        context.addExtension(AnsibleMetrics.class);
     }
 }
@@ -45,4 +45,28 @@ public class AnsibleRulesDefinitionTest extends TestCase {
             }
         }
     }
+
+    public void testDefineFromIndex() {
+        // The rule index generated at build time defines the same rules as the JSON files
+        AnsibleRulesDefinition rulesDefinition = new AnsibleRulesDefinition();
+        RulesDefinition.Context indexedContext = new RulesDefinition.Context();
+        rulesDefinition.define(indexedContext, true);
+        RulesDefinition.Context context = new RulesDefinition.Context();
+        rulesDefinition.define(context, false);
+
+        RulesDefinition.Repository indexedRepository = indexedContext.repository(AnsibleCheckRepository.REPOSITORY_KEY);
+        RulesDefinition.Repository repository = context.repository(AnsibleCheckRepository.REPOSITORY_KEY);
+        assertEquals(repository.rules().size(), indexedRepository.rules().size());
+        for (RulesDefinition.Rule expected : repository.rules()) {
+            RulesDefinition.Rule rule = indexedRepository.rule(expected.key());
+            assertNotNull(expected.key(), rule);
+            assertEquals(expected.name(), rule.name());
+            assertEquals(expected.htmlDescription(), rule.htmlDescription());
+            assertEquals(expected.type(), rule.type());
+            assertEquals(expected.status(), rule.status());
+            assertEquals(expected.severity(), rule.severity());
+            assertEquals(expected.tags(), rule.tags());
+            assertEquals(expected.debtRemediationFunction(), rule.debtRemediationFunction());
+        }
+    }
 }